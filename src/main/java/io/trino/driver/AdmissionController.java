@@ -0,0 +1,246 @@
+package io.trino.driver;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Driver-wide client-side admission control for queries.
+ * <p>
+ * Before a statement is executed it must obtain a permit. A permit is granted while fewer than
+ * {@code maxConcurrentQueries} queries are in flight in this JVM and, for every client tag of the connection with a
+ * limit in {@code maxConcurrentQueriesPerTag}, fewer queries with that tag are in flight. Otherwise the statement
+ * waits in a queue ordered by priority ({@code queryPriority=interactive} before {@code batch}) and, within a
+ * priority, by arrival; a waiter held back only by its own tag limit does not block the waiters behind it. A waiter
+ * that is not admitted within {@code admissionQueueTimeoutMillis} fails with a {@link SQLTimeoutException}.
+ * <p>
+ * A query is in flight from its submission until its result is exhausted or closed (or its statement is closed,
+ * cancelled or executed again). Queue depth, in-flight count and wait times are exposed as static getters.
+ */
+public final class AdmissionController {
+
+    /** Queue order of a waiting statement; interactive statements are admitted first. */
+    enum Priority {
+        INTERACTIVE, BATCH;
+
+        /** Parses {@code interactive}/{@code batch} (any case); null for anything else. */
+        static Priority parse(String value) {
+            if (value == null) return null;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final Object LOCK = new Object();
+    private static final TreeSet<Waiter> QUEUE = new TreeSet<>(
+            Comparator.comparing((Waiter w) -> w.priority).thenComparingLong(w -> w.sequence));
+    private static final Map<String, Integer> RUNNING_BY_TAG = new HashMap<>();
+
+    // Guarded by LOCK
+    private static int running;
+    private static long sequence;
+    private static long admitted;
+    private static long timedOut;
+    private static long totalWaitNanos;
+    private static long maxWaitNanos;
+
+    private AdmissionController() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Waits for a permit to run one query.
+     *
+     * @param config settings of the connection (limits, priority, queue timeout)
+     * @param tags   client tags of the query
+     * @return the permit, or null if the connection has no admission limits
+     * @throws SQLTimeoutException if no permit was granted within the queue timeout
+     */
+    static Permit admit(DriverConfig config, Set<String> tags) throws SQLException {
+        return admit(config, tags, config.getQueryPriority());
+    }
+
+    /**
+     * Waits for a permit to run one query with its own queue priority.
+     *
+     * @param config   settings of the connection (limits, queue timeout)
+     * @param tags     client tags of the query
+     * @param priority queue priority of the query
+     * @return the permit, or null if the connection has no admission limits
+     * @throws SQLTimeoutException if no permit was granted within the queue timeout
+     */
+    static Permit admit(DriverConfig config, Set<String> tags, Priority priority) throws SQLException {
+        if (!config.isAdmissionControlled()) {
+            return null;
+        }
+        Waiter waiter;
+        long start = System.nanoTime();
+        synchronized (LOCK) {
+            waiter = new Waiter(config, tags, priority, sequence++);
+            QUEUE.add(waiter);
+            grant();
+            if (!waiter.granted) {
+                DriverLogging.Scope log = config.getLogScope();
+                if (log.isLoggable(Level.FINE)) {
+                    log.log(Level.FINE, "Query queued by admission control (" + waiter.priority + ", depth "
+                            + QUEUE.size() + ", in flight " + running + ")");
+                }
+                long deadline = start + TimeUnit.MILLISECONDS.toNanos(config.getAdmissionQueueTimeoutMillis());
+                try {
+                    while (!waiter.granted) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            QUEUE.remove(waiter);
+                            timedOut++;
+                            throw new SQLTimeoutException("Query not admitted within "
+                                    + config.getAdmissionQueueTimeoutMillis() + " ms (" + running + " in flight, "
+                                    + QUEUE.size() + " queued)");
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(LOCK, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    if (!waiter.granted) {
+                        QUEUE.remove(waiter);
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for admission", e);
+                    }
+                    Thread.currentThread().interrupt();
+                }
+            }
+            long waited = System.nanoTime() - start;
+            admitted++;
+            totalWaitNanos += waited;
+            maxWaitNanos = Math.max(maxWaitNanos, waited);
+        }
+        return new Permit(waiter.tags);
+    }
+
+    /** Admits, in queue order, every waiter whose limits allow it. Caller holds LOCK. */
+    private static void grant() {
+        boolean any = false;
+        for (var it = QUEUE.iterator(); it.hasNext(); ) {
+            Waiter waiter = it.next();
+            if (!waiter.fits()) {
+                continue;
+            }
+            it.remove();
+            waiter.granted = true;
+            running++;
+            for (String tag : waiter.tags) {
+                RUNNING_BY_TAG.merge(tag, 1, Integer::sum);
+            }
+            any = true;
+        }
+        if (any) {
+            LOCK.notifyAll();
+        }
+    }
+
+    /** Number of queries holding a permit. */
+    public static int getRunningQueries() {
+        synchronized (LOCK) {
+            return running;
+        }
+    }
+
+    /** Number of statements waiting for a permit. */
+    public static int getQueueDepth() {
+        synchronized (LOCK) {
+            return QUEUE.size();
+        }
+    }
+
+    /** Number of permits granted since the driver was loaded. */
+    public static long getAdmittedCount() {
+        synchronized (LOCK) {
+            return admitted;
+        }
+    }
+
+    /** Number of statements that gave up waiting (queue timeout). */
+    public static long getTimedOutCount() {
+        synchronized (LOCK) {
+            return timedOut;
+        }
+    }
+
+    /** Total time admitted statements spent waiting for their permit, in milliseconds. */
+    public static long getTotalWaitMillis() {
+        synchronized (LOCK) {
+            return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos);
+        }
+    }
+
+    /** Longest time one admitted statement waited for its permit, in milliseconds. */
+    public static long getMaxWaitMillis() {
+        synchronized (LOCK) {
+            return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+        }
+    }
+
+    /** Permission to run one query; {@link #release()} it when the query is no longer in flight. */
+    static final class Permit {
+        private final Set<String> tags;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Set<String> tags) {
+            this.tags = tags;
+        }
+
+        /** Returns the permit and admits waiting statements (idempotent). */
+        void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            synchronized (LOCK) {
+                running--;
+                for (String tag : tags) {
+                    RUNNING_BY_TAG.computeIfPresent(tag, (t, n) -> n > 1 ? n - 1 : null);
+                }
+                grant();
+            }
+        }
+    }
+
+    private static final class Waiter {
+        final Priority priority;
+        final long sequence;
+        final int maxConcurrent;
+        final Map<String, Integer> tagLimits;
+        final Set<String> tags;
+        boolean granted;
+
+        Waiter(DriverConfig config, Set<String> tags, Priority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.maxConcurrent = config.getMaxConcurrentQueries();
+            this.tagLimits = config.getMaxConcurrentQueriesPerTag();
+            this.tags = tags;
+        }
+
+        /** True if running this query stays within its limits. Caller holds LOCK. */
+        boolean fits() {
+            if (maxConcurrent > 0 && running >= maxConcurrent) {
+                return false;
+            }
+            for (String tag : tags) {
+                Integer limit = tagLimits.get(tag);
+                if (limit != null && RUNNING_BY_TAG.getOrDefault(tag, 0) >= limit) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
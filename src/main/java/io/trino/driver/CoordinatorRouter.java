@@ -0,0 +1,339 @@
+package io.trino.driver;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Routes connections for multi-coordinator URLs such as {@code jdbc:mytrino://h1:8080,h2:8080/catalog/schema}.
+ * <p>
+ * Each distinct host list gets a driver-wide group of {@link Coordinator}s. A background task probes every
+ * coordinator's {@code /v1/info} endpoint; a coordinator is healthy when it answers 2xx and is not starting.
+ * The moving average of probe latency is combined with the number of queries currently in flight into a load score;
+ * the execute latency of queries is averaged separately and only reported, since it depends on what the queries do
+ * rather than on the coordinator. New connections go to the healthy coordinator with the lowest score. If a
+ * coordinator's health is unknown or stale it is probed synchronously before use, and a failed probe fails over to
+ * the next candidate immediately; so does a failed {@code connect} (see {@link #choose(String, Properties,
+ * DriverConfig, Set)}).
+ * <p>
+ * A group is keyed by its host list and its health check settings ({@code healthCheckIntervalSeconds},
+ * {@code healthCheckTimeoutMillis}), so connections with other settings get a group probed their way. A group that
+ * has routed no connection for a while and has no query in flight is dropped and its probes are cancelled; the next
+ * connection creates it again.
+ */
+final class CoordinatorRouter {
+
+    /** Weight of the newest sample in the latency moving average. */
+    private static final double EWMA_ALPHA = 0.3;
+
+    /** Groups that have not been used for this long (and have no query in flight) are dropped. */
+    private static final long IDLE_GROUP_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private static final Map<String, Group> GROUPS = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService PROBER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "mytrino-health-probe");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private CoordinatorRouter() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Returns true if the URL names more than one coordinator (comma-separated host list).
+     */
+    static boolean isMultiHost(String url) {
+        String hosts = hostList(url);
+        return hosts != null && hosts.indexOf(',') >= 0;
+    }
+
+    /**
+     * Picks the least-loaded healthy coordinator for a multi-host URL.
+     *
+     * @param url    the JDBC URL with a comma-separated host list (driver params may still be present)
+     * @param info   connection properties (used for the {@code SSL} flag; may be null)
+     * @param config driver settings of the connection being opened
+     * @return the chosen coordinator
+     * @throws SQLException if no coordinator in the list is reachable
+     */
+    static Coordinator choose(String url, Properties info, DriverConfig config) throws SQLException {
+        return choose(url, info, config, Set.of());
+    }
+
+    /**
+     * Picks the least-loaded healthy coordinator that is not in {@code excluded}, the coordinators a connection
+     * attempt already failed on.
+     *
+     * @throws SQLException if no other coordinator in the list is reachable
+     */
+    static Coordinator choose(String url, Properties info, DriverConfig config, Set<Coordinator> excluded)
+            throws SQLException {
+        String hosts = hostList(url);
+        boolean https = "true".equalsIgnoreCase(DriverConfig.get("SSL", url, info));
+        String key = (https ? "https://" : "http://") + hosts + "#" + config.getHealthCheckIntervalMillis() + "/"
+                + config.getHealthCheckTimeoutMillis();
+        evictIdle(IDLE_GROUP_NANOS);
+        while (true) {
+            Group group = GROUPS.computeIfAbsent(key, k -> new Group(k, hosts, https, config));
+            if (group.use()) {
+                return group.choose(excluded);
+            }
+            // Evicted between lookup and use; a new group replaces it
+        }
+    }
+
+    /** Drops the groups that routed no connection for {@code idleNanos} and have no query in flight. */
+    static void evictIdle(long idleNanos) {
+        for (Group group : GROUPS.values()) {
+            group.evictIfIdle(idleNanos);
+        }
+    }
+
+    /** Number of coordinator groups currently kept. */
+    static int getGroupCount() {
+        return GROUPS.size();
+    }
+
+    /**
+     * Replaces the host list of {@code url} with the chosen coordinator's {@code host:port}.
+     */
+    static String rewriteUrl(String url, Coordinator coordinator) {
+        int start = url.indexOf("//") + 2;
+        int end = hostListEnd(url, start);
+        return url.substring(0, start) + coordinator.getAddress() + url.substring(end);
+    }
+
+    /** Forgets all coordinator groups and stops their probes (tests only). */
+    static void reset() {
+        GROUPS.values().forEach(group -> {
+            if (group.probes != null) group.probes.cancel(false);
+        });
+        GROUPS.clear();
+    }
+
+    private static String hostList(String url) {
+        if (url == null) return null;
+        int start = url.indexOf("//");
+        if (start < 0) return null;
+        start += 2;
+        return url.substring(start, hostListEnd(url, start));
+    }
+
+    private static int hostListEnd(String url, int start) {
+        int end = start;
+        while (end < url.length() && url.charAt(end) != '/' && url.charAt(end) != '?') {
+            end++;
+        }
+        return end;
+    }
+
+    private static final class Group {
+        private final String key;
+        private final List<Coordinator> coordinators = new ArrayList<>();
+        private final long staleAfterNanos;
+        private final ScheduledFuture<?> probes;
+        private volatile long lastUsed = System.nanoTime();
+        /** Set once the group is dropped from {@code GROUPS}; guarded by the group's monitor. */
+        private boolean evicted;
+
+        Group(String key, String hosts, boolean https, DriverConfig config) {
+            this.key = key;
+            HttpClient client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofMillis(config.getHealthCheckTimeoutMillis()))
+                    .build();
+            for (String host : hosts.split(",")) {
+                String address = host.trim();
+                if (!address.isEmpty()) {
+                    coordinators.add(new Coordinator(address, https, client, config.getHealthCheckTimeoutMillis()));
+                }
+            }
+            long intervalMillis = config.getHealthCheckIntervalMillis();
+            this.staleAfterNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis * 2);
+            this.probes = intervalMillis > 0
+                    ? PROBER.scheduleWithFixedDelay(this::probeAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS)
+                    : null;
+        }
+
+        /** Marks the group as used by a new connection; false if it has been evicted. */
+        synchronized boolean use() {
+            if (evicted) return false;
+            lastUsed = System.nanoTime();
+            return true;
+        }
+
+        /** Drops the group and cancels its probes if it is idle. */
+        synchronized void evictIfIdle(long idleNanos) {
+            if (evicted || System.nanoTime() - lastUsed <= idleNanos) return;
+            for (Coordinator coordinator : coordinators) {
+                if (coordinator.getInFlight() > 0) return;
+            }
+            evicted = true;
+            if (probes != null) probes.cancel(false);
+            GROUPS.remove(key, this);
+            if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
+                DriverLogging.getLogger().fine("Dropped idle coordinator group " + coordinators);
+            }
+        }
+
+        Coordinator choose(Set<Coordinator> excluded) throws SQLException {
+            List<Coordinator> candidates = new ArrayList<>(coordinators);
+            candidates.removeAll(excluded);
+            candidates.sort(Comparator.comparingDouble(Coordinator::score));
+            for (Coordinator coordinator : candidates) {
+                boolean stale = System.nanoTime() - coordinator.lastProbe > staleAfterNanos;
+                if (stale ? coordinator.probe() : coordinator.healthy) {
+                    if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
+                        DriverLogging.getLogger().fine("Routing connection to " + coordinator);
+                    }
+                    return coordinator;
+                }
+            }
+            // Every known state says unhealthy; probe once more in case a coordinator came back.
+            for (Coordinator coordinator : candidates) {
+                if (coordinator.probe()) {
+                    return coordinator;
+                }
+            }
+            throw new SQLException("No healthy Trino coordinator among: " + candidates);
+        }
+
+        private void probeAll() {
+            if (System.nanoTime() - lastUsed > IDLE_GROUP_NANOS) {
+                evictIfIdle(IDLE_GROUP_NANOS);
+                return;
+            }
+            for (Coordinator coordinator : coordinators) {
+                coordinator.probe();
+            }
+        }
+    }
+
+    /**
+     * One coordinator of a multi-host URL, with its health and load statistics.
+     */
+    static final class Coordinator {
+        private final String address;
+        private final URI infoUri;
+        private final HttpClient client;
+        private final long timeoutMillis;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile boolean healthy;
+        private volatile long lastProbe = Long.MIN_VALUE / 2;
+        /** Moving average of probe latency in milliseconds (as {@code double} bits); NaN until the first probe. */
+        private final AtomicLong probeLatencyMillis = new AtomicLong(Double.doubleToLongBits(Double.NaN));
+        /** Moving average of query execute latency in milliseconds (as {@code double} bits); NaN until a query ran. */
+        private final AtomicLong queryLatencyMillis = new AtomicLong(Double.doubleToLongBits(Double.NaN));
+
+        Coordinator(String address, boolean https, HttpClient client, long timeoutMillis) {
+            this.address = address;
+            this.infoUri = URI.create((https ? "https://" : "http://") + address + "/v1/info");
+            this.client = client;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        String getAddress() {
+            return address;
+        }
+
+        boolean isHealthy() {
+            return healthy;
+        }
+
+        double getProbeLatencyMillis() {
+            return Double.longBitsToDouble(probeLatencyMillis.get());
+        }
+
+        double getQueryLatencyMillis() {
+            return Double.longBitsToDouble(queryLatencyMillis.get());
+        }
+
+        int getInFlight() {
+            return inFlight.get();
+        }
+
+        /** Lower is better: average probe latency scaled by the number of queries already running there. */
+        double score() {
+            double latency = getProbeLatencyMillis();
+            return ((Double.isNaN(latency) ? 0 : latency) + 1) * (1 + inFlight.get());
+        }
+
+        /** Called by the statement wrapper when a query is sent to this coordinator. */
+        void queryStarted() {
+            inFlight.incrementAndGet();
+        }
+
+        /** Called by the statement wrapper when a query finished executing (successfully or not). */
+        void queryFinished(long elapsedNanos, boolean failed) {
+            inFlight.decrementAndGet();
+            record(queryLatencyMillis, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+            if (failed) {
+                lastProbe = Long.MIN_VALUE / 2; // re-check health before routing new connections here
+            }
+        }
+
+        /** Called by the driver when opening a connection to this coordinator failed. */
+        void connectFailed() {
+            lastProbe = Long.MIN_VALUE / 2; // re-check health before routing new connections here
+        }
+
+        boolean probe() {
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                HttpRequest request = HttpRequest.newBuilder(infoUri)
+                        .timeout(Duration.ofMillis(timeoutMillis))
+                        .GET()
+                        .build();
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                ok = response.statusCode() / 100 == 2 && !response.body().replace(" ", "").contains("\"starting\":true");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ok = false;
+            } catch (Exception e) {
+                ok = false;
+            }
+            lastProbe = System.nanoTime();
+            if (ok) {
+                record(probeLatencyMillis, TimeUnit.NANOSECONDS.toMillis(lastProbe - start));
+            }
+            if (ok != healthy && DriverLogging.getLogger().isLoggable(Level.INFO)) {
+                DriverLogging.getLogger().info("Coordinator " + address + (ok ? " is healthy" : " is unhealthy"));
+            }
+            healthy = ok;
+            return ok;
+        }
+
+        /** Adds a sample to a moving average; concurrent samples (probe thread, finishing queries) are all kept. */
+        private static void record(AtomicLong average, double millis) {
+            average.updateAndGet(bits -> {
+                double current = Double.longBitsToDouble(bits);
+                double next = Double.isNaN(current) ? millis : current + EWMA_ALPHA * (millis - current);
+                return Double.doubleToLongBits(next);
+            });
+        }
+
+        @Override
+        public String toString() {
+            return address + (healthy ? "" : " (unhealthy)");
+        }
+    }
+}
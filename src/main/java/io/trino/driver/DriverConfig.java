@@ -0,0 +1,570 @@
+package io.trino.driver;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Driver-only connection settings (everything the Trino driver itself does not understand).
+ * <p>
+ * Each setting is resolved the same way as {@code logLevel}/{@code logFile}: connection Properties first,
+ * then the URL query string, then the system property {@code io.trino.driver.<key>}.
+ * Driver-only keys are stripped from both the URL and the Properties before they are passed to Trino,
+ * which rejects unknown connection properties.
+ */
+public final class DriverConfig {
+
+    /** Seconds a cached DatabaseMetaData result stays valid; 0 disables the metadata cache. */
+    public static final String PROP_METADATA_CACHE_TTL_SECONDS = "metadataCacheTtlSeconds";
+
+    /** Maximum number of DatabaseMetaData results kept in the driver-wide cache; the largest value of all connections applies. */
+    public static final String PROP_METADATA_CACHE_MAX_ENTRIES = "metadataCacheMaxEntries";
+
+    /** Seconds between background health probes of multi-coordinator URLs; 0 probes only on demand. */
+    public static final String PROP_HEALTH_CHECK_INTERVAL_SECONDS = "healthCheckIntervalSeconds";
+
+    /** Timeout in milliseconds of one coordinator health probe. */
+    public static final String PROP_HEALTH_CHECK_TIMEOUT_MILLIS = "healthCheckTimeoutMillis";
+
+    /** Path of the persistent rewrite store shared across JVM restarts; unset disables it. */
+    public static final String PROP_REWRITE_STORE_FILE = "rewriteStoreFile";
+
+    /** Maximum number of rewrites kept by the persistent rewrite store. */
+    public static final String PROP_REWRITE_STORE_MAX_ENTRIES = "rewriteStoreMaxEntries";
+
+    /** If true, identical concurrent SELECTs with the same session context share one Trino query. */
+    public static final String PROP_SINGLE_FLIGHT = "singleFlight";
+
+    /** Rows buffered per shared query; bounds how far the fastest consumer can run ahead of the slowest. */
+    public static final String PROP_SINGLE_FLIGHT_BUFFER_ROWS = "singleFlightBufferRows";
+
+    /** Milliseconds a shared query waits for a consumer that stopped reading before detaching it. */
+    public static final String PROP_SINGLE_FLIGHT_STALL_TIMEOUT_MILLIS = "singleFlightStallTimeoutMillis";
+
+    /** If false, queries are submitted without requesting the spooling protocol (results always inline). */
+    public static final String PROP_SPOOLING = "spooling";
+
+    /** Spooled segments per connection downloaded in parallel ahead of the reader; 0 disables prefetching. */
+    public static final String PROP_SPOOLING_PREFETCH_SEGMENTS = "spoolingPrefetchSegments";
+
+    /** Maximum queries in flight in this JVM; further statements wait for admission. 0 means unlimited. */
+    public static final String PROP_MAX_CONCURRENT_QUERIES = "maxConcurrentQueries";
+
+    /** Maximum queries in flight per client tag, as {@code tag:limit,tag:limit} (e.g. {@code etl:4,bi:16}). */
+    public static final String PROP_MAX_CONCURRENT_QUERIES_PER_TAG = "maxConcurrentQueriesPerTag";
+
+    /** Admission queue priority of the connection's statements: {@code interactive} (default) or {@code batch}. */
+    public static final String PROP_QUERY_PRIORITY = "queryPriority";
+
+    /** Milliseconds a statement waits for admission before failing. */
+    public static final String PROP_ADMISSION_QUEUE_TIMEOUT_MILLIS = "admissionQueueTimeoutMillis";
+
+    /** Maximum statements of a script run by {@link ScriptExecutor} at the same time. */
+    public static final String PROP_SCRIPT_PARALLELISM = "scriptParallelism";
+
+    /** If true, exact aggregates of queries are rewritten to Trino's approximate aggregates. */
+    public static final String PROP_APPROXIMATE = "approximate";
+
+    /** Standard error passed to {@code approx_distinct} in approximate mode; unset uses Trino's default (2.3%). */
+    public static final String PROP_APPROXIMATE_MAX_STANDARD_ERROR = "approximateMaxStandardError";
+
+    /** In approximate mode, sample 1 in N rows of single-table aggregations; 0 or 1 disables sampling. */
+    public static final String PROP_APPROXIMATE_SAMPLE_RATIO = "approximateSampleRatio";
+
+    /**
+     * If true, function-wrapped date filters such as {@code CAST(ts AS DATE) = DATE '...'} are rewritten into ranges
+     * on the bare column. Only correct when those columns are {@code date} or {@code timestamp} without time zone.
+     */
+    public static final String PROP_SARGABLE_DATES = "sargableDates";
+
+    /**
+     * Workload classification rules, {@code class[@priority][:condition,...]} separated by semicolons (see
+     * {@link WorkloadClassifier}); unset disables classification.
+     */
+    public static final String PROP_WORKLOAD_RULES = "workloadRules";
+
+    /** Batches of an export by {@link ResultExporter} encoded at the same time; also bounds the batches in memory. */
+    public static final String PROP_EXPORT_PARALLELISM = "exportParallelism";
+
+    /** Rows per batch of an export: one Parquet row group, or one gzip member of a compressed CSV file. */
+    public static final String PROP_EXPORT_BATCH_ROWS = "exportBatchRows";
+
+    /** Size in bytes at which an export starts its next file; 0 writes a single file. */
+    public static final String PROP_EXPORT_MAX_FILE_BYTES = "exportMaxFileBytes";
+
+    /** Compression of exported files: {@code none} (default) or {@code gzip}. */
+    public static final String PROP_EXPORT_COMPRESSION = "exportCompression";
+
+    /**
+     * Milliseconds one JSQLParser parse in the rewrite stage may take before the SQL is sent unparsed. Process-wide:
+     * only read from the system property {@code io.trino.driver.parseTimeoutMillis}.
+     */
+    public static final String PROP_PARSE_TIMEOUT_MILLIS = "parseTimeoutMillis";
+
+    /** Trino connection property with the client tags of the connection (read, never stripped). */
+    private static final String TRINO_CLIENT_TAGS = "clientTags";
+
+    /** All keys consumed by this driver (never forwarded to Trino). */
+    static final List<String> DRIVER_KEYS = List.of(
+            DriverLogging.PROP_LOG_LEVEL,
+            DriverLogging.PROP_LOG_FILE,
+            DriverLogging.PROP_LOG_SAMPLE_RATE,
+            DriverLogging.PROP_LOG_SLOW_QUERY_MILLIS,
+            DriverLogging.PROP_LOG_MAX_PER_SECOND,
+            PROP_METADATA_CACHE_TTL_SECONDS,
+            PROP_METADATA_CACHE_MAX_ENTRIES,
+            PROP_HEALTH_CHECK_INTERVAL_SECONDS,
+            PROP_HEALTH_CHECK_TIMEOUT_MILLIS,
+            PROP_REWRITE_STORE_FILE,
+            PROP_REWRITE_STORE_MAX_ENTRIES,
+            PROP_SINGLE_FLIGHT,
+            PROP_SINGLE_FLIGHT_BUFFER_ROWS,
+            PROP_SINGLE_FLIGHT_STALL_TIMEOUT_MILLIS,
+            PROP_SPOOLING,
+            PROP_SPOOLING_PREFETCH_SEGMENTS,
+            PROP_MAX_CONCURRENT_QUERIES,
+            PROP_MAX_CONCURRENT_QUERIES_PER_TAG,
+            PROP_QUERY_PRIORITY,
+            PROP_ADMISSION_QUEUE_TIMEOUT_MILLIS,
+            PROP_SCRIPT_PARALLELISM,
+            PROP_PARSE_TIMEOUT_MILLIS,
+            PROP_APPROXIMATE,
+            PROP_APPROXIMATE_MAX_STANDARD_ERROR,
+            PROP_APPROXIMATE_SAMPLE_RATIO,
+            PROP_SARGABLE_DATES,
+            PROP_WORKLOAD_RULES,
+            PROP_EXPORT_PARALLELISM,
+            PROP_EXPORT_BATCH_ROWS,
+            PROP_EXPORT_MAX_FILE_BYTES,
+            PROP_EXPORT_COMPRESSION);
+
+    /** Range of {@code approx_distinct}'s maximum standard error accepted by Trino. */
+    private static final double MIN_STANDARD_ERROR = 0.0040625;
+    private static final double MAX_STANDARD_ERROR = 0.26;
+
+    /** Upper bound of {@code exportBatchRows} (a batch is allocated up front). */
+    private static final int MAX_EXPORT_BATCH_ROWS = 1_000_000;
+
+    private static final String SYSTEM_PREFIX = DriverLogging.LOGGER_NAME + ".";
+
+    private final long metadataCacheTtlMillis;
+    private final int metadataCacheMaxEntries;
+    private final long healthCheckIntervalMillis;
+    private final long healthCheckTimeoutMillis;
+    private final DriverLogging.Scope logScope;
+    private final String user;
+    private final RewriteStore rewriteStore;
+    private final boolean singleFlight;
+    private final int singleFlightBufferRows;
+    private final long singleFlightStallTimeoutMillis;
+    private final boolean spooling;
+    private final int spoolingPrefetchSegments;
+    private final int maxConcurrentQueries;
+    private final Map<String, Integer> maxConcurrentQueriesPerTag;
+    private final AdmissionController.Priority queryPriority;
+    private final long admissionQueueTimeoutMillis;
+    private final Set<String> clientTags;
+    private final int scriptParallelism;
+    private final boolean approximate;
+    private final double approximateMaxStandardError;
+    private final int approximateSampleRatio;
+    private final boolean sargableDates;
+    private final WorkloadClassifier workloadClassifier;
+    private final int exportParallelism;
+    private final int exportBatchRows;
+    private final long exportMaxFileBytes;
+    private final boolean exportGzip;
+
+    private DriverConfig(String url, Properties info) {
+        this.metadataCacheTtlMillis = getLong(PROP_METADATA_CACHE_TTL_SECONDS, url, info, 0) * 1000L;
+        this.metadataCacheMaxEntries = (int) getLong(PROP_METADATA_CACHE_MAX_ENTRIES, url, info, 1000);
+        this.healthCheckIntervalMillis = getLong(PROP_HEALTH_CHECK_INTERVAL_SECONDS, url, info, 10) * 1000L;
+        this.healthCheckTimeoutMillis = Math.max(1, getLong(PROP_HEALTH_CHECK_TIMEOUT_MILLIS, url, info, 2000));
+        this.rewriteStore = RewriteStore.forFile(get(PROP_REWRITE_STORE_FILE, url, info),
+                (int) getLong(PROP_REWRITE_STORE_MAX_ENTRIES, url, info, 100_000));
+        this.singleFlight = getBoolean(PROP_SINGLE_FLIGHT, url, info, false);
+        this.singleFlightBufferRows = (int) Math.max(1, getLong(PROP_SINGLE_FLIGHT_BUFFER_ROWS, url, info, 4096));
+        this.singleFlightStallTimeoutMillis = Math.max(1, getLong(PROP_SINGLE_FLIGHT_STALL_TIMEOUT_MILLIS, url, info, 30_000));
+        this.spooling = getBoolean(PROP_SPOOLING, url, info, true);
+        this.spoolingPrefetchSegments = (int) Math.max(0, getLong(PROP_SPOOLING_PREFETCH_SEGMENTS, url, info, 4));
+        this.maxConcurrentQueries = (int) Math.max(0, getLong(PROP_MAX_CONCURRENT_QUERIES, url, info, 0));
+        this.maxConcurrentQueriesPerTag = parseTagLimits(get(PROP_MAX_CONCURRENT_QUERIES_PER_TAG, url, info));
+        String priority = get(PROP_QUERY_PRIORITY, url, info);
+        AdmissionController.Priority parsedPriority = AdmissionController.Priority.parse(priority);
+        if (parsedPriority == null && priority != null && !priority.isBlank()) {
+            DriverLogging.getLogger().warning("Ignoring invalid value for " + PROP_QUERY_PRIORITY + ": '" + priority + "'");
+        }
+        this.queryPriority = parsedPriority != null ? parsedPriority : AdmissionController.Priority.INTERACTIVE;
+        this.admissionQueueTimeoutMillis = Math.max(0, getLong(PROP_ADMISSION_QUEUE_TIMEOUT_MILLIS, url, info, 60_000));
+        this.clientTags = parseTags(get(TRINO_CLIENT_TAGS, url, info));
+        this.scriptParallelism = (int) Math.max(1, getLong(PROP_SCRIPT_PARALLELISM, url, info, 8));
+        this.approximate = getBoolean(PROP_APPROXIMATE, url, info, false);
+        this.approximateMaxStandardError = standardError(get(PROP_APPROXIMATE_MAX_STANDARD_ERROR, url, info),
+                PROP_APPROXIMATE_MAX_STANDARD_ERROR);
+        this.approximateSampleRatio = (int) Math.max(0, getLong(PROP_APPROXIMATE_SAMPLE_RATIO, url, info, 0));
+        this.sargableDates = getBoolean(PROP_SARGABLE_DATES, url, info, false);
+        this.workloadClassifier = WorkloadClassifier.parse(get(PROP_WORKLOAD_RULES, url, info));
+        this.exportParallelism = (int) Math.max(1, getLong(PROP_EXPORT_PARALLELISM, url, info,
+                Runtime.getRuntime().availableProcessors()));
+        this.exportBatchRows = (int) Math.max(1, Math.min(MAX_EXPORT_BATCH_ROWS,
+                getLong(PROP_EXPORT_BATCH_ROWS, url, info, 10_000)));
+        this.exportMaxFileBytes = Math.max(0, getLong(PROP_EXPORT_MAX_FILE_BYTES, url, info, 128L << 20));
+        String compression = get(PROP_EXPORT_COMPRESSION, url, info);
+        this.exportGzip = compression != null && compression.trim().equalsIgnoreCase("gzip");
+        if (!exportGzip && compression != null && !compression.isBlank() && !compression.trim().equalsIgnoreCase("none")) {
+            DriverLogging.getLogger().warning("Ignoring invalid value for " + PROP_EXPORT_COMPRESSION + ": '"
+                    + compression + "'");
+        }
+        this.user = get("user", url, info);
+        this.logScope = url == null && info == null ? DriverLogging.Scope.inherit() : DriverLogging.scopeFrom(url, info);
+    }
+
+    /**
+     * Resolves the driver settings for one connection.
+     *
+     * @param url  connection URL (may be null)
+     * @param info connection properties (may be null)
+     */
+    public static DriverConfig from(String url, Properties info) {
+        return new DriverConfig(url, info);
+    }
+
+    /** Settings with every driver feature at its default (used when no URL/Properties are available). */
+    public static DriverConfig defaults() {
+        return new DriverConfig(null, null);
+    }
+
+    /** TTL of cached DatabaseMetaData results in milliseconds; 0 when the cache is disabled. */
+    public long getMetadataCacheTtlMillis() {
+        return metadataCacheTtlMillis;
+    }
+
+    /** Upper bound on the number of entries in the driver-wide metadata cache. */
+    public int getMetadataCacheMaxEntries() {
+        return metadataCacheMaxEntries;
+    }
+
+    /** Interval between background coordinator health probes in milliseconds; 0 disables background probing. */
+    public long getHealthCheckIntervalMillis() {
+        return healthCheckIntervalMillis;
+    }
+
+    /** Timeout of one coordinator health probe in milliseconds. */
+    public long getHealthCheckTimeoutMillis() {
+        return healthCheckTimeoutMillis;
+    }
+
+    /** Log settings of this connection (level, sampling, rate limit). */
+    public DriverLogging.Scope getLogScope() {
+        return logScope;
+    }
+
+    /** True if identical concurrent SELECTs share one Trino query. */
+    public boolean isSingleFlight() {
+        return singleFlight;
+    }
+
+    /** Rows buffered per shared query. */
+    public int getSingleFlightBufferRows() {
+        return singleFlightBufferRows;
+    }
+
+    /** Time a shared query waits for a consumer that stopped reading, in milliseconds. */
+    public long getSingleFlightStallTimeoutMillis() {
+        return singleFlightStallTimeoutMillis;
+    }
+
+    /** True if queries may request the spooling protocol (the Trino driver's default). */
+    public boolean isSpooling() {
+        return spooling;
+    }
+
+    /** Spooled segments downloaded ahead of the reader per connection; 0 when prefetching is disabled. */
+    public int getSpoolingPrefetchSegments() {
+        return spoolingPrefetchSegments;
+    }
+
+    /** Maximum queries in flight in this JVM; 0 when unlimited. */
+    public int getMaxConcurrentQueries() {
+        return maxConcurrentQueries;
+    }
+
+    /** Maximum queries in flight per client tag (empty when no tag is limited). */
+    public Map<String, Integer> getMaxConcurrentQueriesPerTag() {
+        return maxConcurrentQueriesPerTag;
+    }
+
+    /** Time a statement waits for admission, in milliseconds. */
+    public long getAdmissionQueueTimeoutMillis() {
+        return admissionQueueTimeoutMillis;
+    }
+
+    /** Maximum statements of a script run at the same time. */
+    public int getScriptParallelism() {
+        return scriptParallelism;
+    }
+
+    /** True if the connection's queries are approximated by default. */
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    /** Standard error passed to {@code approx_distinct}; 0 for Trino's default. */
+    public double getApproximateMaxStandardError() {
+        return approximateMaxStandardError;
+    }
+
+    /** Sampling ratio of approximated queries (1 in N rows); 0 or 1 when queries are not sampled. */
+    public int getApproximateSampleRatio() {
+        return approximateSampleRatio;
+    }
+
+    /** True if function-wrapped date filters are rewritten into ranges on the bare column. */
+    public boolean isSargableDates() {
+        return sargableDates;
+    }
+
+    /** Batches of an export encoded at the same time. */
+    public int getExportParallelism() {
+        return exportParallelism;
+    }
+
+    /** Rows per batch of an export. */
+    public int getExportBatchRows() {
+        return exportBatchRows;
+    }
+
+    /** Size in bytes at which an export starts its next file; 0 when exports write a single file. */
+    public long getExportMaxFileBytes() {
+        return exportMaxFileBytes;
+    }
+
+    /** True if exported files are gzip-compressed. */
+    public boolean isExportGzip() {
+        return exportGzip;
+    }
+
+    /** Admission queue priority of the connection's statements. */
+    AdmissionController.Priority getQueryPriority() {
+        return queryPriority;
+    }
+
+    /** True if statements of the connection go through {@link AdmissionController}. */
+    boolean isAdmissionControlled() {
+        return maxConcurrentQueries > 0 || !maxConcurrentQueriesPerTag.isEmpty();
+    }
+
+    /** Client tags of the connection (Trino's {@code clientTags} property). */
+    Set<String> getClientTags() {
+        return clientTags;
+    }
+
+    /**
+     * Trino user the connection was opened with (Properties or URL), or null if not given. Used to key driver-wide
+     * caches without asking the server ({@code DatabaseMetaData.getUserName()} runs a query).
+     */
+    String getUser() {
+        return user;
+    }
+
+    /** Persistent rewrite store of this connection, or null if {@code rewriteStoreFile} is not set. */
+    RewriteStore getRewriteStore() {
+        return rewriteStore;
+    }
+
+    /**
+     * Rewrites {@code sql} with {@link SqlParserLogic#parse}, through the persistent rewrite store when configured.
+     * Rewrite logging follows the log scope of this connection.
+     */
+    String rewrite(String sql) {
+        return rewriteStore != null ? rewriteStore.rewrite(sql, sargableDates, logScope)
+                : SqlParserLogic.parse(sql, sargableDates, logScope);
+    }
+
+    /**
+     * Applies {@link SqlParserLogic#approximate} to rewritten SQL if approximate mode is on for the connection or
+     * requested by an {@code approximate(...)} hint, whose arguments override the connection settings.
+     *
+     * @return the approximation, or null if approximate mode is off for this statement
+     */
+    SqlParserLogic.Approximation approximate(String sql, QueryHints hints) {
+        Map<String, String> hinted = hints != null ? hints.getApproximate() : null;
+        boolean enabled = approximate;
+        double maxStandardError = approximateMaxStandardError;
+        int sampleRatio = approximateSampleRatio;
+        if (hinted != null) {
+            enabled = Boolean.parseBoolean(hinted.getOrDefault(QueryHints.APPROXIMATE_ENABLED, "true"));
+            String error = hinted.get(QueryHints.APPROXIMATE_MAX_ERROR);
+            if (error != null) {
+                maxStandardError = standardError(error, QueryHints.APPROXIMATE_MAX_ERROR);
+            }
+            String ratio = hinted.get(QueryHints.APPROXIMATE_SAMPLE_RATIO);
+            if (ratio != null) {
+                try {
+                    sampleRatio = Math.max(0, Integer.parseInt(ratio.trim()));
+                } catch (NumberFormatException e) {
+                    DriverLogging.getLogger().warning("Ignoring invalid value for " + QueryHints.APPROXIMATE_SAMPLE_RATIO
+                            + ": '" + ratio + "'");
+                }
+            }
+        }
+        return enabled && sql != null ? SqlParserLogic.approximate(sql, maxStandardError, sampleRatio, logScope)
+                : null;
+    }
+
+    /**
+     * Classifies one execution of {@code sql} with the connection's {@code workloadRules}.
+     *
+     * @return the workload, or null if the connection has no workload rules
+     */
+    WorkloadClassifier.Workload classify(String sql) {
+        return workloadClassifier != null && sql != null ? workloadClassifier.classify(sql) : null;
+    }
+
+    /** Parses a maximum standard error for {@code approx_distinct}; 0 (Trino's default) if unset or invalid. */
+    private static double standardError(String value, String key) {
+        if (value == null || value.isBlank()) return 0;
+        try {
+            double error = Double.parseDouble(value.trim());
+            if (error >= MIN_STANDARD_ERROR && error <= MAX_STANDARD_ERROR) {
+                return error;
+            }
+        } catch (NumberFormatException e) {
+            // logged below
+        }
+        DriverLogging.getLogger().warning("Ignoring invalid value for " + key + ": '" + value
+                + "' (expected " + MIN_STANDARD_ERROR + " to " + MAX_STANDARD_ERROR + ")");
+        return 0;
+    }
+
+    /**
+     * Returns a driver setting from Properties, URL query string or system property (in that order).
+     *
+     * @return the raw value, or null if not set anywhere
+     */
+    static String get(String key, String url, Properties info) {
+        if (info != null && info.containsKey(key)) {
+            return info.getProperty(key);
+        }
+        if (url != null) {
+            String fromUrl = getParamFromUrl(url, key);
+            if (fromUrl != null) return fromUrl;
+        }
+        return System.getProperty(SYSTEM_PREFIX + key);
+    }
+
+    static long getLong(String key, String url, Properties info, long defaultValue) {
+        String value = get(key, url, info);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            DriverLogging.getLogger().warning("Ignoring invalid value for " + key + ": '" + value + "'");
+            return defaultValue;
+        }
+    }
+
+    static boolean getBoolean(String key, String url, Properties info, boolean defaultValue) {
+        String value = get(key, url, info);
+        if (value == null || value.isBlank()) return defaultValue;
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /** Parses {@code tag:limit,tag:limit}; invalid entries are logged and skipped. */
+    static Map<String, Integer> parseTagLimits(String value) {
+        if (value == null || value.isBlank()) return Map.of();
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            int colon = entry.lastIndexOf(':');
+            try {
+                String tag = colon > 0 ? entry.substring(0, colon).trim() : "";
+                int limit = Integer.parseInt(entry.substring(colon + 1).trim());
+                if (tag.isEmpty() || limit < 1) throw new NumberFormatException();
+                limits.put(tag, limit);
+            } catch (NumberFormatException e) {
+                DriverLogging.getLogger().warning("Ignoring invalid entry of " + PROP_MAX_CONCURRENT_QUERIES_PER_TAG
+                        + ": '" + entry.trim() + "'");
+            }
+        }
+        return Collections.unmodifiableMap(limits);
+    }
+
+    /** Parses a comma-separated tag list. */
+    static Set<String> parseTags(String value) {
+        if (value == null || value.isBlank()) return Set.of();
+        Set<String> tags = new LinkedHashSet<>();
+        for (String tag : value.split(",")) {
+            if (!tag.isBlank()) tags.add(tag.trim());
+        }
+        return Collections.unmodifiableSet(tags);
+    }
+
+    /** Extracts a query parameter from URL (e.g. ?logLevel=FINE or &logFile=/tmp/driver.log). */
+    static String getParamFromUrl(String url, String paramKey) {
+        int q = url.indexOf('?');
+        if (q < 0) return null;
+        String query = url.substring(q + 1);
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq > 0 && paramKey.equalsIgnoreCase(param.substring(0, eq).trim())) {
+                return param.substring(eq + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    static boolean isDriverKey(String key) {
+        for (String driverKey : DRIVER_KEYS) {
+            if (driverKey.equalsIgnoreCase(key)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes driver-only query parameters from the URL so Trino's URI parser never sees them.
+     *
+     * @param url full JDBC URL possibly containing driver parameters
+     * @return URL with driver parameters stripped
+     */
+    public static String stripFromUrl(String url) {
+        if (url == null) return null;
+        int q = url.indexOf('?');
+        if (q < 0) return url;
+        String base = url.substring(0, q);
+        String query = url.substring(q + 1);
+        StringBuilder rest = new StringBuilder();
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            String key = (eq > 0) ? param.substring(0, eq).trim() : param.trim();
+            if (key.isEmpty()) continue;
+            if (isDriverKey(key)) {
+                continue; // strip our params
+            }
+            if (rest.length() > 0) rest.append('&');
+            rest.append(param);
+        }
+        if (rest.length() == 0) return base;
+        return base + '?' + rest;
+    }
+
+    /**
+     * Returns a copy of the connection properties without driver-only keys.
+     *
+     * @param info connection properties (may be null)
+     * @return properties safe to pass to the Trino driver (null if {@code info} was null)
+     */
+    public static Properties stripFromProperties(Properties info) {
+        if (info == null) return null;
+        Properties copy = new Properties();
+        for (String name : info.stringPropertyNames()) {
+            if (!isDriverKey(name)) {
+                copy.setProperty(name, info.getProperty(name));
+            }
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,244 @@
+package io.trino.driver;
+
+import io.trino.jdbc.$internal.jackson.core.JsonFactory;
+import io.trino.jdbc.$internal.jackson.core.JsonParser;
+import io.trino.jdbc.$internal.jackson.core.JsonToken;
+import io.trino.jdbc.$internal.okhttp3.Interceptor;
+import io.trino.jdbc.$internal.okhttp3.Request;
+import io.trino.jdbc.$internal.okhttp3.Response;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+
+/**
+ * JDK Flight Recorder events of the driver, in the category "Trino Driver".
+ * <p>
+ * Events are created and committed on the hot paths with the usual JFR pattern ({@code begin()}, then
+ * {@code shouldCommit()} before any field is computed), so they cost almost nothing when no recording is running
+ * or the event is disabled. Enable them with {@code -XX:StartFlightRecording} and a settings file, or
+ * {@code jfr configure +io.trino.driver.Execute#enabled=true ...}.
+ */
+final class DriverEvents {
+
+    private static final String CATEGORY = "Trino Driver";
+    private static final String STATEMENT_PATH = "/v1/statement";
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private DriverEvents() {
+        // Utility class - prevent instantiation
+    }
+
+    @Name("io.trino.driver.Rewrite")
+    @Label("SQL Rewrite")
+    @Category(CATEGORY)
+    @Description("SQL rewritten by SqlParserLogic.parse")
+    @StackTrace(false)
+    static final class RewriteEvent extends Event {
+        @Label("Original Length")
+        int originalLength;
+
+        @Label("Rewritten Length")
+        int rewrittenLength;
+
+        @Label("Changed")
+        @Description("The rewritten SQL differs from the original")
+        boolean changed;
+
+        @Label("Fallback")
+        @Description("JSQLParser could not parse the SQL; only ODBC escapes were replaced")
+        boolean fallback;
+    }
+
+    @Name("io.trino.driver.Execute")
+    @Label("Statement Execute")
+    @Category(CATEGORY)
+    @Description("Statement execution, from submission until the first row (or the update count) is available")
+    static final class ExecuteEvent extends Event {
+        @Label("Method")
+        String method;
+
+        @Label("SQL")
+        @Description("SQL sent to Trino (truncated)")
+        String sql;
+
+        @Label("Query ID")
+        String queryId;
+
+        @Label("Execute Time")
+        @Description("Time until execute returned")
+        @Timespan(Timespan.NANOSECONDS)
+        long executeTime;
+
+        @Label("Time to First Row")
+        @Description("Time until the first row was read; -1 if the result had no rows or was not read")
+        @Timespan(Timespan.NANOSECONDS)
+        long timeToFirstRow = -1;
+
+        @Label("Update Count")
+        long updateCount = -1;
+
+        @Label("Failed")
+        boolean failed;
+
+        private transient long startNanos;
+
+        /** Starts the event (and its clock). */
+        void start() {
+            startNanos = System.nanoTime();
+            begin();
+        }
+
+        /** Nanoseconds since {@link #start()}. */
+        long elapsed() {
+            return System.nanoTime() - startNanos;
+        }
+
+        /** Ends the event and commits it if it passes the recording's settings. */
+        void finish() {
+            end();
+            if (shouldCommit()) {
+                commit();
+            }
+        }
+    }
+
+    @Name("io.trino.driver.Fetch")
+    @Label("Result Fetch")
+    @Category(CATEGORY)
+    @Description("One page of a query fetched from the coordinator (request until response headers)")
+    @StackTrace(false)
+    static final class FetchEvent extends Event {
+        @Label("Query ID")
+        String queryId;
+
+        @Label("Rows")
+        @Description("Rows in the page, inline or in spooled segments")
+        long rows;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Spooled Segments")
+        int segments;
+
+        @Label("Spooled Bytes")
+        @Description("Size of the spooled segments referenced by the page")
+        @DataAmount
+        long spooledBytes;
+    }
+
+    @Name("io.trino.driver.ConnectionOpen")
+    @Label("Connection Open")
+    @Category(CATEGORY)
+    @Description("Connection opened through MyTrinoDriver")
+    static final class ConnectEvent extends Event {
+        @Label("URL")
+        String url;
+
+        @Label("Coordinator")
+        @Description("Coordinator chosen for a multi-host URL")
+        String coordinator;
+
+        @Label("User")
+        String user;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    /**
+     * OkHttp interceptor of the coordinator client that emits a {@link FetchEvent} for every statement page.
+     */
+    static Response onCoordinatorCall(Interceptor.Chain chain) throws IOException {
+        FetchEvent event = new FetchEvent();
+        if (!event.isEnabled()) {
+            return chain.proceed(chain.request());
+        }
+        Request request = chain.request();
+        event.begin();
+        Response response = chain.proceed(request);
+        event.end();
+        if (response.isSuccessful() && request.url().encodedPath().startsWith(STATEMENT_PATH)
+                && event.shouldCommit()) {
+            try {
+                describe(event, response);
+            } catch (IOException | RuntimeException e) {
+                event.bytes = response.body().contentLength();
+            }
+            event.commit();
+        }
+        return response;
+    }
+
+    /** Fills the query id, row count and sizes of a page from its JSON, without consuming the body. */
+    private static void describe(FetchEvent event, Response response) throws IOException {
+        try (JsonParser parser = JSON.createParser(response.body().source().peek().inputStream())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("id".equals(field)) {
+                    event.queryId = parser.getText();
+                } else if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        event.rows++;
+                        parser.skipChildren();
+                    }
+                } else if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+                    describeSegments(event, parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            event.bytes = parser.currentLocation().getByteOffset();
+        }
+    }
+
+    /** Reads {@code {"encoding":..., "segments":[{"type":..., "metadata":{"rowsCount":..., "segmentSize":...}}]}}. */
+    private static void describeSegments(FetchEvent event, JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            if (parser.nextToken() != JsonToken.START_ARRAY || !"segments".equals(field)) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                boolean spooled = false;
+                long rows = 0;
+                long size = 0;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    JsonToken token = parser.nextToken();
+                    if ("type".equals(name)) {
+                        spooled = "spooled".equals(parser.getText());
+                    } else if ("metadata".equals(name) && token == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String attribute = parser.currentName();
+                            parser.nextToken();
+                            if ("rowsCount".equals(attribute)) rows = parser.getValueAsLong();
+                            else if ("segmentSize".equals(attribute)) size = parser.getValueAsLong();
+                            else parser.skipChildren();
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                event.rows += rows;
+                if (spooled) {
+                    event.segments++;
+                    event.spooledBytes += size;
+                }
+            }
+        }
+    }
+}
@@ -2,8 +2,12 @@ package io.trino.driver;
 
 import java.io.IOException;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.FileHandler;
+import java.util.logging.Handler;
 import java.util.logging.Level;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
@@ -11,14 +15,23 @@ import java.util.logging.SimpleFormatter;
  * JDBC driver logging using the same style as the Trino driver (java.util.logging).
  * Log level and log file can be set via connection properties or system properties.
  * <p>
- * Connection properties (same mechanism as Trino connection params, URL or Properties):
+ * Connection properties (same mechanism as Trino connection params, URL or Properties) only affect
+ * the connection that sets them; they are carried in a {@link Scope}:
  * <ul>
  *   <li>{@code logLevel} – JUL level: SEVERE, WARNING, INFO, CONFIG, FINE, FINER, FINEST</li>
- *   <li>{@code logFile} – path to log file (driver logs are appended to this file)</li>
+ *   <li>{@code logFile} – path to log file (driver logs are appended to this file). Process-wide: the file is one
+ *       handler of the driver logger that receives the records of every connection, and a connection that names a
+ *       different file moves all logging to it</li>
+ *   <li>{@code logSampleRate} – log statement details for 1 in N statements</li>
+ *   <li>{@code logSlowQueryMillis} – log statement details only for statements slower than this</li>
+ *   <li>{@code logMaxPerSecond} – upper bound on scoped log records per second</li>
  * </ul>
+ * The level of a scope applies to everything logged for its connection, including the SQL rewrite and approximation
+ * (FINER), which receive the scope of the connection that runs the statement.
+ * <p>
  * System properties (process-wide defaults):
  * <ul>
- *   <li>{@code io.trino.driver.logLevel} – same values as logLevel</li>
+ *   <li>{@code io.trino.driver.logLevel} – same values as logLevel; sets the level of the driver logger</li>
  *   <li>{@code io.trino.driver.logFile} – path to log file</li>
  * </ul>
  */
@@ -33,6 +46,15 @@ public final class DriverLogging {
     /** Connection property key for log file path (Trino-style: URL or Properties). */
     public static final String PROP_LOG_FILE = "logFile";
 
+    /** Connection property key: log statement details for 1 in N statements (default 1 = every statement). */
+    public static final String PROP_LOG_SAMPLE_RATE = "logSampleRate";
+
+    /** Connection property key: only log statements whose execution took at least this many milliseconds. */
+    public static final String PROP_LOG_SLOW_QUERY_MILLIS = "logSlowQueryMillis";
+
+    /** Connection property key: maximum number of log records per second for one connection (0 = unlimited). */
+    public static final String PROP_LOG_MAX_PER_SECOND = "logMaxPerSecond";
+
     private static final Logger LOG = Logger.getLogger(LOGGER_NAME);
 
     private static volatile String currentLogFile;
@@ -49,39 +71,31 @@ public final class DriverLogging {
     }
 
     /**
-     * Applies log level and log file from connection URL, properties, and system properties (same style as Trino).
+     * Applies the process-wide log level (system property {@code io.trino.driver.logLevel}) and the log file
+     * from connection URL, properties, or system properties (same style as Trino).
+     * A {@code logLevel} given on the connection does not change the driver logger; see {@link #scopeFrom}.
      * Call this at connection entry point (e.g. in connect()).
      *
      * @param url  connection URL (may contain logLevel=, logFile= in query string; may be null)
      * @param info connection properties (may be null)
      */
     public static void applyLevelFrom(String url, Properties info) {
-        String levelName = getProperty(PROP_LOG_LEVEL, url, info, LOGGER_NAME + ".logLevel");
+        String levelName = System.getProperty(LOGGER_NAME + "." + PROP_LOG_LEVEL);
         if (levelName != null && !levelName.isEmpty()) {
             Level level = parseLevel(levelName);
             if (level != null) {
                 LOG.setLevel(level);
             }
         }
-        String logPath = getProperty(PROP_LOG_FILE, url, info, LOGGER_NAME + ".logFile");
+        String logPath = DriverConfig.get(PROP_LOG_FILE, url, info);
         if (logPath != null && !logPath.isEmpty()) {
             setLogFile(logPath);
         }
     }
 
-    private static String getProperty(String key, String url, Properties info, String sysKey) {
-        if (info != null && info.containsKey(key)) {
-            return info.getProperty(key);
-        }
-        if (url != null) {
-            String fromUrl = getParamFromUrl(url, key);
-            if (fromUrl != null) return fromUrl;
-        }
-        return System.getProperty(sysKey);
-    }
-
     /**
-     * Sets the log file path. Driver log messages are appended to this file.
+     * Sets the log file path. Driver log messages of all connections are appended to this file, replacing the file
+     * set before (there is one log file per process).
      * Can be called from {@code applyLevelFrom} (via logFile property) or directly.
      *
      * @param path absolute or relative path to the log file (e.g. {@code /var/log/mytrino.log} or {@code C:\logs\mytrino.log})
@@ -101,7 +115,8 @@ public final class DriverLogging {
             try {
                 FileHandler handler = new FileHandler(normalized, true);
                 handler.setFormatter(new SimpleFormatter());
-                handler.setLevel(LOG.getLevel() != null ? LOG.getLevel() : Level.ALL);
+                // Filtering happens at the logger and in connection scopes; the file takes whatever passes.
+                handler.setLevel(Level.ALL);
                 LOG.addHandler(handler);
                 fileHandler = handler;
                 currentLogFile = normalized;
@@ -113,20 +128,11 @@ public final class DriverLogging {
 
     /** Extracts a query parameter from URL (e.g. ?logLevel=FINE or &logFile=/tmp/driver.log). */
     static String getParamFromUrl(String url, String paramKey) {
-        int q = url.indexOf('?');
-        if (q < 0) return null;
-        String query = url.substring(q + 1);
-        for (String param : query.split("&")) {
-            int eq = param.indexOf('=');
-            if (eq > 0 && paramKey.equalsIgnoreCase(param.substring(0, eq).trim())) {
-                return param.substring(eq + 1).trim();
-            }
-        }
-        return null;
+        return DriverConfig.getParamFromUrl(url, paramKey);
     }
 
     /**
-     * Removes driver-only query parameters (logLevel, logFile) from the URL.
+     * Removes driver-only query parameters (logLevel, logFile and the other {@link DriverConfig} keys) from the URL.
      * Call this before passing the URL to the Trino driver, so it never sees
      * invalid characters (e.g. backslash in logFile=C:\logs\driver.log) or unknown params.
      *
@@ -134,24 +140,111 @@ public final class DriverLogging {
      * @return URL with our params stripped (safe for Trino's URI parser)
      */
     public static String stripDriverParamsFromUrl(String url) {
-        if (url == null) return null;
-        int q = url.indexOf('?');
-        if (q < 0) return url;
-        String base = url.substring(0, q);
-        String query = url.substring(q + 1);
-        StringBuilder rest = new StringBuilder();
-        for (String param : query.split("&")) {
-            int eq = param.indexOf('=');
-            String key = (eq > 0) ? param.substring(0, eq).trim() : param.trim();
-            if (key.isEmpty()) continue;
-            if (PROP_LOG_LEVEL.equalsIgnoreCase(key) || PROP_LOG_FILE.equalsIgnoreCase(key)) {
-                continue; // strip our params
+        return DriverConfig.stripFromUrl(url);
+    }
+
+    /**
+     * Builds the log scope of one connection from its URL and properties.
+     *
+     * @param url  connection URL (may be null)
+     * @param info connection properties (may be null)
+     */
+    public static Scope scopeFrom(String url, Properties info) {
+        String levelName = info != null && info.containsKey(PROP_LOG_LEVEL)
+                ? info.getProperty(PROP_LOG_LEVEL)
+                : url != null ? getParamFromUrl(url, PROP_LOG_LEVEL) : null;
+        return new Scope(
+                parseLevel(levelName),
+                (int) Math.max(1, DriverConfig.getLong(PROP_LOG_SAMPLE_RATE, url, info, 1)),
+                DriverConfig.getLong(PROP_LOG_SLOW_QUERY_MILLIS, url, info, 0),
+                (int) DriverConfig.getLong(PROP_LOG_MAX_PER_SECOND, url, info, 0));
+    }
+
+    /**
+     * Log settings of one connection, carried by its connection and statement wrappers.
+     * <p>
+     * A scope with its own level logs at that level for its connection only, without changing the level of the
+     * driver logger (records are handed to the driver logger's handlers directly). Without a level it follows the
+     * driver logger. Statement sampling and the per-second cap use atomic counters only, so checking them on the
+     * execute path never blocks.
+     */
+    public static final class Scope {
+        private static final Scope INHERIT = new Scope(null, 1, 0, 0);
+
+        private final Level level;
+        private final int sampleRate;
+        private final long slowQueryNanos;
+        private final int maxPerSecond;
+        private final AtomicLong statements = new AtomicLong();
+        /** Current one-second window: (epoch second << 32) | records logged in it. */
+        private final AtomicLong window = new AtomicLong();
+
+        Scope(Level level, int sampleRate, long slowQueryMillis, int maxPerSecond) {
+            this.level = level;
+            this.sampleRate = sampleRate;
+            this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+            this.maxPerSecond = maxPerSecond;
+        }
+
+        /** Scope that follows the driver logger (no connection-specific settings). */
+        public static Scope inherit() {
+            return INHERIT;
+        }
+
+        /** Returns true if a record at {@code recordLevel} would be logged for this connection. */
+        public boolean isLoggable(Level recordLevel) {
+            if (level == null) {
+                return LOG.isLoggable(recordLevel);
+            }
+            return recordLevel.intValue() >= level.intValue() && level != Level.OFF;
+        }
+
+        /** Logs {@code message} for this connection, subject to the level and the per-second cap. */
+        public void log(Level recordLevel, String message) {
+            if (!isLoggable(recordLevel) || !tryAcquire()) return;
+            LogRecord record = new LogRecord(recordLevel, message);
+            record.setLoggerName(LOGGER_NAME);
+            record.setSourceClassName(null);
+            if (LOG.isLoggable(recordLevel)) {
+                LOG.log(record);
+            } else {
+                publish(record);
+            }
+        }
+
+        /**
+         * Decides whether the next statement's details are logged (1 in {@code logSampleRate}).
+         * Returns false without touching the counter when statement logging at FINE is off.
+         */
+        public boolean sampleStatement() {
+            if (!isLoggable(Level.FINE)) return false;
+            return sampleRate == 1 || statements.getAndIncrement() % sampleRate == 0;
+        }
+
+        /** Slow-query threshold in nanoseconds; 0 when every sampled statement is logged. */
+        public long getSlowQueryNanos() {
+            return slowQueryNanos;
+        }
+
+        /** Lock-free fixed-window limiter: at most {@code logMaxPerSecond} records per wall-clock second. */
+        boolean tryAcquire() {
+            if (maxPerSecond <= 0) return true;
+            long second = System.currentTimeMillis() / 1000;
+            while (true) {
+                long current = window.get();
+                long next = (current >>> 32) == second ? current + 1 : (second << 32) | 1;
+                if ((next & 0xFFFFFFFFL) > maxPerSecond) return false;
+                if (window.compareAndSet(current, next)) return true;
+            }
+        }
+
+        private static void publish(LogRecord record) {
+            for (Logger logger = LOG; logger != null; logger = logger.getUseParentHandlers() ? logger.getParent() : null) {
+                for (Handler handler : logger.getHandlers()) {
+                    handler.publish(record);
+                }
             }
-            if (rest.length() > 0) rest.append('&');
-            rest.append(param);
         }
-        if (rest.length() == 0) return base;
-        return base + '?' + rest;
     }
 
     private static Level parseLevel(String name) {
@@ -0,0 +1,48 @@
+package io.trino.driver;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Outcome of an export by {@link ResultExporter}.
+ */
+public final class ExportResult {
+
+    private final List<Path> files;
+    private final long rowCount;
+    private final long byteCount;
+    private final long elapsedMillis;
+
+    ExportResult(List<Path> files, long rowCount, long byteCount, long elapsedMillis) {
+        this.files = List.copyOf(files);
+        this.rowCount = rowCount;
+        this.byteCount = byteCount;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /** The files written, in result order (at least one, even for an empty result). */
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    /** Number of rows exported. */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /** Total size of the files written, in bytes. */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /** Time from execution until the last file was closed, in milliseconds. */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportResult[" + files.size() + " files, " + rowCount + " rows, " + byteCount + " bytes, "
+                + elapsedMillis + " ms]";
+    }
+}
@@ -0,0 +1,272 @@
+package io.trino.driver;
+
+import javax.sql.rowset.RowSetMetaDataImpl;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, fully read copy of a small result (column metadata plus rows) that can be replayed any number of
+ * times, from any thread. Each call to {@link #newResultSet()} returns an independent forward-only, read-only
+ * ResultSet with its own cursor over the shared rows; closing it does not affect the stored rows.
+ */
+final class MaterializedResult {
+
+    private final ResultSetMetaData metaData;
+    private final List<Object[]> rows;
+
+    MaterializedResult(ResultSetMetaData metaData, List<Object[]> rows) {
+        this.metaData = metaData;
+        this.rows = Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * Reads all remaining rows of {@code rs} (does not close it).
+     */
+    static MaterializedResult of(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = copyMetaData(rs.getMetaData());
+        int columns = meta.getColumnCount();
+        List<Object[]> rows = new ArrayList<>();
+        while (rs.next()) {
+            rows.add(readRow(rs, columns));
+        }
+        return new MaterializedResult(meta, rows);
+    }
+
+    /** Returns an immutable copy of {@code source} that stays valid after the ResultSet is closed. */
+    static ResultSetMetaData copyMetaData(ResultSetMetaData source) throws SQLException {
+        int columns = source.getColumnCount();
+        RowSetMetaDataImpl meta = new RowSetMetaDataImpl();
+        meta.setColumnCount(columns);
+        for (int i = 1; i <= columns; i++) {
+            meta.setColumnName(i, source.getColumnName(i));
+            meta.setColumnLabel(i, source.getColumnLabel(i));
+            meta.setColumnType(i, source.getColumnType(i));
+            meta.setColumnTypeName(i, source.getColumnTypeName(i));
+            meta.setNullable(i, source.isNullable(i));
+            meta.setPrecision(i, Math.max(0, source.getPrecision(i)));
+            meta.setScale(i, Math.max(0, source.getScale(i)));
+        }
+        return meta;
+    }
+
+    /** Reads the current row of {@code rs}. */
+    static Object[] readRow(ResultSet rs, int columns) throws SQLException {
+        Object[] row = new Object[columns];
+        for (int i = 0; i < columns; i++) {
+            row[i] = rs.getObject(i + 1);
+        }
+        return row;
+    }
+
+    int getRowCount() {
+        return rows.size();
+    }
+
+    ResultSetMetaData getMetaData() {
+        return metaData;
+    }
+
+    /** Returns a new ResultSet positioned before the first row. */
+    ResultSet newResultSet() {
+        return new Cursor(metaData, null) {
+            private int position;
+
+            @Override
+            Object[] fetch() {
+                return position < rows.size() ? rows.get(position++) : null;
+            }
+
+            @Override
+            boolean isEmpty() {
+                return rows.isEmpty();
+            }
+
+            @Override
+            public String toString() {
+                return "MaterializedResultSet[" + rows.size() + " rows]";
+            }
+        }.newResultSet();
+    }
+
+    /**
+     * Forward-only, read-only ResultSet over rows supplied by {@link #fetch()}, with the getters and type
+     * conversions of a cached result. Used for replayed results and for rows shared between statements.
+     */
+    abstract static class Cursor implements InvocationHandler {
+        private final ResultSetMetaData metaData;
+        private final Statement statement;
+        private Object[] row;
+        private int rowNumber;
+        private boolean afterLast;
+        private boolean closed;
+        private boolean wasNull;
+
+        /**
+         * @param metaData  column metadata of the rows
+         * @param statement statement returned by {@code getStatement()} (may be null)
+         */
+        Cursor(ResultSetMetaData metaData, Statement statement) {
+            this.metaData = metaData;
+            this.statement = statement;
+        }
+
+        /** Returns the next row, or null after the last one. */
+        abstract Object[] fetch() throws SQLException;
+
+        /** Called once when the ResultSet is closed. */
+        void release() throws SQLException {
+        }
+
+        /** True if the result is known to have no rows ({@code isBeforeFirst()} is then false). */
+        boolean isEmpty() {
+            return false;
+        }
+
+        final ResultSet newResultSet() {
+            return (ResultSet) Proxy.newProxyInstance(
+                    ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "next":
+                    checkOpen();
+                    if (afterLast) return false;
+                    row = fetch();
+                    if (row == null) {
+                        afterLast = true;
+                        return false;
+                    }
+                    rowNumber++;
+                    return true;
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "wasNull":
+                    return wasNull;
+                case "getMetaData":
+                    return metaData;
+                case "findColumn":
+                    return findColumn((String) args[0]);
+                case "getRow":
+                    return row != null && !afterLast ? rowNumber : 0;
+                case "isBeforeFirst":
+                    return rowNumber == 0 && !afterLast && !isEmpty();
+                case "isAfterLast":
+                    return afterLast && rowNumber > 0;
+                case "getType":
+                    return ResultSet.TYPE_FORWARD_ONLY;
+                case "getConcurrency":
+                    return ResultSet.CONCUR_READ_ONLY;
+                case "getFetchDirection":
+                    return ResultSet.FETCH_FORWARD;
+                case "getFetchSize":
+                    return 0;
+                case "setFetchSize":
+                case "setFetchDirection":
+                case "clearWarnings":
+                    return null;
+                case "getWarnings":
+                    return null;
+                case "getStatement":
+                    return statement;
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                    throw new SQLException("Cannot unwrap to " + args[0]);
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(proxy);
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return toString();
+                default:
+                    break;
+            }
+            if (name.startsWith("get") && args != null && args.length >= 1) {
+                int column = args[0] instanceof String label ? findColumn(label) : (Integer) args[0];
+                Class<?> target = args.length == 2 && args[1] instanceof Class<?> type ? type : method.getReturnType();
+                return convert(value(column), target);
+            }
+            throw new SQLFeatureNotSupportedException("Not supported on a cached result: " + name);
+        }
+
+        private Object value(int column) throws SQLException {
+            checkOpen();
+            if (row == null || afterLast) {
+                throw new SQLException("Cursor is not on a row");
+            }
+            if (column < 1 || column > row.length) {
+                throw new SQLException("Invalid column index: " + column);
+            }
+            Object value = row[column - 1];
+            wasNull = value == null;
+            return value;
+        }
+
+        private int findColumn(String label) throws SQLException {
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                if (label.equalsIgnoreCase(metaData.getColumnLabel(i))) return i;
+            }
+            throw new SQLException("Invalid column label: " + label);
+        }
+
+        private void checkOpen() throws SQLException {
+            if (closed) throw new SQLException("ResultSet is closed");
+        }
+
+        private static Object convert(Object value, Class<?> target) throws SQLException {
+            if (value == null) {
+                if (target == boolean.class) return false;
+                if (target.isPrimitive()) return convert(0, target);
+                return null;
+            }
+            if (target == Object.class || target.isInstance(value)) return value;
+            if (target == String.class) return value.toString();
+            if (value instanceof Number number) {
+                if (target == int.class || target == Integer.class) return number.intValue();
+                if (target == long.class || target == Long.class) return number.longValue();
+                if (target == short.class || target == Short.class) return number.shortValue();
+                if (target == byte.class || target == Byte.class) return number.byteValue();
+                if (target == double.class || target == Double.class) return number.doubleValue();
+                if (target == float.class || target == Float.class) return number.floatValue();
+                if (target == boolean.class || target == Boolean.class) return number.intValue() != 0;
+                if (target == BigDecimal.class) return new BigDecimal(number.toString());
+            }
+            if (value instanceof Boolean bool && (target == boolean.class)) return bool;
+            if (value instanceof String text) {
+                try {
+                    if (target == int.class || target == Integer.class) return Integer.parseInt(text.trim());
+                    if (target == long.class || target == Long.class) return Long.parseLong(text.trim());
+                    if (target == short.class || target == Short.class) return Short.parseShort(text.trim());
+                    if (target == double.class || target == Double.class) return Double.parseDouble(text.trim());
+                    if (target == boolean.class || target == Boolean.class) return Boolean.parseBoolean(text.trim());
+                    if (target == BigDecimal.class) return new BigDecimal(text.trim());
+                } catch (NumberFormatException e) {
+                    throw new SQLException("Cannot convert '" + text + "' to " + target.getSimpleName(), e);
+                }
+            }
+            throw new SQLException("Cannot convert " + value.getClass().getSimpleName() + " to " + target.getSimpleName());
+        }
+    }
+}
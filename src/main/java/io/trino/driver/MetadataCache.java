@@ -0,0 +1,300 @@
+package io.trino.driver;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Driver-wide cache for {@link java.sql.DatabaseMetaData} result sets, shared across connections.
+ * <p>
+ * Entries are keyed by connection URL, user, method name and arguments. Results are materialized into a
+ * {@link MaterializedResult}; every hit gets its own cursor over the shared rows. Entries expire after the TTL of
+ * the connection that reads them, the cache is bounded (least recently used entries are evicted), and
+ * entries that are read during the last quarter of their TTL are reloaded in the background so hot
+ * metadata never expires in front of a BI tool.
+ * <p>
+ * Concurrent misses of the same key share one load. A load or refresh that started before an {@link #invalidate}
+ * of its URL (or {@link #invalidateAll}) returns its rows to the caller but does not store them. The size bound is
+ * process-wide: the largest {@code metadataCacheMaxEntries} of any connection that used the cache.
+ */
+public final class MetadataCache {
+
+    private static final MetadataCache INSTANCE = new MetadataCache();
+
+    /** Size bound until a connection sets one. */
+    static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /** Entries in access order. Guards itself and the generation fields below. */
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    /** Incremented by every invalidation. */
+    private long generation;
+    /** Generation of the last {@link #invalidateAll}. */
+    private long invalidatedAll;
+    /** Generation of the last {@link #invalidate} of each URL. */
+    private final Map<String, Long> invalidated = new HashMap<>();
+    /** Loads of missing or expired entries in progress, shared by concurrent misses of the same key. */
+    private final Map<Key, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final ExecutorService refresher = new ThreadPoolExecutor(0, 2, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(256), MetadataCache::newRefreshThread, new ThreadPoolExecutor.DiscardPolicy());
+    /** Largest bound set by any connection; 0 until one sets it. */
+    private final AtomicInteger maxEntries = new AtomicInteger();
+
+    private MetadataCache() {
+    }
+
+    static MetadataCache getInstance() {
+        return INSTANCE;
+    }
+
+    /** Loads a metadata result set from the server (the uncached DatabaseMetaData call). */
+    @FunctionalInterface
+    interface Loader {
+        ResultSet load() throws SQLException;
+    }
+
+    /** Removes every cached metadata result (e.g. after DDL run outside this driver). */
+    public static void invalidateAll() {
+        synchronized (INSTANCE.entries) {
+            INSTANCE.entries.clear();
+            INSTANCE.invalidatedAll = ++INSTANCE.generation;
+            INSTANCE.invalidated.clear();
+        }
+    }
+
+    /**
+     * Removes all cached metadata results for one server URL.
+     *
+     * @param url the value of {@code DatabaseMetaData.getURL()} for the connections to invalidate
+     */
+    public static void invalidate(String url) {
+        synchronized (INSTANCE.entries) {
+            INSTANCE.entries.keySet().removeIf(key -> Objects.equals(key.url, url));
+            INSTANCE.invalidated.put(url, ++INSTANCE.generation);
+        }
+    }
+
+    /** Number of cache lookups served from the cache since the driver was loaded. */
+    public static long getHitCount() {
+        return INSTANCE.hits.get();
+    }
+
+    /** Number of cache lookups that went to the server since the driver was loaded. */
+    public static long getMissCount() {
+        return INSTANCE.misses.get();
+    }
+
+    /** Current number of cached metadata results. */
+    public static int size() {
+        synchronized (INSTANCE.entries) {
+            return INSTANCE.entries.size();
+        }
+    }
+
+    /**
+     * Raises the size bound to {@code maxEntries} if it is larger. The cache is shared by every connection, so the
+     * largest bound asked for wins, whatever the order in which connections are opened.
+     */
+    void setMaxEntries(int maxEntries) {
+        if (maxEntries > 0) {
+            this.maxEntries.accumulateAndGet(maxEntries, Math::max);
+        }
+    }
+
+    /** Removes every entry and restores the default size bound (tests only). */
+    static void reset() {
+        invalidateAll();
+        INSTANCE.maxEntries.set(0);
+    }
+
+    static Key key(String url, String user, String method, Object[] args) {
+        if (args == null) {
+            return new Key(url, user, method, List.of());
+        }
+        Object[] copy = args.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] instanceof Object[] array) {
+                copy[i] = array.clone(); // e.g. the types filter of getTables
+            }
+        }
+        return new Key(url, user, method, Arrays.asList(copy));
+    }
+
+    /**
+     * Returns a read-only result set for the key, loading it with {@code loader} if absent or older than {@code ttlMillis}.
+     */
+    ResultSet get(Key key, long ttlMillis, Loader loader) throws SQLException {
+        long now = System.nanoTime();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            long ageMillis = TimeUnit.NANOSECONDS.toMillis(now - entry.loadedAt);
+            if (ageMillis < ttlMillis) {
+                hits.incrementAndGet();
+                if (ageMillis >= ttlMillis - ttlMillis / 4 && entry.refreshing.compareAndSet(false, true)) {
+                    refresher.execute(() -> refresh(key, loader));
+                }
+                return entry.rows.newResultSet();
+            }
+        }
+        misses.incrementAndGet();
+        CompletableFuture<Entry> load = new CompletableFuture<>();
+        CompletableFuture<Entry> running = loading.putIfAbsent(key, load);
+        if (running != null) {
+            return await(running).rows.newResultSet();
+        }
+        try {
+            Entry loaded = loadAndPut(key, loader);
+            load.complete(loaded);
+            return loaded.rows.newResultSet();
+        } catch (SQLException | RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    /** Waits for the load of another caller that missed the same key. */
+    private static Entry await(CompletableFuture<Entry> load) throws SQLException {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for metadata", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException cause) {
+                throw new SQLException(cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), cause);
+            }
+            throw new SQLException(e.getCause());
+        }
+    }
+
+    private void refresh(Key key, Loader loader) {
+        try {
+            loadAndPut(key, loader);
+            if (DriverLogging.getLogger().isLoggable(Level.FINER)) {
+                DriverLogging.getLogger().finer("metadata cache refreshed: " + key.method + key.args);
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Keep serving the old entry until it expires; the next miss reloads in the foreground.
+            if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
+                DriverLogging.getLogger().fine("metadata cache refresh failed for " + key.method + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** Loads the rows of {@code key} and stores them, unless its URL was invalidated while they were loading. */
+    private Entry loadAndPut(Key key, Loader loader) throws SQLException {
+        long started;
+        synchronized (entries) {
+            started = generation;
+        }
+        Entry entry = load(loader);
+        synchronized (entries) {
+            if (invalidatedAll <= started && invalidated.getOrDefault(key.url, 0L) <= started) {
+                put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    private void put(Key key, Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+            int limit = maxEntries.get() > 0 ? maxEntries.get() : DEFAULT_MAX_ENTRIES;
+            var it = entries.entrySet().iterator();
+            while (entries.size() > limit && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    private static Entry load(Loader loader) throws SQLException {
+        try (ResultSet rs = loader.load()) {
+            return new Entry(MaterializedResult.of(rs), System.nanoTime());
+        }
+    }
+
+    private static Thread newRefreshThread(Runnable r) {
+        Thread t = new Thread(r, "mytrino-metadata-refresh");
+        t.setDaemon(true);
+        return t;
+    }
+
+    static final class Key {
+        private final String url;
+        private final String user;
+        private final String method;
+        private final List<Object> args;
+
+        private Key(String url, String user, String method, List<Object> args) {
+            this.url = url;
+            this.user = user;
+            this.method = method;
+            this.args = args;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key other)) return false;
+            return Objects.equals(url, other.url) && Objects.equals(user, other.user)
+                    && method.equals(other.method) && argsEqual(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = Objects.hash(url, user, method);
+            for (Object arg : args) {
+                h = 31 * h + (arg instanceof Object[] array ? Arrays.hashCode(array) : Objects.hashCode(arg));
+            }
+            return h;
+        }
+
+        private static boolean argsEqual(List<Object> a, List<Object> b) {
+            if (a.size() != b.size()) return false;
+            for (int i = 0; i < a.size(); i++) {
+                Object x = a.get(i);
+                Object y = b.get(i);
+                if (x instanceof Object[] xa && y instanceof Object[] ya) {
+                    if (!Arrays.equals(xa, ya)) return false;
+                } else if (!Objects.equals(x, y)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Entry {
+        private final MaterializedResult rows;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(MaterializedResult rows, long loadedAt) {
+            this.rows = rows;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
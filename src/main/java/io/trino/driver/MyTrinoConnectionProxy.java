@@ -1,12 +1,26 @@
 package io.trino.driver;
 
+import io.trino.jdbc.TrinoResultSet;
+
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
 import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
+import java.util.regex.Pattern;
 
 /**
  * Creates JDBC proxy wrappers for Connection and Statement to intercept
@@ -18,11 +32,42 @@ public final class MyTrinoConnectionProxy {
     private static final String EXECUTE = "execute";
     private static final String EXECUTE_QUERY = "executeQuery";
     private static final String EXECUTE_UPDATE = "executeUpdate";
+    private static final String GET_META_DATA = "getMetaData";
+    private static final String GET_CONNECTION = "getConnection";
+    private static final String SET_MAX_ROWS = "setMaxRows";
+    private static final String SET_LARGE_MAX_ROWS = "setLargeMaxRows";
+    private static final String CLOSE = "close";
+    private static final String CANCEL = "cancel";
+    private static final String GET_RESULT_SET = "getResultSet";
+    private static final String GET_STATEMENT = "getStatement";
+    private static final String NEXT = "next";
+    private static final String UNWRAP = "unwrap";
+    private static final String IS_WRAPPER_FOR = "isWrapperFor";
+    private static final String GET_WARNINGS = "getWarnings";
+    private static final String CLEAR_WARNINGS = "clearWarnings";
+
+    /** SQLState of the warnings that report approximate rewrites (generic warning). */
+    private static final String WARNING_SQL_STATE = "01000";
+
+    /** Statements that can change what DatabaseMetaData returns. */
+    private static final Pattern DDL_PATTERN = Pattern.compile("^\\s*(CREATE|DROP|ALTER|COMMENT|GRANT|REVOKE)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    /** {@link Statement#execute(String)}, for statements executed on behalf of {@link ScriptRunner}. */
+    private static final Method STATEMENT_EXECUTE = statementExecute();
 
     private MyTrinoConnectionProxy() {
         // Utility class - prevent instantiation
     }
 
+    private static Method statementExecute() {
+        try {
+            return Statement.class.getMethod(EXECUTE, String.class);
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /**
      * Wraps a Connection in a proxy that intercepts prepareStatement calls.
      *
@@ -30,10 +75,37 @@ public final class MyTrinoConnectionProxy {
      * @return a proxied Connection that modifies SQL before delegation
      */
     public static Connection wrap(Connection delegate) {
+        return wrap(delegate, DriverConfig.defaults());
+    }
+
+    /**
+     * Wraps a Connection in a proxy that intercepts prepareStatement calls and applies the driver settings.
+     *
+     * @param delegate the actual Connection from the Trino driver
+     * @param config   driver-only settings of this connection
+     * @return a proxied Connection that modifies SQL before delegation
+     */
+    public static Connection wrap(Connection delegate, DriverConfig config) {
+        return wrap(delegate, config, null);
+    }
+
+    /**
+     * Wraps a Connection routed to one coordinator of a multi-host URL; query latency is reported to it.
+     */
+    static Connection wrap(Connection delegate, DriverConfig config, CoordinatorRouter.Coordinator coordinator) {
+        return wrap(delegate, config, coordinator, null);
+    }
+
+    /**
+     * Wraps a Connection whose spooled segments are prefetched by {@code prefetcher} (null if none); the segments
+     * of a query are released when its ResultSet or statement, or the connection, is closed.
+     */
+    static Connection wrap(Connection delegate, DriverConfig config, CoordinatorRouter.Coordinator coordinator,
+                           SegmentPrefetcher prefetcher) {
         return (Connection) Proxy.newProxyInstance(
                 delegate.getClass().getClassLoader(),
-                new Class<?>[]{Connection.class},
-                new ConnectionHandler(delegate)
+                new Class<?>[]{Connection.class, ScriptExecutor.class},
+                new ConnectionHandler(delegate, config, coordinator, prefetcher)
         );
     }
 
@@ -42,67 +114,666 @@ public final class MyTrinoConnectionProxy {
      * execute, executeQuery, and executeUpdate calls.
      */
     static Object wrapStatement(Statement delegate) {
+        return wrapStatement(delegate, new ConnectionHandler(null, DriverConfig.defaults(), null, null), null, null,
+                List.of());
+    }
+
+    private static Object wrapStatement(Statement delegate, ConnectionHandler owner, String preparedSql,
+                                        QueryHints preparedHints, List<String> preparedWarnings) {
         Class<?>[] interfaces = delegate instanceof PreparedStatement
-                ? new Class<?>[]{PreparedStatement.class}
-                : new Class<?>[]{Statement.class};
-        return Proxy.newProxyInstance(
+                ? new Class<?>[]{PreparedStatement.class, ResultExporter.class}
+                : new Class<?>[]{Statement.class, ResultExporter.class};
+        StatementHandler handler = new StatementHandler(delegate, owner, preparedSql, preparedHints, preparedWarnings);
+        owner.statements.add(handler);
+        return Proxy.newProxyInstance(delegate.getClass().getClassLoader(), interfaces, handler);
+    }
+
+    /**
+     * Executes {@code rewritten}, a statement of a script already split off, hint-stripped and rewritten by
+     * {@link ScriptRunner}, through {@code statement} (a statement proxy of this driver), so it is approximated,
+     * classified, admitted, hinted, logged and recorded like any other {@code execute}.
+     *
+     * @param original  the statement as written in the script (for logging)
+     * @param hints     the statement's hint comments
+     * @param rewritten the statement without hints, rewritten with {@link DriverConfig#rewrite}
+     * @return the result of {@link Statement#execute(String)}
+     */
+    static boolean executeRewritten(Statement statement, String original, QueryHints hints, String rewritten)
+            throws SQLException {
+        StatementHandler handler = (StatementHandler) Proxy.getInvocationHandler(statement);
+        return handler.executeRewritten(statement, original, hints, rewritten);
+    }
+
+    /**
+     * Wraps DatabaseMetaData so that calls returning a ResultSet are served from the driver-wide {@link MetadataCache}.
+     */
+    static DatabaseMetaData wrapMetaData(DatabaseMetaData delegate, Connection connection, DriverConfig config)
+            throws SQLException {
+        MetadataCache.getInstance().setMaxEntries(config.getMetadataCacheMaxEntries());
+        return (DatabaseMetaData) Proxy.newProxyInstance(
+                delegate.getClass().getClassLoader(),
+                new Class<?>[]{DatabaseMetaData.class},
+                new MetaDataHandler(delegate, connection, config)
+        );
+    }
+
+    /**
+     * Wraps the ResultSet of a query so its admission permit is released, its workload latency recorded, and its
+     * execute event committed with the time to the first row, when the rows are exhausted, reading fails, or the
+     * ResultSet is closed; closing it also releases its prefetched segments. {@code getStatement()} returns the
+     * statement proxy. Returns the ResultSet itself if there is nothing to track.
+     *
+     * @param permit     admission permit of the query, or null
+     * @param event      recording execute event of the query, or null
+     * @param workload   workload classification of the query, or null
+     * @param prefetcher segment prefetcher of the connection, or null
+     */
+    private static ResultSet wrapResultSet(ResultSet delegate, Object statement, AdmissionController.Permit permit,
+                                           DriverEvents.ExecuteEvent event, WorkloadClassifier.Workload workload,
+                                           SegmentPrefetcher prefetcher) {
+        if (permit == null && event == null && workload == null && prefetcher == null) {
+            return delegate;
+        }
+        return (ResultSet) Proxy.newProxyInstance(
                 delegate.getClass().getClassLoader(),
-                interfaces,
-                new StatementHandler(delegate)
+                new Class<?>[]{ResultSet.class},
+                new ResultSetHandler(delegate, statement, permit, event, workload, prefetcher)
         );
     }
 
     private static final class ConnectionHandler implements InvocationHandler {
         private final Connection delegate;
+        private final DriverConfig config;
+        private final CoordinatorRouter.Coordinator coordinator;
+        private final SegmentPrefetcher prefetcher;
+        /** Statements of this connection not closed through their proxy, released when the connection closes. */
+        private final Set<StatementHandler> statements = ConcurrentHashMap.newKeySet();
 
-        ConnectionHandler(Connection delegate) {
+        ConnectionHandler(Connection delegate, DriverConfig config, CoordinatorRouter.Coordinator coordinator,
+                          SegmentPrefetcher prefetcher) {
             this.delegate = delegate;
+            this.config = config;
+            this.coordinator = coordinator;
+            this.prefetcher = prefetcher;
         }
 
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == ScriptExecutor.class) {
+                return new ScriptRunner((Connection) proxy, config).execute((String) args[0]);
+            }
+            if ((UNWRAP.equals(method.getName()) || IS_WRAPPER_FOR.equals(method.getName()))
+                    && args != null && args[0] == ScriptExecutor.class) {
+                return UNWRAP.equals(method.getName()) ? proxy : Boolean.TRUE;
+            }
+            if (GET_META_DATA.equals(method.getName()) && config.getMetadataCacheTtlMillis() > 0) {
+                return wrapMetaData(delegate.getMetaData(), (Connection) proxy, config);
+            }
+            if (CLOSE.equals(method.getName())) {
+                try {
+                    return invokeDelegate(delegate, method, args);
+                } finally {
+                    // trino-jdbc closes the statements itself, so their proxies never see close
+                    for (StatementHandler statement : statements) {
+                        statement.abandon();
+                    }
+                    statements.clear();
+                    if (prefetcher != null) {
+                        prefetcher.close();
+                    }
+                }
+            }
+            String preparedSql = null;
+            QueryHints preparedHints = null;
+            List<String> preparedWarnings = List.of();
             if (PREPARE_STATEMENT.equals(method.getName()) && args != null && args.length >= 1 && args[0] instanceof String sql) {
-                if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
-                    DriverLogging.getLogger().fine("prepareStatement(original): " + truncate(sql));
+                DriverLogging.Scope log = config.getLogScope();
+                if (log.isLoggable(Level.FINE)) {
+                    log.log(Level.FINE, "prepareStatement(original): " + truncate(sql));
                 }
                 args = args.clone();
-                String parsed = SqlParserLogic.parse(sql);
+                preparedHints = QueryHints.parse(sql);
+                String parsed = config.rewrite(preparedHints.getSql());
+                SqlParserLogic.Approximation approximation = config.approximate(parsed, preparedHints);
+                if (approximation != null) {
+                    parsed = approximation.getSql();
+                    preparedWarnings = approximation.getRewrites();
+                }
                 args[0] = parsed;
-                if (DriverLogging.getLogger().isLoggable(Level.FINE) && !parsed.equals(sql)) {
-                    DriverLogging.getLogger().fine("prepareStatement(parsed): " + truncate(parsed));
+                preparedSql = parsed;
+                if (log.isLoggable(Level.FINE) && !parsed.equals(sql)) {
+                    log.log(Level.FINE, "prepareStatement(parsed): " + truncate(parsed));
                 }
             }
-            Object result = method.invoke(delegate, args);
+            Object result = invokeDelegate(delegate, method, args);
             if (result instanceof Statement stmt) {
-                return wrapStatement(stmt);
+                return wrapStatement(stmt, this, preparedSql, preparedHints, preparedWarnings);
+            }
+            return result;
+        }
+    }
+
+    private static final class MetaDataHandler implements InvocationHandler {
+        private final DatabaseMetaData delegate;
+        private final Connection connection;
+        private final long ttlMillis;
+        private final String url;
+        private final String user;
+
+        MetaDataHandler(DatabaseMetaData delegate, Connection connection, DriverConfig config) throws SQLException {
+            this.delegate = delegate;
+            this.connection = connection;
+            this.ttlMillis = config.getMetadataCacheTtlMillis();
+            this.url = delegate.getURL();
+            this.user = config.getUser();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (GET_CONNECTION.equals(method.getName()) && method.getParameterCount() == 0) {
+                return connection;
+            }
+            if (ResultSet.class.equals(method.getReturnType())) {
+                MetadataCache.Key key = MetadataCache.key(url, user, method.getName(), args);
+                return MetadataCache.getInstance().get(key, ttlMillis, () -> (ResultSet) invokeDelegate(delegate, method, args));
+            }
+            return invokeDelegate(delegate, method, args);
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet delegate;
+        private final Object statement;
+        private final AdmissionController.Permit permit;
+        /** Execute event waiting for the first row (empty once committed). */
+        private final AtomicReference<DriverEvents.ExecuteEvent> event;
+        private final WorkloadClassifier.Workload workload;
+        private final SegmentPrefetcher prefetcher;
+        private final String queryId;
+
+        ResultSetHandler(ResultSet delegate, Object statement, AdmissionController.Permit permit,
+                         DriverEvents.ExecuteEvent event, WorkloadClassifier.Workload workload,
+                         SegmentPrefetcher prefetcher) {
+            this.delegate = delegate;
+            this.statement = statement;
+            this.permit = permit;
+            this.event = new AtomicReference<>(event);
+            this.workload = workload;
+            this.prefetcher = prefetcher;
+            this.queryId = event != null || prefetcher != null ? queryId(delegate) : null;
+            if (event != null) {
+                event.queryId = queryId;
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if (GET_STATEMENT.equals(methodName) && method.getParameterCount() == 0) {
+                return statement;
+            }
+            Object result;
+            try {
+                result = invokeDelegate(delegate, method, args);
+            } catch (SQLException e) {
+                if (NEXT.equals(methodName)) {
+                    if (workload != null) workload.discard();
+                    release();
+                    finishEvent(false, true);
+                }
+                throw e;
+            }
+            if (NEXT.equals(methodName)) {
+                finishEvent(Boolean.TRUE.equals(result), false);
+            }
+            if (CLOSE.equals(methodName) || (NEXT.equals(methodName) && Boolean.FALSE.equals(result))) {
+                release();
+                finishEvent(false, false);
+            }
+            if (CLOSE.equals(methodName) && prefetcher != null) {
+                prefetcher.release(queryId);
             }
             return result;
         }
+
+        private void release() {
+            if (permit != null) permit.release();
+            if (workload != null) workload.finished();
+        }
+
+        private void finishEvent(boolean firstRow, boolean failed) {
+            DriverEvents.ExecuteEvent pending = event.getAndSet(null);
+            if (pending != null) {
+                if (firstRow) pending.timeToFirstRow = pending.elapsed();
+                pending.failed = failed;
+                pending.finish();
+            }
+        }
+
+        private static String queryId(ResultSet rs) {
+            try {
+                return rs.isWrapperFor(TrinoResultSet.class) ? rs.unwrap(TrinoResultSet.class).getQueryId() : null;
+            } catch (SQLException e) {
+                return null;
+            }
+        }
     }
 
     private static final class StatementHandler implements InvocationHandler {
         private final Statement delegate;
+        /** Handler of the connection that created the statement (connection settings, routing). */
+        private final ConnectionHandler owner;
+        /** Rewritten SQL of a PreparedStatement (null for plain statements). */
+        private final String preparedSql;
+        /** Hint comments of a PreparedStatement, applied on every execution (null for plain statements). */
+        private final QueryHints preparedHints;
+        /** Approximate rewrites of a PreparedStatement's SQL, reported as warnings of every execution. */
+        private final List<String> preparedWarnings;
+        /** Approximate rewrites of the last execution, reported ahead of Trino's warnings. */
+        private volatile List<String> rewriteWarnings = List.of();
+        /** Last value passed to setMaxRows/setLargeMaxRows; pushed into plain SELECTs as a LIMIT. */
+        private volatile long maxRows;
+        /** Result of the last single-flight executeQuery (closed with the statement or by the next execute). */
+        private volatile ResultSet sharedResult;
+        /** Admission permit of the last execution while its result is open (null without admission limits). */
+        private volatile AdmissionController.Permit permit;
+        /** Execute event of an {@code execute} that returned true, until {@code getResultSet()} picks it up. */
+        private volatile DriverEvents.ExecuteEvent pendingEvent;
+        /** Workload of the last execution while its result is open (null without workload rules). */
+        private volatile WorkloadClassifier.Workload workload;
 
-        StatementHandler(Statement delegate) {
+        StatementHandler(Statement delegate, ConnectionHandler owner, String preparedSql, QueryHints preparedHints,
+                         List<String> preparedWarnings) {
             this.delegate = delegate;
+            this.owner = owner;
+            this.preparedSql = preparedSql;
+            this.preparedHints = preparedHints;
+            this.preparedWarnings = preparedWarnings;
         }
 
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
             String methodName = method.getName();
+            if (method.getDeclaringClass() == ResultExporter.class) {
+                return export(proxy, args);
+            }
+            if ((UNWRAP.equals(methodName) || IS_WRAPPER_FOR.equals(methodName))
+                    && args != null && args[0] == ResultExporter.class) {
+                return UNWRAP.equals(methodName) ? proxy : Boolean.TRUE;
+            }
+            if ((SET_MAX_ROWS.equals(methodName) || SET_LARGE_MAX_ROWS.equals(methodName))
+                    && args != null && args.length == 1 && args[0] instanceof Number rows) {
+                Object result = invokeDelegate(delegate, method, args);
+                maxRows = rows.longValue();
+                return result;
+            }
+            ResultSet shared = sharedResult;
+            if (shared != null) {
+                if (GET_RESULT_SET.equals(methodName)) {
+                    return shared.isClosed() ? null
+                            : wrapResultSet(shared, proxy, permit, takePendingEvent(), workload, null);
+                }
+                if (CLOSE.equals(methodName) || CANCEL.equals(methodName) || methodName.startsWith(EXECUTE)) {
+                    sharedResult = null;
+                    shared.close();
+                }
+            }
+            AdmissionController.Permit held = permit;
+            WorkloadClassifier.Workload running = workload;
+            if (held != null || pendingEvent != null || running != null) {
+                if (GET_RESULT_SET.equals(methodName)) {
+                    Object result = invokeDelegate(delegate, method, args);
+                    DriverEvents.ExecuteEvent pending = takePendingEvent();
+                    if (result instanceof ResultSet rs) {
+                        return wrapResultSet(rs, proxy, held, pending, running, owner.prefetcher);
+                    }
+                    if (pending != null) pending.finish();
+                    return result;
+                }
+                if (CLOSE.equals(methodName) || CANCEL.equals(methodName) || methodName.startsWith(EXECUTE)) {
+                    permit = null;
+                    workload = null;
+                    if (held != null) held.release();
+                    if (running != null) {
+                        if (CANCEL.equals(methodName)) running.discard();
+                        else running.finished();
+                    }
+                    DriverEvents.ExecuteEvent pending = takePendingEvent();
+                    if (pending != null) pending.finish();
+                }
+            }
+            if (owner.prefetcher != null && (CLOSE.equals(methodName) || methodName.startsWith(EXECUTE))) {
+                releaseSegments();
+            }
+            if (CLOSE.equals(methodName)) {
+                owner.statements.remove(this);
+            }
+            if (GET_RESULT_SET.equals(methodName) && owner.prefetcher != null) {
+                Object result = invokeDelegate(delegate, method, args);
+                return result instanceof ResultSet rs
+                        ? wrapResultSet(rs, proxy, null, null, null, owner.prefetcher) : result;
+            }
+            if (GET_WARNINGS.equals(methodName)) {
+                return warnings();
+            }
+            if (CLEAR_WARNINGS.equals(methodName)) {
+                rewriteWarnings = List.of();
+            }
+            if (!methodName.startsWith(EXECUTE)) {
+                return invokeDelegate(delegate, method, args);
+            }
+            String original = null;
+            String parsed = preparedSql;
+            QueryHints hints = preparedHints;
+            List<String> warnings = preparedWarnings;
             if ((EXECUTE.equals(methodName) || EXECUTE_QUERY.equals(methodName) || EXECUTE_UPDATE.equals(methodName))
                     && args != null && args.length >= 1 && args[0] instanceof String sql) {
-                if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
-                    DriverLogging.getLogger().fine(methodName + "(original): " + truncate(sql));
-                }
+                original = sql;
                 args = args.clone();
-                String parsed = SqlParserLogic.parse(sql);
+                hints = QueryHints.parse(sql);
+                parsed = owner.config.rewrite(hints.getSql());
+                SqlParserLogic.Approximation approximation = owner.config.approximate(parsed, hints);
+                warnings = approximation != null ? approximation.getRewrites() : List.of();
+                parsed = SqlParserLogic.limitRows(approximation != null ? approximation.getSql() : parsed, maxRows);
                 args[0] = parsed;
-                if (DriverLogging.getLogger().isLoggable(Level.FINE) && !parsed.equals(sql)) {
-                    DriverLogging.getLogger().fine(methodName + "(parsed): " + truncate(parsed));
+                invalidateMetadata(parsed);
+            }
+            return submit(proxy, method, args, original, parsed, hints, warnings);
+        }
+
+        /**
+         * Executes a script statement that {@link ScriptRunner} has already rewritten (see
+         * {@link MyTrinoConnectionProxy#executeRewritten}).
+         */
+        boolean executeRewritten(Object proxy, String original, QueryHints hints, String rewritten)
+                throws SQLException {
+            SqlParserLogic.Approximation approximation = owner.config.approximate(rewritten, hints);
+            String parsed = approximation != null ? approximation.getSql() : rewritten;
+            invalidateMetadata(parsed);
+            return (Boolean) submit(proxy, STATEMENT_EXECUTE, new Object[]{parsed}, original, parsed, hints,
+                    approximation != null ? approximation.getRewrites() : List.of());
+        }
+
+        /** Drops the connection's cached metadata before DDL. */
+        private void invalidateMetadata(String parsed) throws SQLException {
+            if (owner.delegate != null && owner.config.getMetadataCacheTtlMillis() > 0 && DDL_PATTERN.matcher(parsed).find()) {
+                MetadataCache.invalidate(owner.delegate.getMetaData().getURL());
+            }
+        }
+
+        /**
+         * Classifies, admits and executes a rewritten statement, and keeps its permit, event and workload while its
+         * result is open (see {@link #hold}).
+         */
+        private Object submit(Object proxy, Method method, Object[] args, String original, String parsed,
+                              QueryHints hints, List<String> warnings) throws SQLException {
+            String methodName = method.getName();
+            rewriteWarnings = warnings;
+            WorkloadClassifier.Workload classified = owner.config.classify(parsed);
+            AdmissionController.Permit admitted = classified == null
+                    ? AdmissionController.admit(owner.config, owner.config.getClientTags())
+                    : AdmissionController.admit(owner.config, classified.tags(owner.config.getClientTags()),
+                            classified.priority(owner.config.getQueryPriority()));
+            DriverEvents.ExecuteEvent event = new DriverEvents.ExecuteEvent();
+            event.start();
+            Object result;
+            try {
+                result = executeClassified(proxy, method, args, original, parsed, hints, classified);
+            } catch (SQLException | RuntimeException | Error e) {
+                if (admitted != null) admitted.release();
+                if (classified != null) classified.discard();
+                if (event.isEnabled()) {
+                    describe(event, methodName, parsed);
+                    event.failed = true;
+                    event.finish();
+                }
+                throw e;
+            }
+            if (!event.isEnabled()) {
+                return admitted == null && classified == null && owner.prefetcher == null ? result
+                        : hold(admitted, null, classified, proxy, result);
+            }
+            describe(event, methodName, parsed);
+            return hold(admitted, event, classified, proxy, result);
+        }
+
+        /**
+         * {@link ResultExporter#export}: executes the query through this proxy, so it is rewritten, admitted and
+         * classified like any other, and streams its rows into files.
+         */
+        private ExportResult export(Object proxy, Object[] args) throws SQLException {
+            Path directory = (Path) args[args.length - 2];
+            ResultExporter.Format format = (ResultExporter.Format) args[args.length - 1];
+            if (directory == null || format == null) {
+                throw new SQLException("Export directory and format are required");
+            }
+            ResultExport export = new ResultExport(owner.config, directory, format);
+            if (args.length == 3) {
+                String sql = (String) args[0];
+                return export.export(() -> ((Statement) proxy).executeQuery(sql));
+            }
+            if (!(proxy instanceof PreparedStatement prepared)) {
+                throw new SQLException("Exporting without SQL requires a PreparedStatement");
+            }
+            return export.export(prepared::executeQuery);
+        }
+
+        /** The approximate rewrites of the last execution as warnings, followed by the warnings from Trino. */
+        private SQLWarning warnings() throws SQLException {
+            SQLWarning trino = delegate.getWarnings();
+            List<String> rewrites = rewriteWarnings;
+            if (rewrites.isEmpty()) {
+                return trino;
+            }
+            SQLWarning first = new SQLWarning(rewrites.get(0), WARNING_SQL_STATE);
+            for (int i = 1; i < rewrites.size(); i++) {
+                first.setNextWarning(new SQLWarning(rewrites.get(i), WARNING_SQL_STATE));
+            }
+            if (trino != null) {
+                first.setNextWarning(trino);
+            }
+            return first;
+        }
+
+        private static void describe(DriverEvents.ExecuteEvent event, String methodName, String parsed) {
+            event.executeTime = event.elapsed();
+            event.method = methodName;
+            event.sql = parsed != null ? truncate(parsed) : null;
+        }
+
+        /**
+         * Releases the prefetched segments of the statement's current result before the statement is closed or
+         * re-executed (which closes that result without going through its proxy).
+         */
+        private void releaseSegments() {
+            try {
+                ResultSet current = delegate.getResultSet();
+                if (current != null) {
+                    owner.prefetcher.release(ResultSetHandler.queryId(current));
                 }
+            } catch (SQLException e) {
+                // Statement already closed: nothing current to release
             }
+        }
+
+        /**
+         * Releases the permit and the workload of the last execution, and commits its pending event, once the
+         * connection closed the statement behind the proxy's back (an open result is abandoned, not recorded), and
+         * leaves the query it shares, if any.
+         */
+        private void abandon() {
+            AdmissionController.Permit held = permit;
+            WorkloadClassifier.Workload running = workload;
+            ResultSet shared = sharedResult;
+            permit = null;
+            workload = null;
+            sharedResult = null;
+            if (shared != null) {
+                try {
+                    shared.close();
+                } catch (SQLException e) {
+                    // Already closed with the connection
+                }
+            }
+            if (held != null) held.release();
+            if (running != null) running.discard();
+            DriverEvents.ExecuteEvent pending = takePendingEvent();
+            if (pending != null) pending.finish();
+        }
+
+        private DriverEvents.ExecuteEvent takePendingEvent() {
+            DriverEvents.ExecuteEvent pending = pendingEvent;
+            pendingEvent = null;
+            return pending;
+        }
+
+        /**
+         * Executes with the client tags, source and priority of the statement's workload class, if it has one.
+         */
+        private Object executeClassified(Object proxy, Method method, Object[] args, String original, String parsed,
+                                         QueryHints hints, WorkloadClassifier.Workload classified) throws SQLException {
+            if (classified == null) {
+                return executeHinted(proxy, method, args, original, parsed, hints);
+            }
+            classified.start();
+            if (classified.getName() == null) {
+                return executeHinted(proxy, method, args, original, parsed, hints);
+            }
+            DriverLogging.Scope log = owner.config.getLogScope();
+            if (log.isLoggable(Level.FINE)) {
+                log.log(Level.FINE, method.getName() + " classified as " + classified.getName());
+            }
+            Connection connection = owner.delegate != null ? owner.delegate : delegate.getConnection();
+            return classified.execute(connection, () -> executeHinted(proxy, method, args, original, parsed, hints));
+        }
+
+        private Object executeHinted(Object proxy, Method method, Object[] args, String original, String parsed,
+                                     QueryHints hints) throws SQLException {
+            if (hints == null || hints.isEmpty()) {
+                return execute(proxy, method, args, original, parsed);
+            }
+            DriverLogging.Scope log = owner.config.getLogScope();
+            if (log.isLoggable(Level.FINE)) {
+                log.log(Level.FINE, method.getName() + " with session hints " + hints.getSessionProperties());
+            }
+            Connection connection = owner.delegate != null ? owner.delegate : delegate.getConnection();
+            return hints.execute(connection, () -> execute(proxy, method, args, original, parsed));
+        }
+
+        /**
+         * Keeps the admission permit, the execute event and the workload of an execution while its result is open:
+         * a returned ResultSet releases the permit, commits the event and records the workload's latency when read,
+         * exhausted or closed; {@code execute} returning true keeps them for {@code getResultSet()}; update counts
+         * release, commit and record at once. Closing, cancelling or re-executing the statement always releases the
+         * permit.
+         *
+         * @param admitted   admission permit, or null
+         * @param event      recording execute event, or null
+         * @param classified workload of the execution, or null
+         */
+        private Object hold(AdmissionController.Permit admitted, DriverEvents.ExecuteEvent event,
+                            WorkloadClassifier.Workload classified, Object proxy, Object result) {
+            if (result instanceof ResultSet rs) {
+                permit = admitted;
+                workload = classified;
+                return wrapResultSet(rs, proxy, admitted, event, classified, owner.prefetcher);
+            }
+            if (Boolean.TRUE.equals(result)) {
+                permit = admitted;
+                workload = classified;
+                pendingEvent = event;
+                return result;
+            }
+            if (admitted != null) admitted.release();
+            if (classified != null) classified.finished();
+            if (event != null) {
+                if (result instanceof Number count) event.updateCount = count.longValue();
+                event.finish();
+            }
+            return result;
+        }
+
+        private Object execute(Object proxy, Method method, Object[] args, String original, String parsed)
+                throws SQLException {
+            String methodName = method.getName();
+            DriverLogging.Scope log = owner.config.getLogScope();
+            boolean sampled = log.sampleStatement();
+            long slowNanos = log.getSlowQueryNanos();
+            if (sampled && slowNanos == 0) {
+                logStatement(log, methodName, original, parsed, -1);
+            }
+            CoordinatorRouter.Coordinator coordinator = owner.coordinator;
+            if (coordinator == null && !(sampled && slowNanos > 0)) {
+                return invokeOrShare(proxy, method, args, original, parsed);
+            }
+            long start = System.nanoTime();
+            boolean failed = true;
+            if (coordinator != null) coordinator.queryStarted();
+            try {
+                Object result = invokeOrShare(proxy, method, args, original, parsed);
+                failed = false;
+                return result;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                if (coordinator != null) coordinator.queryFinished(elapsed, failed);
+                if (sampled && slowNanos > 0 && elapsed >= slowNanos) {
+                    logStatement(log, methodName, original, parsed, elapsed);
+                }
+            }
+        }
+
+        /**
+         * Invokes the delegate, or for {@code executeQuery(sql)} with {@code singleFlight} enabled, runs the query
+         * through {@link SingleFlight} so identical concurrent queries share one Trino query.
+         */
+        private Object invokeOrShare(Object proxy, Method method, Object[] args, String original, String parsed)
+                throws SQLException {
+            if (original == null || !EXECUTE_QUERY.equals(method.getName()) || owner.delegate == null
+                    || !owner.config.isSingleFlight() || !SingleFlight.isShareable(parsed)) {
+                return invokeDelegate(delegate, method, args);
+            }
+            ResultSet shared = SingleFlight.executeQuery(owner.delegate, owner.config.getUser(), parsed,
+                    delegate.getQueryTimeout(), (Statement) proxy, owner.config);
+            if (shared == null) {
+                return invokeDelegate(delegate, method, args);
+            }
+            sharedResult = shared;
+            return shared;
+        }
+
+        private static void logStatement(DriverLogging.Scope log, String methodName, String original, String parsed,
+                                         long elapsedNanos) {
+            String took = elapsedNanos >= 0 ? " [" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms]" : "";
+            if (parsed == null) {
+                log.log(Level.FINE, methodName + took);
+                return;
+            }
+            if (original == null) {
+                log.log(Level.FINE, methodName + "(prepared)" + took + ": " + truncate(parsed));
+                return;
+            }
+            log.log(Level.FINE, methodName + "(original)" + took + ": " + truncate(original));
+            if (!parsed.equals(original)) {
+                log.log(Level.FINE, methodName + "(parsed): " + truncate(parsed));
+            }
+        }
+    }
+
+    /**
+     * Invokes the delegate and rethrows the exception thrown by the target method itself
+     * (so callers see the SQLException, not an UndeclaredThrowableException).
+     */
+    static Object invokeDelegate(Object delegate, Method method, Object[] args) throws SQLException {
+        try {
             return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) throw sqlException;
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            if (cause instanceof Error error) throw error;
+            throw new SQLException(cause);
+        } catch (IllegalAccessException e) {
+            throw new SQLException(e);
         }
     }
 
@@ -1,10 +1,14 @@
 package io.trino.driver;
 
 import io.trino.jdbc.TrinoDriver;
+import io.trino.jdbc.$internal.okhttp3.Call;
+import io.trino.jdbc.$internal.okhttp3.OkHttpClient;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
 import java.util.logging.Level;
 
 /**
@@ -14,11 +18,20 @@ import java.util.logging.Level;
  * <p>
  * Logging uses the same property style as the Trino driver (connection Properties or URL params).
  * Set {@code logLevel} to a JUL level (e.g. FINE, FINER, FINEST) to enable driver logs.
+ * <p>
+ * A comma-separated host list ({@code jdbc:mytrino://h1:8080,h2:8080/...}) routes each new connection
+ * to the least-loaded healthy coordinator (see {@link CoordinatorRouter}); if the connect to it fails, the next
+ * healthy coordinator is tried.
+ * <p>
+ * Results sent with the spooling protocol are downloaded in parallel ahead of the reader; {@code spooling=false}
+ * turns the protocol off (see {@link SegmentPrefetcher}).
  */
 public class MyTrinoDriver extends TrinoDriver {
 
     public static final String URL_PREFIX = "jdbc:mytrino:";
     private static final String TRINO_URL_PREFIX = "jdbc:trino:";
+    /** Connection being opened by the current thread, picked up by {@link #wrapClient}. */
+    private static final ThreadLocal<Connecting> CONNECTING = new ThreadLocal<>();
 
     static {
         try {
@@ -48,22 +61,108 @@ public class MyTrinoDriver extends TrinoDriver {
             }
             return null;
         }
+        DriverConfig config = DriverConfig.from(url, info);
         String trinoUrl = url.startsWith(URL_PREFIX) ? url.replace(URL_PREFIX, TRINO_URL_PREFIX) : url;
+        if (!CoordinatorRouter.isMultiHost(trinoUrl)) {
+            return open(url, trinoUrl, info, config, null);
+        }
+        // Multi-host: a coordinator that fails the connect is skipped for the next healthy candidate
+        Set<CoordinatorRouter.Coordinator> failed = new HashSet<>();
+        SQLException failure = null;
+        while (true) {
+            CoordinatorRouter.Coordinator coordinator;
+            try {
+                coordinator = CoordinatorRouter.choose(trinoUrl, info, config, failed);
+            } catch (SQLException e) {
+                if (failure == null) throw e;
+                failure.addSuppressed(e);
+                throw failure;
+            }
+            try {
+                return open(url, CoordinatorRouter.rewriteUrl(trinoUrl, coordinator), info, config, coordinator);
+            } catch (SQLException e) {
+                coordinator.connectFailed();
+                failed.add(coordinator);
+                if (DriverLogging.getLogger().isLoggable(Level.INFO)) {
+                    DriverLogging.getLogger().info("Could not connect to coordinator " + coordinator.getAddress()
+                            + ", trying the next one: " + e.getMessage());
+                }
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+    }
+
+    /** Opens and wraps a connection to {@code trinoUrl}, a single-coordinator URL. */
+    private Connection open(String url, String trinoUrl, Properties info, DriverConfig config,
+                            CoordinatorRouter.Coordinator coordinator) throws SQLException {
         trinoUrl = DriverLogging.stripDriverParamsFromUrl(trinoUrl);
-        if (DriverLogging.getLogger().isLoggable(Level.INFO)) {
-            DriverLogging.getLogger().info("Connecting: " + url + " -> " + trinoUrl);
+        DriverLogging.Scope log = config.getLogScope();
+        if (log.isLoggable(Level.INFO)) {
+            log.log(Level.INFO, "Connecting: " + url + " -> " + trinoUrl);
+        }
+        SegmentPrefetcher prefetcher = !config.isSpooling() || config.getSpoolingPrefetchSegments() > 0
+                ? new SegmentPrefetcher(config.isSpooling(), config.getSpoolingPrefetchSegments(), log)
+                : null;
+        DriverEvents.ConnectEvent event = new DriverEvents.ConnectEvent();
+        event.begin();
+        CONNECTING.set(new Connecting(prefetcher));
+        Connection connection = null;
+        try {
+            connection = connectTrino(trinoUrl, DriverConfig.stripFromProperties(info));
+        } finally {
+            CONNECTING.remove();
+            event.end();
+            if (event.shouldCommit()) {
+                int query = trinoUrl.indexOf('?');
+                event.url = query < 0 ? trinoUrl : trinoUrl.substring(0, query); // parameters may hold secrets
+                event.coordinator = coordinator != null ? coordinator.toString() : null;
+                event.user = config.getUser();
+                event.failed = connection == null;
+                event.commit();
+            }
         }
-        Connection connection = super.connect(trinoUrl, info);
         if (connection == null) {
             if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
                 DriverLogging.getLogger().fine("connect(" + url + ") -> null (Trino driver returned null)");
             }
             return null;
         }
-        Connection wrapped = MyTrinoConnectionProxy.wrap(connection);
-        if (DriverLogging.getLogger().isLoggable(Level.INFO)) {
-            DriverLogging.getLogger().info("Connection established (wrapped for SQL parsing)");
+        Connection wrapped = MyTrinoConnectionProxy.wrap(connection, config, coordinator, prefetcher);
+        if (log.isLoggable(Level.INFO)) {
+            log.log(Level.INFO, "Connection established (wrapped for SQL parsing)");
         }
         return wrapped;
     }
+
+    /** Opens the Trino connection; overridden by tests to fail the connect to chosen coordinators. */
+    Connection connectTrino(String trinoUrl, Properties info) throws SQLException {
+        return super.connect(trinoUrl, info);
+    }
+
+    /**
+     * Installs the driver's interceptors on the HTTP clients of the connection being opened: the first client is
+     * the coordinator client (fetch events, segment discovery), the second the segment client (prefetched segments).
+     */
+    @Override
+    protected Call.Factory wrapClient(OkHttpClient client) {
+        Connecting connecting = CONNECTING.get();
+        if (connecting == null) {
+            return super.wrapClient(client);
+        }
+        if (connecting.clients++ == 0) {
+            client = client.newBuilder().addInterceptor(DriverEvents::onCoordinatorCall).build();
+        }
+        return connecting.prefetcher != null ? connecting.prefetcher.wrap(client) : client;
+    }
+
+    /** State of a {@link #connect} in progress on the current thread. */
+    private static final class Connecting {
+        final SegmentPrefetcher prefetcher;
+        int clients;
+
+        Connecting(SegmentPrefetcher prefetcher) {
+            this.prefetcher = prefetcher;
+        }
+    }
 }
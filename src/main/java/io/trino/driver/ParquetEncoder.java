@@ -0,0 +1,548 @@
+package io.trino.driver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes Parquet files for {@link ResultExport} without a Parquet library: every batch becomes one row group with one
+ * data page (v1) per column, PLAIN-encoded values and RLE/bit-packed definition levels, optionally GZIP-compressed;
+ * the footer is the Thrift compact encoding of the {@code FileMetaData} of all row groups of the file.
+ */
+final class ParquetEncoder implements ResultExport.Encoder {
+
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+    private static final String CREATED_BY = "mytrino-jdbc export";
+
+    // Enum values of parquet.thrift
+    private static final int OPTIONAL = 1;
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_RLE = 3;
+    private static final int CODEC_UNCOMPRESSED = 0;
+    private static final int CODEC_GZIP = 2;
+    private static final int DATA_PAGE = 0;
+    private static final int CONVERTED_UTF8 = 0;
+    private static final int CONVERTED_DECIMAL = 5;
+    private static final int CONVERTED_DATE = 6;
+
+    /** Column types and how they are stored. */
+    enum Kind {
+        BOOLEAN(0), INT32(1), INT64(2), FLOAT(4), DOUBLE(5), DATE(1), TIMESTAMP(2), DECIMAL(2), BINARY(6), STRING(6);
+
+        /** Parquet physical type. */
+        final int physical;
+
+        Kind(int physical) {
+            this.physical = physical;
+        }
+
+        static Kind of(int sqlType, int precision) {
+            switch (sqlType) {
+                case Types.BOOLEAN:
+                case Types.BIT:
+                    return BOOLEAN;
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                    return INT32;
+                case Types.BIGINT:
+                    return INT64;
+                case Types.REAL:
+                    return FLOAT;
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return DOUBLE;
+                case Types.DATE:
+                    return DATE;
+                case Types.TIMESTAMP:
+                    return TIMESTAMP;
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    return precision >= 1 && precision <= 18 ? DECIMAL : STRING;
+                case Types.BINARY:
+                case Types.VARBINARY:
+                case Types.LONGVARBINARY:
+                    return BINARY;
+                default:
+                    return STRING;
+            }
+        }
+    }
+
+    private final String[] names;
+    private final Kind[] kinds;
+    private final int[] precisions;
+    private final int[] scales;
+    private final boolean gzip;
+
+    ParquetEncoder(ResultSetMetaData metaData, boolean gzip) throws SQLException {
+        int columns = metaData.getColumnCount();
+        this.names = new String[columns];
+        this.kinds = new Kind[columns];
+        this.precisions = new int[columns];
+        this.scales = new int[columns];
+        Set<String> used = new HashSet<>();
+        for (int i = 0; i < columns; i++) {
+            names[i] = unique(metaData.getColumnLabel(i + 1), used);
+            precisions[i] = metaData.getPrecision(i + 1);
+            scales[i] = Math.max(0, metaData.getScale(i + 1));
+            kinds[i] = Kind.of(metaData.getColumnType(i + 1), precisions[i]);
+        }
+        this.gzip = gzip;
+    }
+
+    /**
+     * Parquet column names must be unique within a schema: a repeated label ({@code SELECT a, a}) gets the first free
+     * suffix {@code _2}, {@code _3}, ...
+     */
+    private static String unique(String label, Set<String> used) {
+        String name = label;
+        for (int n = 2; !used.add(name); n++) {
+            name = label + "_" + n;
+        }
+        return name;
+    }
+
+    @Override
+    public Object[] read(ResultSet rs) throws SQLException {
+        Object[] row = new Object[kinds.length];
+        for (int i = 0; i < row.length; i++) {
+            int column = i + 1;
+            Object value;
+            switch (kinds[i]) {
+                case BOOLEAN:
+                    value = rs.getBoolean(column);
+                    break;
+                case INT32:
+                    value = rs.getInt(column);
+                    break;
+                case INT64:
+                    value = rs.getLong(column);
+                    break;
+                case FLOAT:
+                    value = rs.getFloat(column);
+                    break;
+                case DOUBLE:
+                    value = rs.getDouble(column);
+                    break;
+                case DATE:
+                    value = epochDay(rs.getObject(column));
+                    break;
+                case TIMESTAMP:
+                    value = epochMicros(rs.getObject(column));
+                    break;
+                case DECIMAL:
+                    BigDecimal decimal = rs.getBigDecimal(column);
+                    value = decimal == null ? null
+                            : decimal.setScale(scales[i], RoundingMode.HALF_UP).unscaledValue().longValueExact();
+                    break;
+                case BINARY:
+                    value = rs.getBytes(column);
+                    break;
+                default:
+                    String text = rs.getString(column);
+                    value = text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+                    break;
+            }
+            row[i] = rs.wasNull() ? null : value;
+        }
+        return row;
+    }
+
+    private static Object epochDay(Object value) throws SQLException {
+        if (value == null) return null;
+        if (value instanceof java.sql.Date date) return (int) date.toLocalDate().toEpochDay();
+        if (value instanceof LocalDate date) return (int) date.toEpochDay();
+        throw new SQLException("Cannot export " + value.getClass().getSimpleName() + " as a Parquet date");
+    }
+
+    private static Object epochMicros(Object value) throws SQLException {
+        LocalDateTime time;
+        if (value == null) return null;
+        if (value instanceof Timestamp timestamp) {
+            time = timestamp.toLocalDateTime();
+        } else if (value instanceof LocalDateTime local) {
+            time = local;
+        } else {
+            throw new SQLException("Cannot export " + value.getClass().getSimpleName() + " as a Parquet timestamp");
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1000;
+    }
+
+    @Override
+    public ResultExport.Chunk encode(Object[][] rows, int count) throws IOException {
+        Bytes out = new Bytes(count * 8 * kinds.length + 64);
+        ColumnChunk[] columns = new ColumnChunk[kinds.length];
+        for (int c = 0; c < kinds.length; c++) {
+            byte[] body = page(rows, count, c);
+            byte[] stored = gzip ? gzip(body) : body;
+            byte[] header = new Thrift()
+                    .i32(1, DATA_PAGE)
+                    .i32(2, body.length)
+                    .i32(3, stored.length)
+                    .beginStruct(5)
+                    .i32(1, count)
+                    .i32(2, ENCODING_PLAIN)
+                    .i32(3, ENCODING_RLE)
+                    .i32(4, ENCODING_RLE)
+                    .endStruct()
+                    .finish();
+            columns[c] = new ColumnChunk(out.size(), count, header.length + body.length,
+                    header.length + stored.length);
+            out.write(header);
+            out.write(stored);
+        }
+        return new RowGroup(ByteBuffer.wrap(out.buffer(), 0, out.size()), count, columns);
+    }
+
+    /** Definition levels and values of column {@code c}, as stored in a v1 data page before compression. */
+    private byte[] page(Object[][] rows, int count, int c) {
+        Kind kind = kinds[c];
+        Bytes page = new Bytes(count * 8 + 16);
+        int nulls = 0;
+        for (int r = 0; r < count; r++) {
+            if (rows[r][c] == null) nulls++;
+        }
+        // Definition levels (bit width 1), prefixed by their length: one RLE run if there are no nulls
+        Bytes levels = new Bytes(nulls == 0 ? 8 : count / 8 + 8);
+        if (nulls == 0) {
+            levels.varint((long) count << 1);
+            levels.write(1);
+        } else {
+            int groups = (count + 7) / 8;
+            levels.varint(((long) groups << 1) | 1);
+            bitPacked(levels, rows, count, c, false);
+        }
+        page.int32(levels.size());
+        page.write(levels.buffer(), 0, levels.size());
+        if (kind == Kind.BOOLEAN) {
+            bitPacked(page, rows, count, c, true);
+            return page.toByteArray();
+        }
+        for (int r = 0; r < count; r++) {
+            Object value = rows[r][c];
+            if (value == null) continue;
+            switch (kind) {
+                case INT32:
+                case DATE:
+                    page.int32((Integer) value);
+                    break;
+                case INT64:
+                case TIMESTAMP:
+                case DECIMAL:
+                    page.int64((Long) value);
+                    break;
+                case FLOAT:
+                    page.int32(Float.floatToRawIntBits((Float) value));
+                    break;
+                case DOUBLE:
+                    page.int64(Double.doubleToRawLongBits((Double) value));
+                    break;
+                default:
+                    byte[] bytes = (byte[]) value;
+                    page.int32(bytes.length);
+                    page.write(bytes, 0, bytes.length);
+                    break;
+            }
+        }
+        return page.toByteArray();
+    }
+
+    /**
+     * Packs one bit per row, least significant bit first: the definition level (1 if not null) of every row, or with
+     * {@code values} the boolean values of the non-null rows (PLAIN boolean encoding).
+     */
+    private static void bitPacked(Bytes out, Object[][] rows, int count, int c, boolean values) {
+        int bits = 0;
+        int n = 0;
+        for (int r = 0; r < count; r++) {
+            Object value = rows[r][c];
+            if (values && value == null) continue;
+            if (values ? (Boolean) value : value != null) bits |= 1 << n;
+            if (++n == 8) {
+                out.write(bits);
+                bits = 0;
+                n = 0;
+            }
+        }
+        if (n > 0) out.write(bits);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024)) {
+            compressed.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public String extension() {
+        return ResultExporter.Format.PARQUET.getExtension();
+    }
+
+    @Override
+    public ByteBuffer header() {
+        return ByteBuffer.wrap(MAGIC);
+    }
+
+    @Override
+    public ByteBuffer footer(List<ResultExport.Chunk> chunks) {
+        long rows = 0;
+        for (ResultExport.Chunk chunk : chunks) {
+            rows += chunk.rows;
+        }
+        Thrift meta = new Thrift().i32(1, 1).beginList(2, Thrift.STRUCT, names.length + 1);
+        meta.beginElement().binary(4, "schema").i32(5, names.length).endElement();
+        for (int c = 0; c < names.length; c++) {
+            schemaElement(meta, c);
+        }
+        meta.i64(3, rows).beginList(4, Thrift.STRUCT, chunks.size());
+        for (ResultExport.Chunk chunk : chunks) {
+            rowGroup(meta, (RowGroup) chunk);
+        }
+        byte[] footer = meta.binary(6, CREATED_BY).finish();
+        ByteBuffer buffer = ByteBuffer.allocate(footer.length + 8).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(footer).putInt(footer.length).put(MAGIC).flip();
+        return buffer;
+    }
+
+    /** SchemaElement of column {@code c}, with converted and logical type annotations where they apply. */
+    private void schemaElement(Thrift meta, int c) {
+        Kind kind = kinds[c];
+        meta.beginElement().i32(1, kind.physical).i32(3, OPTIONAL).binary(4, names[c]);
+        switch (kind) {
+            case STRING:
+                meta.i32(6, CONVERTED_UTF8).beginStruct(10).beginStruct(1).endStruct().endStruct();
+                break;
+            case DATE:
+                meta.i32(6, CONVERTED_DATE).beginStruct(10).beginStruct(6).endStruct().endStruct();
+                break;
+            case DECIMAL:
+                meta.i32(6, CONVERTED_DECIMAL).i32(7, scales[c]).i32(8, precisions[c])
+                        .beginStruct(10).beginStruct(5).i32(1, scales[c]).i32(2, precisions[c]).endStruct().endStruct();
+                break;
+            case TIMESTAMP:
+                // TimestampType(isAdjustedToUTC=false, unit=MICROS); no converted type, TIMESTAMP_MICROS means UTC
+                meta.beginStruct(10).beginStruct(8).bool(1, false)
+                        .beginStruct(2).beginStruct(2).endStruct().endStruct()
+                        .endStruct().endStruct();
+                break;
+            default:
+                break;
+        }
+        meta.endElement();
+    }
+
+    /** RowGroup of a written chunk, with the column chunk offsets moved to the chunk's position in the file. */
+    private void rowGroup(Thrift meta, RowGroup group) {
+        long uncompressed = 0;
+        long compressed = 0;
+        meta.beginElement().beginList(1, Thrift.STRUCT, kinds.length);
+        for (int c = 0; c < kinds.length; c++) {
+            ColumnChunk column = group.columns[c];
+            long offset = group.offset + column.offset;
+            uncompressed += column.uncompressedSize;
+            compressed += column.compressedSize;
+            meta.beginElement().i64(2, offset).beginStruct(3)
+                    .i32(1, kinds[c].physical)
+                    .beginList(2, Thrift.I32, 2).element(ENCODING_PLAIN).element(ENCODING_RLE)
+                    .beginList(3, Thrift.BINARY, 1).element(names[c])
+                    .i32(4, gzip ? CODEC_GZIP : CODEC_UNCOMPRESSED)
+                    .i64(5, column.values)
+                    .i64(6, column.uncompressedSize)
+                    .i64(7, column.compressedSize)
+                    .i64(9, offset)
+                    .endStruct().endElement();
+        }
+        meta.i64(2, uncompressed).i64(3, group.rows).i64(5, group.offset).i64(6, compressed).endElement();
+    }
+
+    /** Encoded batch with the layout of its column chunks (offsets relative to the start of the batch). */
+    private static final class RowGroup extends ResultExport.Chunk {
+        final ColumnChunk[] columns;
+
+        RowGroup(ByteBuffer data, int rows, ColumnChunk[] columns) {
+            super(data, rows);
+            this.columns = columns;
+        }
+    }
+
+    /** Position and sizes (page header included) of the single page of one column in a row group. */
+    private static final class ColumnChunk {
+        final long offset;
+        final int values;
+        final long uncompressedSize;
+        final long compressedSize;
+
+        ColumnChunk(long offset, int values, long uncompressedSize, long compressedSize) {
+            this.offset = offset;
+            this.values = values;
+            this.uncompressedSize = uncompressedSize;
+            this.compressedSize = compressedSize;
+        }
+    }
+
+    /** Byte buffer with the little-endian and varint writes of the Parquet and Thrift compact formats. */
+    static final class Bytes extends ByteArrayOutputStream {
+
+        Bytes(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        void int32(int value) {
+            write(value);
+            write(value >>> 8);
+            write(value >>> 16);
+            write(value >>> 24);
+        }
+
+        void int64(long value) {
+            int32((int) value);
+            int32((int) (value >>> 32));
+        }
+
+        void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        @Override
+        public void write(byte[] bytes) {
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    /** Writer of one struct in the Thrift compact protocol, with nested structs and lists. */
+    static final class Thrift {
+        static final int BOOLEAN_TRUE = 1;
+        static final int BOOLEAN_FALSE = 2;
+        static final int I32 = 5;
+        static final int I64 = 6;
+        static final int BINARY = 8;
+        static final int LIST = 9;
+        static final int STRUCT = 12;
+
+        private final Bytes out = new Bytes(256);
+        /** Last field id of each enclosing struct (field ids are written as deltas). */
+        private final Deque<Integer> enclosing = new ArrayDeque<>();
+        private int lastId;
+
+        Thrift i32(int id, int value) {
+            field(id, I32);
+            out.varint(zigzag(value));
+            return this;
+        }
+
+        Thrift i64(int id, long value) {
+            field(id, I64);
+            out.varint(zigzag(value));
+            return this;
+        }
+
+        Thrift bool(int id, boolean value) {
+            field(id, value ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+            return this;
+        }
+
+        Thrift binary(int id, String value) {
+            field(id, BINARY);
+            element(value);
+            return this;
+        }
+
+        Thrift beginStruct(int id) {
+            field(id, STRUCT);
+            return beginElement();
+        }
+
+        Thrift endStruct() {
+            return endElement();
+        }
+
+        /** List header; follow it with {@code size} elements. */
+        Thrift beginList(int id, int elementType, int size) {
+            field(id, LIST);
+            if (size < 15) {
+                out.write(size << 4 | elementType);
+            } else {
+                out.write(0xF0 | elementType);
+                out.varint(size);
+            }
+            return this;
+        }
+
+        /** Starts a struct element of a list. */
+        Thrift beginElement() {
+            enclosing.push(lastId);
+            lastId = 0;
+            return this;
+        }
+
+        Thrift endElement() {
+            out.write(0);
+            lastId = enclosing.pop();
+            return this;
+        }
+
+        /** i32 element of a list. */
+        Thrift element(int value) {
+            out.varint(zigzag(value));
+            return this;
+        }
+
+        /** Binary (string) element of a list. */
+        Thrift element(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.varint(bytes.length);
+            out.write(bytes);
+            return this;
+        }
+
+        /** Ends the top-level struct and returns its bytes. */
+        byte[] finish() {
+            out.write(0);
+            return out.toByteArray();
+        }
+
+        private void field(int id, int type) {
+            int delta = id - lastId;
+            if (delta > 0 && delta <= 15) {
+                out.write(delta << 4 | type);
+            } else {
+                out.write(type);
+                out.varint(zigzag(id));
+            }
+            lastId = id;
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package io.trino.driver;
+
+import io.trino.jdbc.TrinoConnection;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hint comments embedded in a statement, such as {@code /*+ session(join_distribution_type=BROADCAST) *}{@code /}.
+ * <p>
+ * A hint comment holds one or more {@code name(arguments)} items. {@code session(key=value, ...)} sets Trino session
+ * properties for that one query (catalog properties are written {@code catalog.property=value}; values may be
+ * single-quoted). {@code approximate(key=value, ...)} turns on approximate rewrites for the query, with optional
+ * {@code enabled}, {@code max_error} and {@code sample_ratio} overriding the connection settings. Hint comments made only of known items are removed from the SQL before it is rewritten; any other
+ * {@code /*+ ... *}{@code /} comment, and {@code /*+} inside string literals, quoted identifiers and other
+ * comments, is left in place untouched.
+ * <p>
+ * Session properties are applied to the client-side session of the Trino connection for the submission of that one
+ * query, so no {@code SET SESSION}/{@code RESET SESSION} round trips are needed. They are seen only by the thread
+ * that submits the query (see {@link #withOverrides}): other statements running on the connection at the same time
+ * keep the connection's own properties.
+ */
+final class QueryHints {
+
+    private static final QueryHints NONE = new QueryHints(null, Map.of(), null);
+
+    private static final Pattern HINT_ITEM = Pattern.compile("\\s*([A-Za-z_]+)\\s*\\(([^)]*)\\)\\s*,?");
+    private static final Pattern PROPERTY_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    private static final String SESSION = "session";
+    private static final String APPROXIMATE = "approximate";
+
+    /** Arguments of {@code approximate(...)}. */
+    static final String APPROXIMATE_ENABLED = "enabled";
+    static final String APPROXIMATE_MAX_ERROR = "max_error";
+    static final String APPROXIMATE_SAMPLE_RATIO = "sample_ratio";
+    private static final Set<String> APPROXIMATE_ARGUMENTS =
+            Set.of(APPROXIMATE_ENABLED, APPROXIMATE_MAX_ERROR, APPROXIMATE_SAMPLE_RATIO);
+
+    /** {@code TrinoConnection.sessionProperties}; null if this trino-jdbc version does not have it. */
+    private static final Field SESSION_PROPERTIES = connectionField("sessionProperties");
+
+    /** {@code TrinoConnection.clientInfo}, keyed by trino-jdbc's {@code ClientInfoProperty}; null if missing. */
+    private static final Field CLIENT_INFO = connectionField("clientInfo");
+
+    /** {@code ClientInfoProperty} constants by JDBC client info name (e.g. {@code ClientTags}). */
+    private static final Map<String, Object> CLIENT_INFO_KEYS = clientInfoKeys();
+
+    /** Guards the installation of {@link Overrides} maps into Trino connections. */
+    private static final Object INSTALL_LOCK = new Object();
+
+    private final String sql;
+    private final Map<String, String> sessionProperties;
+    /** Arguments of the {@code approximate(...)} hints; null without such a hint. */
+    private final Map<String, String> approximate;
+
+    private QueryHints(String sql, Map<String, String> sessionProperties, Map<String, String> approximate) {
+        this.sql = sql;
+        this.sessionProperties = sessionProperties;
+        this.approximate = approximate;
+    }
+
+    /**
+     * Extracts the hint comments of {@code sql}.
+     *
+     * @return the hints; {@link #getSql()} is {@code sql} without the recognized hint comments
+     */
+    static QueryHints parse(String sql) {
+        if (sql == null || !sql.contains("/*+")) {
+            return sql == null ? NONE : new QueryHints(sql, Map.of(), null);
+        }
+        Map<String, String> session = new LinkedHashMap<>();
+        Map<String, String> approximate = null;
+        StringBuilder stripped = new StringBuilder(sql.length());
+        int last = 0;
+        int n = sql.length();
+        for (int i = 0; i < n; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = closingQuote(sql, i);
+            } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? n : end;
+            } else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+                int close = sql.indexOf("*/", i + 2);
+                int end = close < 0 ? n : close + 2;
+                Map<String, String> items = new LinkedHashMap<>();
+                Map<String, String> approximateItems = new LinkedHashMap<>();
+                if (close >= 0 && i + 2 < n && sql.charAt(i + 2) == '+'
+                        && parseComment(sql.substring(i + 3, close), items, approximateItems)) {
+                    session.putAll(items);
+                    if (!approximateItems.isEmpty()) {
+                        approximate = approximate == null ? new LinkedHashMap<>() : approximate;
+                        approximate.putAll(approximateItems);
+                    }
+                    stripped.append(sql, last, i).append(' ');
+                    last = end;
+                }
+                i = end - 1;
+            }
+        }
+        if (last == 0) {
+            return new QueryHints(sql, Map.of(), null);
+        }
+        stripped.append(sql, last, sql.length());
+        return new QueryHints(stripped.toString().trim(), Collections.unmodifiableMap(session),
+                approximate == null ? null : Collections.unmodifiableMap(approximate));
+    }
+
+    /** Index of the quote closing the literal or identifier that starts at {@code start} (doubled quotes escape). */
+    private static int closingQuote(String sql, int start) {
+        char quote = sql.charAt(start);
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    /**
+     * Reads the items of one hint comment into {@code session} and {@code approximate} (an {@code approximate()}
+     * item without arguments adds {@code enabled=true}).
+     *
+     * @return false if the comment is not a valid driver hint
+     */
+    private static boolean parseComment(String body, Map<String, String> session, Map<String, String> approximate) {
+        Matcher item = HINT_ITEM.matcher(body);
+        int end = 0;
+        while (end < body.length() && item.find(end) && item.start() == end) {
+            boolean approximateItem = APPROXIMATE.equalsIgnoreCase(item.group(1));
+            if (!approximateItem && !SESSION.equalsIgnoreCase(item.group(1))) {
+                return false;
+            }
+            if (approximateItem) {
+                approximate.put(APPROXIMATE_ENABLED, "true");
+            }
+            for (String assignment : splitArguments(item.group(2))) {
+                int eq = assignment.indexOf('=');
+                String name = eq > 0 ? assignment.substring(0, eq).trim() : "";
+                boolean valid = approximateItem
+                        ? APPROXIMATE_ARGUMENTS.contains(name.toLowerCase(Locale.ROOT))
+                        : PROPERTY_NAME.matcher(name).matches();
+                if (!valid) {
+                    if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
+                        DriverLogging.getLogger().fine("Ignoring invalid " + item.group(1) + " hint: "
+                                + assignment.trim());
+                    }
+                    return false;
+                }
+                String value = unquote(assignment.substring(eq + 1).trim());
+                if (approximateItem) {
+                    approximate.put(name.toLowerCase(Locale.ROOT), value);
+                } else {
+                    session.put(name, value);
+                }
+            }
+            end = item.end();
+        }
+        return end == body.length() || body.substring(end).isBlank();
+    }
+
+    /** Splits {@code a=1, b='x,y'} at commas outside single quotes. */
+    private static List<String> splitArguments(String arguments) {
+        List<String> parts = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < arguments.length(); i++) {
+            char c = arguments.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                parts.add(arguments.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(arguments.substring(start));
+        parts.removeIf(String::isBlank);
+        return parts;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("'") && value.endsWith("'")) {
+            return value.substring(1, value.length() - 1).replace("''", "'");
+        }
+        return value;
+    }
+
+    /** The SQL without recognized hint comments. */
+    String getSql() {
+        return sql;
+    }
+
+    /** Session properties requested by {@code session(...)} hints, in order of appearance. */
+    Map<String, String> getSessionProperties() {
+        return sessionProperties;
+    }
+
+    /** True if the hints set no session properties (there may still be an {@code approximate} hint). */
+    boolean isEmpty() {
+        return sessionProperties.isEmpty();
+    }
+
+    /**
+     * Arguments of the {@code approximate(...)} hints by lower-case name ({@code enabled}, {@code max_error},
+     * {@code sample_ratio}), or null if the statement has no such hint.
+     */
+    Map<String, String> getApproximate() {
+        return approximate;
+    }
+
+    /**
+     * Runs {@code action} (which submits one query) with the hinted session properties set for the calling thread
+     * on {@code connection} (see {@link #withOverrides}). If {@code connection} is not a Trino connection the hints
+     * are ignored; if this trino-jdbc version cannot take them, the statement fails with
+     * {@link SQLFeatureNotSupportedException} rather than running without them.
+     */
+    <T> T execute(Connection connection, SqlAction<T> action) throws SQLException {
+        if (sessionProperties.isEmpty()) {
+            return action.run();
+        }
+        return withOverrides(connection, sessionProperties, Map.of(), action);
+    }
+
+    /**
+     * Runs {@code action} with {@code session} properties and {@code clientInfo} values (by JDBC name, e.g.
+     * {@code ClientTags}) overriding those of {@code connection} for the queries the calling thread submits on it.
+     * <p>
+     * The session properties and client info maps of the Trino connection are replaced once by {@link Overrides}
+     * maps, which show a thread its own overrides on top of the connection's values. Trino copies both maps when a
+     * query is submitted, on the submitting thread, so no lock is held while the query runs and statements running
+     * on other threads never see the overrides. Overrides nest: an inner call adds to the outer one's.
+     * If {@code connection} is not a Trino connection the overrides are ignored.
+     *
+     * @throws SQLFeatureNotSupportedException if this trino-jdbc version has other fields, so the overrides cannot
+     *                                         be applied
+     */
+    static <T> T withOverrides(Connection connection, Map<String, String> session, Map<String, String> clientInfo,
+                               SqlAction<T> action) throws SQLException {
+        Overrides<String> sessionOverrides = session.isEmpty() ? null
+                : overrides(connection, SESSION_PROPERTIES, "sessionProperties");
+        Overrides<Object> clientInfoOverrides = clientInfo.isEmpty() ? null
+                : overrides(connection, CLIENT_INFO, "clientInfo");
+        if ((sessionOverrides == null && !session.isEmpty()) || (clientInfoOverrides == null && !clientInfo.isEmpty())) {
+            if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
+                DriverLogging.getLogger().fine("Session overrides ignored (not a Trino connection): " + session + " "
+                        + clientInfo);
+            }
+            return action.run();
+        }
+        if (clientInfoOverrides == null) {
+            return sessionOverrides.with(session, action);
+        }
+        Map<Object, String> byKey = new HashMap<>();
+        for (Map.Entry<String, String> entry : clientInfo.entrySet()) {
+            Object key = CLIENT_INFO_KEYS.get(entry.getKey());
+            if (key == null && CLIENT_INFO_KEYS.isEmpty()) {
+                throw new SQLFeatureNotSupportedException(
+                        "Workload classes are not supported with this trino-jdbc version: no ClientInfoProperty names");
+            }
+            if (key == null) {
+                throw new SQLException("Unknown client info property: " + entry.getKey());
+            }
+            byKey.put(key, entry.getValue());
+        }
+        if (sessionOverrides == null) {
+            return clientInfoOverrides.with(byKey, action);
+        }
+        return sessionOverrides.with(session, () -> clientInfoOverrides.with(byKey, action));
+    }
+
+    /**
+     * Returns the client-side session properties of a Trino connection as seen by the calling thread, or null for
+     * other connections.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, String> sessionMap(Connection connection) throws SQLException {
+        if (SESSION_PROPERTIES == null || connection == null || !connection.isWrapperFor(TrinoConnection.class)) {
+            return null;
+        }
+        try {
+            return (Map<String, String>) SESSION_PROPERTIES.get(connection.unwrap(TrinoConnection.class));
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The {@link Overrides} map installed in {@code field} (named {@code name}) of a Trino connection; null if
+     * {@code connection} is not a Trino connection.
+     *
+     * @throws SQLFeatureNotSupportedException if {@code field} is null or cannot be replaced
+     */
+    @SuppressWarnings("unchecked")
+    static <K> Overrides<K> overrides(Connection connection, Field field, String name) throws SQLException {
+        if (connection == null || !connection.isWrapperFor(TrinoConnection.class)) {
+            return null;
+        }
+        if (field == null) {
+            throw new SQLFeatureNotSupportedException("Session hints and workload classes are not supported with this "
+                    + "trino-jdbc version: no TrinoConnection." + name + " map");
+        }
+        TrinoConnection trino = connection.unwrap(TrinoConnection.class);
+        try {
+            synchronized (INSTALL_LOCK) {
+                Object current = field.get(trino);
+                if (current instanceof Overrides<?> installed) {
+                    return (Overrides<K>) installed;
+                }
+                Overrides<K> installed = new Overrides<>((Map<K, String>) current);
+                field.set(trino, installed);
+                return installed;
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new SQLFeatureNotSupportedException("Session hints and workload classes are not supported with this "
+                    + "trino-jdbc version: cannot replace TrinoConnection." + name, e);
+        }
+    }
+
+    private static Field connectionField(String name) {
+        try {
+            Field field = TrinoConnection.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return Map.class.isAssignableFrom(field.getType()) ? field : null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            DriverLogging.getLogger().warning("Session hints are not supported with this trino-jdbc version: " + e);
+            return null;
+        }
+    }
+
+    private static Map<String, Object> clientInfoKeys() {
+        try {
+            Class<?> type = Class.forName("io.trino.jdbc.ClientInfoProperty");
+            Method propertyName = type.getDeclaredMethod("getPropertyName");
+            propertyName.setAccessible(true);
+            Map<String, Object> keys = new HashMap<>();
+            for (Object constant : type.getEnumConstants()) {
+                keys.put((String) propertyName.invoke(constant), constant);
+            }
+            return Collections.unmodifiableMap(keys);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Map.of();
+        }
+    }
+
+    /**
+     * Map installed in place of a Trino connection's session properties or client info. Reads on a thread inside
+     * {@link #with} see that thread's overrides on top of the connection's values; writes (e.g. {@code SET SESSION}
+     * results) always go to the connection's values.
+     */
+    static final class Overrides<K> extends AbstractMap<K, String> {
+        private final Map<K, String> values;
+        private final ThreadLocal<Map<K, String>> overrides = new ThreadLocal<>();
+
+        Overrides(Map<K, String> values) {
+            this.values = values;
+        }
+
+        /** Runs {@code action} with {@code added} on top of the calling thread's current overrides. */
+        <T> T with(Map<K, String> added, SqlAction<T> action) throws SQLException {
+            Map<K, String> previous = overrides.get();
+            Map<K, String> current = previous == null ? new HashMap<>() : new HashMap<>(previous);
+            current.putAll(added);
+            overrides.set(current);
+            try {
+                return action.run();
+            } finally {
+                if (previous == null) {
+                    overrides.remove();
+                } else {
+                    overrides.set(previous);
+                }
+            }
+        }
+
+        private Map<K, String> visible() {
+            Map<K, String> own = overrides.get();
+            if (own == null) {
+                return values;
+            }
+            Map<K, String> merged = new HashMap<>(values);
+            merged.putAll(own);
+            return Collections.unmodifiableMap(merged);
+        }
+
+        @Override
+        public Set<Entry<K, String>> entrySet() {
+            return visible().entrySet();
+        }
+
+        @Override
+        public int size() {
+            return visible().size();
+        }
+
+        @Override
+        public String get(Object key) {
+            Map<K, String> own = overrides.get();
+            return own != null && own.containsKey(key) ? own.get(key) : values.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            Map<K, String> own = overrides.get();
+            return (own != null && own.containsKey(key)) || values.containsKey(key);
+        }
+
+        @Override
+        public String put(K key, String value) {
+            return values.put(key, value);
+        }
+
+        @Override
+        public String remove(Object key) {
+            return values.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            values.clear();
+        }
+    }
+
+    /** A JDBC call that submits one query. */
+    @FunctionalInterface
+    interface SqlAction<T> {
+        T run() throws SQLException;
+    }
+}
@@ -0,0 +1,388 @@
+package io.trino.driver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Implementation of {@link ResultExporter} for one export: reads the rows on the calling thread into batches, encodes
+ * the batches on a shared pool, and appends them in order to the output files through a {@link FileChannel} on a
+ * writer task, rolling to a new file at {@code exportMaxFileBytes}.
+ * <p>
+ * The encoded batches travel from the reader to the writer through a queue of {@code exportParallelism} futures,
+ * which bounds both the encoding concurrency and the memory of the export: the reader blocks while the queue is full.
+ * <p>
+ * Encoders and writers run on two fixed-size pools shared by all exports, one thread per processor each. They are
+ * separate because a writer waits for encoded batches: on a single bounded pool, writers could hold every thread
+ * while their batches wait in the queue.
+ */
+final class ResultExport {
+
+    static final int POOL_THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final ThreadPoolExecutor ENCODERS = pool("mytrino-export-encode");
+    private static final ThreadPoolExecutor WRITERS = pool("mytrino-export-write");
+
+    /** Queue entries that tell the writer the result is complete, or that the export failed. */
+    private static final Future<Chunk> END = CompletableFuture.completedFuture(null);
+    private static final Future<Chunk> ABORT = CompletableFuture.completedFuture(null);
+
+    private final DriverConfig config;
+    private final Path directory;
+    private final ResultExporter.Format format;
+
+    /**
+     * @param config    settings of the connection (parallelism, batch size, file size, compression)
+     * @param directory directory of the output files
+     * @param format    file format
+     */
+    ResultExport(DriverConfig config, Path directory, ResultExporter.Format format) {
+        this.config = config;
+        this.directory = directory;
+        this.format = format;
+    }
+
+    /** Runs {@code query} and writes its rows; the ResultSet is always closed. */
+    ExportResult export(QueryHints.SqlAction<ResultSet> query) throws SQLException {
+        long start = System.nanoTime();
+        Writer writer;
+        try (ResultSet rs = query.run()) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            Encoder encoder = format == ResultExporter.Format.PARQUET
+                    ? new ParquetEncoder(metaData, config.isExportGzip())
+                    : new CsvEncoder(metaData, config.isExportGzip());
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new SQLException("Cannot create export directory " + directory + ": " + e.getMessage(), e);
+            }
+            BlockingQueue<Future<Chunk>> queue = new ArrayBlockingQueue<>(config.getExportParallelism());
+            writer = new Writer(encoder, queue);
+            Future<?> writing = WRITERS.submit(writer);
+            try {
+                boolean complete = false;
+                try {
+                    read(rs, encoder, queue, writer);
+                    complete = true;
+                } finally {
+                    if (!complete) writer.aborted = true;
+                    queue.put(complete ? END : ABORT);
+                    writing.get();
+                }
+            } catch (InterruptedException e) {
+                writing.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while exporting to " + directory, e);
+            } catch (ExecutionException e) {
+                throw new SQLException("Export to " + directory + " failed", e.getCause());
+            }
+            if (writer.failure != null) {
+                throw new SQLException("Export to " + directory + " failed: " + writer.failure.getMessage(),
+                        writer.failure);
+            }
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        ExportResult result = new ExportResult(writer.files, writer.rows, writer.bytes, elapsed);
+        DriverLogging.Scope log = config.getLogScope();
+        if (log.isLoggable(Level.FINE)) {
+            log.log(Level.FINE, "Exported " + result.getRowCount() + " rows to " + result.getFiles().size() + " "
+                    + format + " files in " + directory + " [" + elapsed + " ms]");
+        }
+        return result;
+    }
+
+    /** Reads the rows into batches and queues their encoding, until the result ends or the writer fails. */
+    private void read(ResultSet rs, Encoder encoder, BlockingQueue<Future<Chunk>> queue, Writer writer)
+            throws SQLException, InterruptedException {
+        int batchRows = config.getExportBatchRows();
+        Object[][] batch = new Object[batchRows][];
+        int count = 0;
+        while (writer.failure == null && rs.next()) {
+            batch[count++] = encoder.read(rs);
+            if (count == batchRows) {
+                encode(encoder, batch, count, queue);
+                batch = new Object[batchRows][];
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            encode(encoder, batch, count, queue);
+        }
+    }
+
+    /** Queues the encoding of a batch, waiting for a free slot first so that nothing runs ahead of the queue. */
+    private static void encode(Encoder encoder, Object[][] rows, int count, BlockingQueue<Future<Chunk>> queue)
+            throws InterruptedException {
+        FutureTask<Chunk> task = new FutureTask<>(() -> encoder.encode(rows, count));
+        queue.put(task);
+        ENCODERS.execute(task);
+    }
+
+    private static ThreadPoolExecutor pool(String name) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_THREADS, POOL_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, name);
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /** Encodes rows into the bytes of one file format. Encoding must be safe to run for several batches at once. */
+    interface Encoder {
+
+        /** Reads the values of the current row that {@link #encode} needs. Called on the reading thread only. */
+        Object[] read(ResultSet rs) throws SQLException;
+
+        /** Encodes the first {@code count} rows of {@code rows}. */
+        Chunk encode(Object[][] rows, int count) throws IOException;
+
+        /** File name extension, including the dot. */
+        String extension();
+
+        /** Bytes at the start of every file. */
+        ByteBuffer header() throws IOException;
+
+        /** Bytes at the end of a file that received {@code chunks} (with their file offsets set). */
+        ByteBuffer footer(List<Chunk> chunks) throws IOException;
+    }
+
+    /** One encoded batch. The writer sets its offset in the file and drops its bytes once written. */
+    static class Chunk {
+        private ByteBuffer data;
+        final int rows;
+        long offset;
+
+        Chunk(ByteBuffer data, int rows) {
+            this.data = data;
+            this.rows = rows;
+        }
+
+        int size() {
+            return data.remaining();
+        }
+    }
+
+    /** Takes the encoded batches in result order and appends them to the output files. */
+    private final class Writer implements Callable<Void> {
+        private final Encoder encoder;
+        private final BlockingQueue<Future<Chunk>> queue;
+        private final long maxFileBytes;
+        final List<Path> files = new ArrayList<>();
+        /** Chunks of the current file, for its footer. */
+        private final List<Chunk> chunks = new ArrayList<>();
+        private FileChannel channel;
+        private long position;
+        long rows;
+        long bytes;
+        /** First error of encoding or writing; the remaining batches are then discarded. */
+        volatile Throwable failure;
+        /** Set by the reader when it fails; the remaining batches are then discarded. */
+        volatile boolean aborted;
+
+        Writer(Encoder encoder, BlockingQueue<Future<Chunk>> queue) {
+            this.encoder = encoder;
+            this.queue = queue;
+            this.maxFileBytes = config.getExportMaxFileBytes();
+        }
+
+        @Override
+        public Void call() throws IOException {
+            try {
+                while (true) {
+                    Future<Chunk> next = queue.take();
+                    if (next == END || next == ABORT) {
+                        if (next == END && failure == null) {
+                            if (channel == null) open(); // an empty result still gets a file
+                            close();
+                            return null;
+                        }
+                        break;
+                    }
+                    if (failure != null || aborted) {
+                        next.cancel(false);
+                        continue;
+                    }
+                    try {
+                        write(next.get());
+                    } catch (ExecutionException e) {
+                        failure = e.getCause();
+                    } catch (IOException | RuntimeException e) {
+                        failure = e;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Cancelled by the reader: delete what was written
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            }
+            discard();
+            return null;
+        }
+
+        private void write(Chunk chunk) throws IOException {
+            if (channel == null) {
+                open();
+            } else if (maxFileBytes > 0 && !chunks.isEmpty() && position + chunk.size() > maxFileBytes) {
+                close();
+                open();
+            }
+            chunk.offset = position;
+            rows += chunk.rows;
+            write(chunk.data);
+            chunk.data = null;
+            chunks.add(chunk);
+        }
+
+        private void open() throws IOException {
+            Path file = directory.resolve(String.format("part-%05d%s", files.size(), encoder.extension()));
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            files.add(file);
+            position = 0;
+            write(encoder.header());
+        }
+
+        private void close() throws IOException {
+            write(encoder.footer(chunks));
+            chunks.clear();
+            channel.close();
+            channel = null;
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            int size = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            position += size;
+            bytes += size;
+        }
+
+        /** Closes and deletes every file of the failed export. */
+        private void discard() {
+            try {
+                if (channel != null) channel.close();
+            } catch (IOException e) {
+                // deleted below
+            }
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    DriverLogging.getLogger().warning("Cannot delete " + file + " of failed export: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** RFC 4180 CSV with a header row; every batch is a separate gzip member when compressed. */
+    static final class CsvEncoder implements Encoder {
+        private final String[] labels;
+        private final boolean gzip;
+
+        CsvEncoder(ResultSetMetaData metaData, boolean gzip) throws SQLException {
+            this.labels = new String[metaData.getColumnCount()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = metaData.getColumnLabel(i + 1);
+            }
+            this.gzip = gzip;
+        }
+
+        @Override
+        public Object[] read(ResultSet rs) throws SQLException {
+            Object[] row = new Object[labels.length];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = rs.getString(i + 1);
+            }
+            return row;
+        }
+
+        @Override
+        public Chunk encode(Object[][] rows, int count) throws IOException {
+            StringBuilder text = new StringBuilder(count * 16 * labels.length);
+            for (int r = 0; r < count; r++) {
+                line(text, rows[r]);
+            }
+            return new Chunk(bytes(text), count);
+        }
+
+        @Override
+        public String extension() {
+            return ResultExporter.Format.CSV.getExtension() + (gzip ? ".gz" : "");
+        }
+
+        @Override
+        public ByteBuffer header() throws IOException {
+            StringBuilder text = new StringBuilder();
+            line(text, labels);
+            return bytes(text);
+        }
+
+        @Override
+        public ByteBuffer footer(List<Chunk> chunks) {
+            return ByteBuffer.allocate(0);
+        }
+
+        private ByteBuffer bytes(StringBuilder text) throws IOException {
+            byte[] utf8 = text.toString().getBytes(StandardCharsets.UTF_8);
+            if (!gzip) {
+                return ByteBuffer.wrap(utf8);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(utf8.length / 4 + 64);
+            try (GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024)) {
+                compressed.write(utf8);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+
+        private static void line(StringBuilder text, Object[] values) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) text.append(',');
+                if (values[i] != null) field(text, values[i].toString());
+            }
+            text.append('\n');
+        }
+
+        private static void field(StringBuilder text, String value) {
+            boolean quote = value.isEmpty();
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                text.append(value);
+                return;
+            }
+            text.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') text.append('"');
+                text.append(c);
+            }
+            text.append('"');
+        }
+    }
+}
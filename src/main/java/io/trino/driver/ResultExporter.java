@@ -0,0 +1,64 @@
+package io.trino.driver;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+/**
+ * Streams the result of a query straight into local CSV or Parquet files.
+ * <p>
+ * Obtain it from a statement of this driver with {@code statement.unwrap(ResultExporter.class)}. The query is executed
+ * through the statement like any other (rewriting, hints, admission, workload classes, events). Its rows are read on
+ * the calling thread in batches of {@code exportBatchRows}; up to {@code exportParallelism} batches are encoded and
+ * compressed at the same time on a shared pool, and a writer thread appends them in result order to
+ * {@code part-00000.<ext>}, {@code part-00001.<ext>}, ... in the target directory, starting a new file before a batch
+ * would take the current one past {@code exportMaxFileBytes}. However large the result, at most
+ * {@code exportParallelism + 2} batches are held in memory.
+ * <ul>
+ *   <li>{@link Format#CSV}: RFC 4180, UTF-8, a header row of column labels and {@code \n} line ends. SQL NULL is an
+ *       empty field, an empty string is {@code ""}. With {@code exportCompression=gzip} every batch is a separate
+ *       gzip member of a {@code .csv.gz} file (standard multi-member gzip).</li>
+ *   <li>{@link Format#PARQUET}: one row group per batch, one PLAIN-encoded data page per column, all columns
+ *       optional. boolean, tinyint/smallint/integer, bigint, real, double, date, timestamp (microseconds, not adjusted
+ *       to UTC), decimal up to precision 18 and varbinary keep their type; every other type (varchar, decimal above
+ *       precision 18, timestamp with time zone, arrays, maps, rows, ...) is written as its string form.</li>
+ * </ul>
+ * Output files must not exist yet. If the export fails, the files it wrote are deleted.
+ */
+public interface ResultExporter {
+
+    /** File format of an export. */
+    enum Format {
+        CSV(".csv"),
+        PARQUET(".parquet");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /** File name extension, without the {@code .gz} that compressed CSV files get. */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Executes the query {@code sql} and writes its rows into files in {@code directory} (created if missing).
+     *
+     * @param sql       the query
+     * @param directory directory of the output files
+     * @param format    file format
+     * @return the files written and the number of rows and bytes
+     * @throws SQLException if the query fails or a file cannot be written
+     */
+    ExportResult export(String sql, Path directory, Format format) throws SQLException;
+
+    /**
+     * Executes a PreparedStatement with its current parameters and writes its rows into files in {@code directory}.
+     *
+     * @throws SQLException if called on a plain Statement, if the query fails or a file cannot be written
+     * @see #export(String, Path, Format)
+     */
+    ExportResult export(Path directory, Format format) throws SQLException;
+}
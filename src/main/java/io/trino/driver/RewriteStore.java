@@ -0,0 +1,362 @@
+package io.trino.driver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Optional persistent store of SQL rewrites ({@link SqlParserLogic#parse} results) that survives JVM restarts.
+ * <p>
+ * The store is an append-only file: a header (magic, format version, {@link SqlParserLogic#REWRITE_VERSION})
+ * followed by records {@code [crc32][sql hash][options][sql length][rewritten length][sql][rewritten]}, where the
+ * options are the {@link SqlParserLogic#parse(String, boolean)} flags the rewrite was made with. On first use the file
+ * is read in the background into an in-memory map; until then lookups simply parse. New rewrites are appended by a background writer under an exclusive lock of the sibling
+ * {@code <file>.lock}, so several JVMs on one host can share one file. A torn or corrupt tail record (e.g. a JVM
+ * killed mid-write) ends the read; everything before it is used.
+ * <p>
+ * A file written by a different rewrite version is ignored and rewritten by compaction. Compaction (also triggered
+ * when the file holds many duplicate records) re-reads the file under the lock, so records appended by other JVMs
+ * since the load are kept, writes the unique entries to a temporary file and atomically replaces the store. The lock
+ * file itself is never replaced; writers check under it whether the store was replaced and then reopen it.
+ */
+final class RewriteStore {
+
+    private static final int MAGIC = 0x4D545257; // "MTRW"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 12;
+    private static final int RECORD_HEADER_BYTES = 4 + 8 + 4 + 4 + 4;
+    /** Option bit of rewrites made with {@code sargableDates}. */
+    private static final int OPTION_SARGABLE_DATES = 1;
+
+    private static final Map<Path, RewriteStore> STORES = new ConcurrentHashMap<>();
+
+    private static final ExecutorService IO = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(10_000), r -> {
+                Thread t = new Thread(r, "mytrino-rewrite-store");
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    private final Path path;
+    private final int maxEntries;
+    /** Rewrites by SQL, one map per option combination. */
+    private final Map<String, String> rewrites = new ConcurrentHashMap<>();
+    private final Map<String, String> sargableRewrites = new ConcurrentHashMap<>();
+    private final AtomicInteger recordsInFile = new AtomicInteger();
+    private volatile boolean loadStarted;
+    private volatile boolean loaded;
+    private FileChannel appendChannel;
+    private Object appendFileKey;
+    private FileChannel lockChannel;
+
+    private RewriteStore(Path path, int maxEntries) {
+        this.path = path;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the driver-wide store for {@code file}, or null if {@code file} is null or empty.
+     */
+    static RewriteStore forFile(String file, int maxEntries) {
+        if (file == null || file.isBlank()) return null;
+        Path path = Paths.get(file.trim()).toAbsolutePath().normalize();
+        return STORES.computeIfAbsent(path, p -> new RewriteStore(p, maxEntries));
+    }
+
+    /**
+     * Returns the rewritten SQL, from the store if known, otherwise from
+     * {@link SqlParserLogic#parse(String, boolean, DriverLogging.Scope)} (in which case the result is appended to the
+     * store in the background).
+     *
+     * @param log log settings of the calling connection, for the parser
+     */
+    String rewrite(String sql, boolean sargableDates, DriverLogging.Scope log) {
+        if (sql == null) return null;
+        if (!loadStarted) {
+            startLoad();
+        }
+        Map<String, String> known = rewrites(sargableDates);
+        String cached = known.get(sql);
+        if (cached != null) {
+            return cached;
+        }
+        String rewritten = SqlParserLogic.parse(sql, sargableDates, log);
+        if (loaded && size() < maxEntries && known.putIfAbsent(sql, rewritten) == null) {
+            int options = sargableDates ? OPTION_SARGABLE_DATES : 0;
+            IO.execute(() -> append(sql, options, rewritten));
+        }
+        return rewritten;
+    }
+
+    private Map<String, String> rewrites(boolean sargableDates) {
+        return sargableDates ? sargableRewrites : rewrites;
+    }
+
+    /** True once the file has been read (lookups before that fall through to the parser). */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    int size() {
+        return rewrites.size() + sargableRewrites.size();
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /** Blocks until queued loads/appends have been written (tests only). */
+    static void flush() throws Exception {
+        IO.submit(() -> { }).get(10, TimeUnit.SECONDS);
+    }
+
+    /** Closes and forgets all stores (tests only). */
+    static void reset() throws Exception {
+        flush();
+        for (RewriteStore store : STORES.values()) {
+            synchronized (store) {
+                store.closeAppendChannel();
+                if (store.lockChannel != null) store.lockChannel.close();
+                store.lockChannel = null;
+            }
+        }
+        STORES.clear();
+    }
+
+    synchronized void startLoad() {
+        if (loadStarted) return;
+        loadStarted = true;
+        IO.execute(this::load);
+    }
+
+    private void load() {
+        int read = 0;
+        boolean rewriteFile = false;
+        try {
+            long size = Files.size(path);
+            rewriteFile = size > 0 && size < HEADER_BYTES; // torn header
+            if (size >= HEADER_BYTES) {
+                ByteBuffer buffer = read(path);
+                if (!isCurrentVersion(buffer)) {
+                    rewriteFile = true; // other format or rewrite version
+                } else {
+                    read = readRecords(buffer);
+                    rewriteFile = buffer.hasRemaining(); // torn or corrupt tail would hide later appends
+                }
+            }
+        } catch (IOException e) {
+            // Missing file is the normal first start; anything else just means starting cold.
+            if (Files.exists(path) && DriverLogging.getLogger().isLoggable(Level.FINE)) {
+                DriverLogging.getLogger().fine("Could not read rewrite store " + path + ": " + e.getMessage());
+            }
+        }
+        recordsInFile.set(read);
+        loaded = true;
+        if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
+            DriverLogging.getLogger().fine("Rewrite store " + path + " loaded: " + size() + " rewrites");
+        }
+        if (rewriteFile || read > 2 * size() + 1000) {
+            compact();
+        }
+    }
+
+    private static boolean isCurrentVersion(ByteBuffer buffer) {
+        return buffer.remaining() >= HEADER_BYTES && buffer.getInt() == MAGIC && buffer.getInt() == FORMAT_VERSION
+                && buffer.getInt() == SqlParserLogic.REWRITE_VERSION;
+    }
+
+    private int readRecords(ByteBuffer buffer) {
+        int records = 0;
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+            int start = buffer.position();
+            int checksum = buffer.getInt();
+            long hash = buffer.getLong();
+            int options = buffer.getInt();
+            int sqlLength = buffer.getInt();
+            int rewrittenLength = buffer.getInt();
+            if (sqlLength < 0 || rewrittenLength < 0 || buffer.remaining() < (long) sqlLength + rewrittenLength) {
+                buffer.position(start);
+                break; // torn tail
+            }
+            byte[] sqlBytes = new byte[sqlLength];
+            byte[] rewrittenBytes = new byte[rewrittenLength];
+            buffer.get(sqlBytes).get(rewrittenBytes);
+            crc.reset();
+            crc.update(buffer.duplicate().position(start + 4).limit(buffer.position()));
+            if ((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                break; // corrupt record; ignore the rest
+            }
+            String sql = new String(sqlBytes, StandardCharsets.UTF_8);
+            if (sql.hashCode() == (int) hash && size() < maxEntries) {
+                rewrites((options & OPTION_SARGABLE_DATES) != 0).put(sql, new String(rewrittenBytes, StandardCharsets.UTF_8));
+            }
+            records++;
+        }
+        return records;
+    }
+
+    private synchronized void append(String sql, int options, String rewritten) {
+        try {
+            ByteBuffer record = encode(sql, options, rewritten);
+            FileLock lock = lock();
+            try {
+                FileChannel channel = appendChannel();
+                if (channel.size() == 0) {
+                    channel.write(header());
+                }
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            } finally {
+                lock.release();
+            }
+            recordsInFile.incrementAndGet();
+        } catch (IOException e) {
+            if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
+                DriverLogging.getLogger().fine("Could not append to rewrite store " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** Takes the exclusive lock that guards appends to and replacement of the store across JVMs. */
+    private FileLock lock() throws IOException {
+        if (lockChannel == null) {
+            Path parent = path.getParent();
+            if (parent != null) Files.createDirectories(parent);
+            lockChannel = FileChannel.open(path.resolveSibling(path.getFileName() + ".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+        return lockChannel.lock();
+    }
+
+    /**
+     * Opens (or reopens, if another JVM compacted the file) the channel used for appends. Must be called under
+     * {@link #lock()}, so the file cannot be replaced between the check and the append.
+     */
+    private FileChannel appendChannel() throws IOException {
+        Object currentKey = Files.exists(path) ? Files.readAttributes(path, BasicFileAttributes.class).fileKey() : null;
+        if (appendChannel == null || currentKey == null || !Objects.equals(currentKey, appendFileKey)) {
+            closeAppendChannel();
+            appendChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            appendFileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        }
+        return appendChannel;
+    }
+
+    private void closeAppendChannel() throws IOException {
+        if (appendChannel != null) appendChannel.close();
+        appendChannel = null;
+        appendFileKey = null;
+    }
+
+    /**
+     * Rewrites the store with one record per known rewrite, under the current rewrite version. The file is re-read
+     * under the lock first, so rewrites appended by other JVMs are kept.
+     */
+    synchronized void compact() {
+        Path tmp = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            FileLock lock = lock();
+            try {
+                closeAppendChannel(); // nothing of this JVM may keep the replaced file open
+                if (Files.exists(path)) {
+                    ByteBuffer current = read(path);
+                    if (isCurrentVersion(current)) {
+                        readRecords(current);
+                    }
+                }
+                try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    out.write(header());
+                    write(out, rewrites, 0);
+                    write(out, sargableRewrites, OPTION_SARGABLE_DATES);
+                    out.force(true);
+                }
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                lock.release();
+            }
+            recordsInFile.set(size());
+            if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
+                DriverLogging.getLogger().fine("Rewrite store " + path + " compacted to " + size() + " records");
+            }
+        } catch (IOException e) {
+            if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
+                DriverLogging.getLogger().fine("Could not compact rewrite store " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void write(FileChannel out, Map<String, String> rewrites, int options) throws IOException {
+        for (Map.Entry<String, String> entry : rewrites.entrySet()) {
+            ByteBuffer record = encode(entry.getKey(), options, entry.getValue());
+            while (record.hasRemaining()) {
+                out.write(record);
+            }
+        }
+    }
+
+    /**
+     * Reads the whole file into a heap buffer: the records are copied into the maps once, so mapping the file would
+     * only add an unmap (and keep the file locked on Windows until then).
+     */
+    private static ByteBuffer read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Rewrite store too large: " + size + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break; // truncated meanwhile: the records read so far are checked as usual
+                }
+            }
+            return buffer.flip();
+        }
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(SqlParserLogic.REWRITE_VERSION).flip();
+        return header;
+    }
+
+    private static ByteBuffer encode(String sql, int options, String rewritten) {
+        byte[] sqlBytes = sql.getBytes(StandardCharsets.UTF_8);
+        byte[] rewrittenBytes = rewritten.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + sqlBytes.length + rewrittenBytes.length);
+        record.putInt(0)
+                .putLong(sql.hashCode())
+                .putInt(options)
+                .putInt(sqlBytes.length)
+                .putInt(rewrittenBytes.length)
+                .put(sqlBytes)
+                .put(rewrittenBytes);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.capacity() - 4);
+        record.putInt(0, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+}
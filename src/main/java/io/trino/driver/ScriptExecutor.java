@@ -0,0 +1,37 @@
+package io.trino.driver;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Runs multi-statement SQL scripts on a driver connection, with independent statements executed concurrently.
+ * <p>
+ * Obtain it from a connection of this driver with {@code connection.unwrap(ScriptExecutor.class)}.
+ * The script is split into statements at semicolons (outside quotes and comments), each statement is rewritten
+ * once, and a dependency graph is built from the tables each statement reads and writes:
+ * <ul>
+ *   <li>a statement runs after every earlier statement that writes a table it reads or writes, and after every
+ *       earlier statement that reads a table it writes;</li>
+ *   <li>statements that write are run in script order;</li>
+ *   <li>statements that are not plain queries or DML/DDL with known tables ({@code USE}, {@code SET SESSION},
+ *       {@code CALL}, SQL that does not parse, ...) are barriers: they run alone, after everything before them.</li>
+ * </ul>
+ * Tables are matched by unqualified name, so dependencies are never missed between differently qualified names,
+ * but a view that reads a table written in the same script is not seen through. Scripts with transaction control
+ * run sequentially.
+ */
+public interface ScriptExecutor {
+
+    /**
+     * Executes every statement of {@code script} and returns their results in script order.
+     * <p>
+     * Up to {@code scriptParallelism} independent statements run at the same time, each on its own statement of
+     * this connection. Query results are read completely into memory. If a statement fails, no further
+     * statements are started, the running ones are awaited, and the first failure is thrown.
+     *
+     * @param script SQL statements separated by semicolons
+     * @return one result per statement, in script order
+     * @throws SQLException if a statement fails (the message names its position in the script)
+     */
+    List<ScriptResult> executeScript(String script) throws SQLException;
+}
@@ -0,0 +1,59 @@
+package io.trino.driver;
+
+import java.sql.ResultSet;
+
+/**
+ * Outcome of one statement of a script run by {@link ScriptExecutor}.
+ */
+public final class ScriptResult {
+
+    private final int index;
+    private final String sql;
+    private final MaterializedResult rows;
+    private final long updateCount;
+    private final long elapsedMillis;
+
+    ScriptResult(int index, String sql, MaterializedResult rows, long updateCount, long elapsedMillis) {
+        this.index = index;
+        this.sql = sql;
+        this.rows = rows;
+        this.updateCount = updateCount;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /** Position of the statement in the script, starting at 1. */
+    public int getIndex() {
+        return index;
+    }
+
+    /** The statement as sent to Trino (after rewriting). */
+    public String getSql() {
+        return sql;
+    }
+
+    /** True if the statement returned rows. */
+    public boolean hasResultSet() {
+        return rows != null;
+    }
+
+    /** A new ResultSet over the rows of the statement, or null if it returned an update count. */
+    public ResultSet getResultSet() {
+        return rows != null ? rows.newResultSet() : null;
+    }
+
+    /** Update count of the statement, or -1 if it returned rows. */
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /** Time from submission until the result was read completely, in milliseconds. */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ScriptResult[" + index + ", " + (rows != null ? rows.getRowCount() + " rows" : updateCount + " updated")
+                + ", " + elapsedMillis + " ms]";
+    }
+}
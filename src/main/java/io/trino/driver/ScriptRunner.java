@@ -0,0 +1,359 @@
+package io.trino.driver;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.alter.Alter;
+import net.sf.jsqlparser.statement.create.table.CreateTable;
+import net.sf.jsqlparser.statement.create.view.CreateView;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.drop.Drop;
+import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.merge.Merge;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.truncate.Truncate;
+import net.sf.jsqlparser.statement.update.Update;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * Implementation of {@link ScriptExecutor} for one connection: splits a script, derives the statement
+ * dependencies from the tables each statement touches, and runs the statements on up to {@code scriptParallelism}
+ * threads of the script's own, starting each one as soon as the statements it depends on have finished. The threads
+ * end with the script, so concurrent scripts never share or pile up threads.
+ * <p>
+ * Each statement runs on a statement of the driver's connection proxy, so approximate rewrites, workload classes,
+ * admission control, session hints and logging apply as for any other execution. Session hints and workload
+ * classes only affect the thread submitting their statement, so concurrent statements do not see each other's.
+ */
+final class ScriptRunner {
+
+    /** Statements that make the whole script run sequentially. */
+    private static final Pattern TRANSACTION_CONTROL = Pattern.compile(
+            "^\\s*(START\\s+TRANSACTION|BEGIN|COMMIT|ROLLBACK)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final Connection connection;
+    private final DriverConfig config;
+
+    /**
+     * @param connection the driver's connection proxy the statements run on
+     * @param config     settings of the connection (parallelism, rewriting)
+     */
+    ScriptRunner(Connection connection, DriverConfig config) {
+        this.connection = connection;
+        this.config = config;
+    }
+
+    /** See {@link ScriptExecutor#executeScript(String)}. */
+    List<ScriptResult> execute(String script) throws SQLException {
+        List<Step> steps = new ArrayList<>();
+        boolean sequential = !connection.getAutoCommit();
+        for (String sql : split(script)) {
+            QueryHints hints = QueryHints.parse(sql);
+            Step step = new Step(steps.size() + 1, sql, hints, config.rewrite(hints.getSql()));
+            sequential |= TRANSACTION_CONTROL.matcher(step.sql).find();
+            steps.add(step);
+        }
+        link(steps, sequential);
+        DriverLogging.Scope log = config.getLogScope();
+        if (log.isLoggable(Level.FINE)) {
+            long independent = steps.stream().filter(s -> s.dependencies == 0).count();
+            log.log(Level.FINE, "Script of " + steps.size() + " statements, " + independent + " without dependencies");
+        }
+        run(steps, sequential ? 1 : config.getScriptParallelism());
+        List<ScriptResult> results = new ArrayList<>(steps.size());
+        for (Step step : steps) {
+            results.add(step.result);
+        }
+        return results;
+    }
+
+    /** Builds the dependency edges between the steps (a chain if {@code sequential}). */
+    static void link(List<Step> steps, boolean sequential) {
+        for (Step step : steps) {
+            analyze(step);
+        }
+        for (int j = 0; j < steps.size(); j++) {
+            Step later = steps.get(j);
+            for (int i = 0; i < j; i++) {
+                Step earlier = steps.get(i);
+                if (sequential ? i == j - 1 : dependsOn(later, earlier)) {
+                    earlier.successors.add(later);
+                    later.dependencies++;
+                }
+            }
+        }
+    }
+
+    /** True if {@code later} must not start before {@code earlier} has finished. */
+    static boolean dependsOn(Step later, Step earlier) {
+        if (later.barrier || earlier.barrier) {
+            return true;
+        }
+        if (!later.writes.isEmpty() && !earlier.writes.isEmpty()) {
+            return true;
+        }
+        return intersects(earlier.writes, later.reads) || intersects(earlier.reads, later.writes);
+    }
+
+    private static boolean intersects(Set<String> a, Set<String> b) {
+        for (String name : a) {
+            if (b.contains(name)) return true;
+        }
+        return false;
+    }
+
+    /** Fills the read and write sets of a step; steps that cannot be analyzed become barriers. */
+    private static void analyze(Step step) {
+        net.sf.jsqlparser.statement.Statement statement;
+        try {
+            statement = StatementParser.parse(step.sql);
+        } catch (JSQLParserException | RuntimeException e) {
+            step.barrier = true;
+            return;
+        }
+        Table target = null;
+        if (statement instanceof Insert insert) {
+            target = insert.getTable();
+        } else if (statement instanceof Update update) {
+            target = update.getTable();
+        } else if (statement instanceof Delete delete) {
+            target = delete.getTable();
+        } else if (statement instanceof Merge merge) {
+            target = merge.getTable();
+        } else if (statement instanceof CreateTable create) {
+            target = create.getTable();
+        } else if (statement instanceof CreateView view) {
+            target = view.getView();
+        } else if (statement instanceof Drop drop) {
+            target = drop.getName();
+        } else if (statement instanceof Alter alter) {
+            target = alter.getTable();
+        } else if (statement instanceof Truncate truncate) {
+            target = truncate.getTable();
+        } else if (!(statement instanceof Select)) {
+            step.barrier = true;
+            return;
+        }
+        try {
+            for (String name : new TablesNamesFinder<Void>().getTables(statement)) {
+                step.reads.add(normalize(name));
+            }
+        } catch (RuntimeException e) {
+            // Statement kinds the finder does not support: only the target is known
+            if (target == null) {
+                step.barrier = true;
+                return;
+            }
+        }
+        if (target != null) {
+            String name = normalize(target.getFullyQualifiedName());
+            step.writes.add(name);
+            step.reads.remove(name);
+        }
+    }
+
+    /** Unqualified, unquoted, lower-case table name. */
+    static String normalize(String name) {
+        String last = name.substring(name.lastIndexOf('.') + 1).trim();
+        if (last.length() >= 2 && (last.charAt(0) == '"' || last.charAt(0) == '`')) {
+            last = last.substring(1, last.length() - 1);
+        }
+        return last.toLowerCase(Locale.ROOT);
+    }
+
+    /** Runs the steps, at most {@code parallelism} at a time, each once its dependencies have finished. */
+    private void run(List<Step> steps, int parallelism) throws SQLException {
+        // Threads of this script only, no more than it can use, stopped when it is done
+        int threads = Math.max(1, Math.min(parallelism, steps.size()));
+        ExecutorService statements = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "mytrino-script");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            run(steps, parallelism, new ExecutorCompletionService<>(statements));
+        } finally {
+            statements.shutdown();
+        }
+    }
+
+    private void run(List<Step> steps, int parallelism, CompletionService<Step> completion) throws SQLException {
+        TreeSet<Step> ready = new TreeSet<>((a, b) -> Integer.compare(a.index, b.index));
+        for (Step step : steps) {
+            if (step.dependencies == 0) ready.add(step);
+        }
+        List<Future<Step>> running = new ArrayList<>();
+        SQLException failure = null;
+        int finished = 0;
+        try {
+            while (finished < steps.size()) {
+                while (failure == null && running.size() < parallelism && !ready.isEmpty()) {
+                    Step step = ready.pollFirst();
+                    running.add(completion.submit(() -> execute(step)));
+                }
+                if (running.isEmpty()) {
+                    break; // failed: nothing left to wait for
+                }
+                Future<Step> done = completion.take();
+                running.remove(done);
+                finished++;
+                Step step;
+                try {
+                    step = done.get();
+                } catch (ExecutionException e) {
+                    SQLException error = asSqlException(e.getCause());
+                    if (failure == null) {
+                        failure = error;
+                    } else {
+                        failure.addSuppressed(error);
+                    }
+                    continue;
+                }
+                for (Step successor : step.successors) {
+                    if (--successor.dependencies == 0) ready.add(successor);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running.forEach(f -> f.cancel(true));
+            throw new SQLException("Interrupted while running script", e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Step execute(Step step) throws SQLException {
+        long start = System.nanoTime();
+        try (Statement statement = connection.createStatement()) {
+            boolean hasRows;
+            try {
+                hasRows = MyTrinoConnectionProxy.executeRewritten(statement, step.text, step.hints, step.sql);
+            } catch (SQLException e) {
+                throw new SQLException("Statement " + step.index + " of script failed: " + e.getMessage(),
+                        e.getSQLState(), e.getErrorCode(), e);
+            }
+            MaterializedResult rows = null;
+            long updateCount = -1;
+            if (hasRows) {
+                try (var rs = statement.getResultSet()) {
+                    rows = MaterializedResult.of(rs);
+                }
+            } else {
+                updateCount = statement.getLargeUpdateCount();
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            step.result = new ScriptResult(step.index, step.sql, rows, updateCount, elapsed);
+            DriverLogging.Scope log = config.getLogScope();
+            if (log.isLoggable(Level.FINE)) {
+                log.log(Level.FINE, "Script statement " + step.index + " finished [" + elapsed + " ms]");
+            }
+            return step;
+        }
+    }
+
+    private static SQLException asSqlException(Throwable cause) {
+        return cause instanceof SQLException e ? e : new SQLException(cause);
+    }
+
+    /**
+     * Splits a script at semicolons that are outside string literals, quoted identifiers and comments.
+     * Statements that are empty or consist only of comments are dropped.
+     */
+    static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean onlyComments = true;
+        int n = script.length();
+        for (int i = 0; i < n; i++) {
+            char c = script.charAt(i);
+            if (c == '-' && i + 1 < n && script.charAt(i + 1) == '-') {
+                int end = script.indexOf('\n', i);
+                end = end < 0 ? n : end;
+                current.append(script, i, end);
+                i = end - 1;
+            } else if (c == '/' && i + 1 < n && script.charAt(i + 1) == '*') {
+                int end = script.indexOf("*/", i + 2);
+                end = end < 0 ? n : end + 2;
+                current.append(script, i, end);
+                i = end - 1;
+            } else if (c == '\'' || c == '"' || c == '`') {
+                int end = i + 1;
+                while (end < n) {
+                    if (script.charAt(end) == c) {
+                        if (end + 1 < n && script.charAt(end + 1) == c) {
+                            end += 2; // doubled quote inside the literal
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                end = Math.min(end + 1, n);
+                current.append(script, i, end);
+                i = end - 1;
+                onlyComments = false;
+            } else if (c == ';') {
+                add(statements, current, onlyComments);
+                current.setLength(0);
+                onlyComments = true;
+            } else {
+                current.append(c);
+                if (!Character.isWhitespace(c)) onlyComments = false;
+            }
+        }
+        add(statements, current, onlyComments);
+        return statements;
+    }
+
+    private static void add(List<String> statements, StringBuilder statement, boolean onlyComments) {
+        String sql = statement.toString().trim();
+        if (!onlyComments && !sql.isEmpty()) {
+            statements.add(sql);
+        }
+    }
+
+    /** One statement of the script and its place in the dependency graph. */
+    static final class Step {
+        final int index;
+        /** The statement as written in the script. */
+        final String text;
+        final QueryHints hints;
+        /** The statement without hints, rewritten. */
+        final String sql;
+        /** Tables read (and not written) by the statement. */
+        final Set<String> reads = new HashSet<>();
+        /** Tables written by the statement. */
+        final Set<String> writes = new HashSet<>();
+        final List<Step> successors = new ArrayList<>();
+        boolean barrier;
+        /** Number of unfinished statements this one waits for. */
+        int dependencies;
+        volatile ScriptResult result;
+
+        Step(int index, String text, QueryHints hints, String sql) {
+            this.index = index;
+            this.text = text;
+            this.hints = hints;
+            this.sql = sql;
+        }
+    }
+}
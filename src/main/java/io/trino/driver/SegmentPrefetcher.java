@@ -0,0 +1,338 @@
+package io.trino.driver;
+
+import io.trino.jdbc.$internal.jackson.core.JsonParser;
+import io.trino.jdbc.$internal.jackson.core.JsonToken;
+import io.trino.jdbc.$internal.jackson.databind.JsonNode;
+import io.trino.jdbc.$internal.jackson.databind.ObjectMapper;
+import io.trino.jdbc.$internal.okhttp3.Call;
+import io.trino.jdbc.$internal.okhttp3.HttpUrl;
+import io.trino.jdbc.$internal.okhttp3.Interceptor;
+import io.trino.jdbc.$internal.okhttp3.OkHttpClient;
+import io.trino.jdbc.$internal.okhttp3.Protocol;
+import io.trino.jdbc.$internal.okhttp3.Request;
+import io.trino.jdbc.$internal.okhttp3.Response;
+import io.trino.jdbc.$internal.okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Downloads spooled result segments of one connection in parallel, ahead of the Trino client.
+ * <p>
+ * With the spooling protocol the coordinator answers with segment URIs instead of rows, and the Trino client
+ * fetches, decodes and acknowledges the segments one at a time as the ResultSet reaches them. This class is
+ * installed on the connection's HTTP clients (see {@link MyTrinoDriver#wrapClient}): every coordinator response is
+ * scanned for spooled segments, and up to {@code spoolingPrefetchSegments} of them are downloaded concurrently on a
+ * driver-wide pool and held in memory. When the client then asks for a segment that has been prefetched, the
+ * buffered body is returned without a request; decoding, decompression and acknowledgement stay in the client, in
+ * segment order.
+ * <p>
+ * Memory is bounded by the window: a segment is only started while fewer than {@code spoolingPrefetchSegments}
+ * segments of the connection are downloading or waiting to be read. Cancelling a query (the client's
+ * {@code DELETE}), closing its ResultSet or statement, and closing the connection drop its segments (see
+ * {@link #release} and {@link #close}). The downloads of all connections share a pool of {@link #DOWNLOAD_THREADS}
+ * threads; a segment the client asks for before its download has left the pool's queue is loaded by the client.
+ * Responses are scanned without copying them, and only up to the {@code data} field, so results returned inline
+ * cost almost nothing.
+ * <p>
+ * With {@code spooling=false} the coordinator interceptor also removes the encoding header from query submissions,
+ * so the coordinator returns every result inline.
+ */
+final class SegmentPrefetcher {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String STATEMENT_PATH = "/v1/statement";
+    /** Request header with the encodings the client accepts; without it the coordinator does not spool. */
+    private static final String ENCODING_HEADER = "X-Trino-Query-Data-Encoding";
+
+    /** Threads downloading segments for all connections; concurrency per connection is bounded by its window. */
+    static final int DOWNLOAD_THREADS = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadPoolExecutor DOWNLOADS = downloads();
+
+    private static final AtomicLong PREFETCHED = new AtomicLong();
+    private static final AtomicLong RELEASED = new AtomicLong();
+
+    private final boolean spooling;
+    private final int window;
+    private final DriverLogging.Scope log;
+    /** Segments in discovery order that have not been started yet. */
+    private final Deque<Segment> pending = new ArrayDeque<>();
+    /** Every known segment that has not been handed to the client yet, by URI. */
+    private final Map<String, Segment> segments = new HashMap<>();
+    private int started;
+    private int clients;
+    private volatile OkHttpClient downloader;
+
+    /**
+     * @param spooling false to submit queries without the encoding header (results inline, nothing to prefetch)
+     * @param window   maximum number of segments downloading or buffered at a time; 0 disables prefetching
+     * @param log      log settings of the connection
+     */
+    SegmentPrefetcher(boolean spooling, int window, DriverLogging.Scope log) {
+        this.spooling = spooling;
+        this.window = spooling ? Math.max(0, window) : 0;
+        this.log = log;
+    }
+
+    /**
+     * Installs the prefetcher on one of the two HTTP clients of a new Trino connection: the first is the
+     * coordinator client (responses are scanned for segments), the second the segment client (prefetched segments
+     * are served from memory, and it performs the downloads).
+     */
+    synchronized Call.Factory wrap(OkHttpClient client) {
+        if (clients++ == 0) {
+            return client.newBuilder().addInterceptor(this::onCoordinatorCall).build();
+        }
+        if (window == 0) {
+            return client;
+        }
+        downloader = client;
+        OkHttpClient serving = client.newBuilder().addInterceptor(this::onSegmentCall).build();
+        // Not the OkHttpClient itself: the client's segment loader shuts down the dispatcher of an OkHttpClient
+        // when it is closed, and the dispatcher is shared by every connection of the driver.
+        return serving::newCall;
+    }
+
+    /** Number of segments served from memory by all connections. */
+    static long getPrefetchedCount() {
+        return PREFETCHED.get();
+    }
+
+    /** Number of segments dropped by all connections before the client took them (closed or DELETEd queries). */
+    static long getReleasedCount() {
+        return RELEASED.get();
+    }
+
+    /** Number of segments of this connection that are downloading or buffered and not handed to the client. */
+    synchronized int getStartedCount() {
+        return started;
+    }
+
+    private static ThreadPoolExecutor downloads() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(DOWNLOAD_THREADS, DOWNLOAD_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "mytrino-segment-prefetch");
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private Response onCoordinatorCall(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!spooling && request.header(ENCODING_HEADER) != null) {
+            request = request.newBuilder().removeHeader(ENCODING_HEADER).build();
+        }
+        if (window == 0) {
+            return chain.proceed(request);
+        }
+        if ("DELETE".equals(request.method())) {
+            String path = request.url().encodedPath();
+            cancel(segment -> !segment.queryId.isEmpty() && path.contains("/" + segment.queryId + "/"));
+            return chain.proceed(request);
+        }
+        Response response = chain.proceed(request);
+        if (response.isSuccessful() && request.url().encodedPath().startsWith(STATEMENT_PATH)) {
+            try {
+                scan(response);
+            } catch (IOException | RuntimeException e) {
+                if (log.isLoggable(Level.FINE)) {
+                    log.log(Level.FINE, "Not scanning coordinator response for segments: " + e);
+                }
+            }
+        }
+        return response;
+    }
+
+    private Response onSegmentCall(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        Segment segment = "GET".equals(request.method()) ? take(request.url().toString()) : null;
+        if (segment == null) {
+            return chain.proceed(request);
+        }
+        byte[] body;
+        try {
+            body = segment.body.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for segment " + segment.uri, e);
+        } catch (ExecutionException e) {
+            if (log.isLoggable(Level.FINE)) {
+                log.log(Level.FINE, "Prefetch of " + segment.uri + " failed, loading it again: " + e.getCause());
+            }
+            return chain.proceed(request);
+        }
+        PREFETCHED.incrementAndGet();
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(body, null))
+                .build();
+    }
+
+    /** Reads the query id and the {@code data} field of a coordinator response, without consuming the body. */
+    private void scan(Response response) throws IOException {
+        try (JsonParser parser = JSON.getFactory().createParser(response.body().source().peek().inputStream())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            String queryId = "";
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("id".equals(field)) {
+                    queryId = parser.getText();
+                } else if ("data".equals(field)) {
+                    if (value == JsonToken.START_OBJECT) {
+                        discover(queryId, JSON.readTree(parser));
+                    }
+                    return; // rows inline, or the segments have been read
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private void discover(String queryId, JsonNode data) {
+        JsonNode segmentList = data.path("segments");
+        if (!segmentList.isArray()) {
+            return;
+        }
+        synchronized (this) {
+            for (JsonNode node : segmentList) {
+                HttpUrl uri = "spooled".equals(node.path("type").asText()) ? HttpUrl.parse(node.path("uri").asText()) : null;
+                if (uri == null) {
+                    continue;
+                }
+                Map<String, List<String>> headers = new HashMap<>();
+                node.path("headers").properties().forEach(header -> {
+                    List<String> values = new ArrayList<>();
+                    header.getValue().forEach(value -> values.add(value.asText()));
+                    headers.put(header.getKey(), values);
+                });
+                Segment segment = new Segment(queryId, uri.toString(), headers);
+                if (segments.putIfAbsent(segment.uri, segment) == null) {
+                    pending.add(segment);
+                }
+            }
+            schedule();
+        }
+    }
+
+    /** Removes the prefetched (or pending) segment for {@code uri}; null if it is unknown or not started. */
+    private synchronized Segment take(String uri) {
+        Segment segment = segments.remove(uri);
+        if (segment == null) {
+            return null;
+        }
+        if (!segment.started) {
+            pending.remove(segment);
+            schedule();
+            return null; // the client loads it itself
+        }
+        started--;
+        schedule();
+        // Still queued for a download thread: the client loads it itself rather than wait for the queue
+        return segment.claimed.compareAndSet(false, true) ? null : segment;
+    }
+
+    /**
+     * Drops the segments of query {@code queryId} (its ResultSet or statement was closed): their downloads are
+     * cancelled and buffered bodies released. Segments the client has not asked for are otherwise only dropped
+     * when the query is cancelled.
+     */
+    void release(String queryId) {
+        if (queryId != null && !queryId.isEmpty()) {
+            cancel(segment -> queryId.equals(segment.queryId));
+        }
+    }
+
+    /** Drops every segment of the connection (it was closed). */
+    void close() {
+        cancel(segment -> true);
+    }
+
+    private synchronized void cancel(Predicate<Segment> matches) {
+        Iterator<Segment> it = segments.values().iterator();
+        while (it.hasNext()) {
+            Segment segment = it.next();
+            if (matches.test(segment)) {
+                it.remove();
+                pending.remove(segment);
+                RELEASED.incrementAndGet();
+                if (segment.started) {
+                    started--;
+                    segment.claimed.set(true);
+                    Call call = segment.call;
+                    if (call != null) call.cancel();
+                }
+            }
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        OkHttpClient client = downloader;
+        while (client != null && started < window && !pending.isEmpty()) {
+            Segment segment = pending.poll();
+            segment.started = true;
+            started++;
+            DOWNLOADS.execute(() -> download(client, segment));
+        }
+    }
+
+    private void download(OkHttpClient client, Segment segment) {
+        if (!segment.claimed.compareAndSet(false, true)) {
+            return; // taken by the client or dropped while queued
+        }
+        Request.Builder request = new Request.Builder().url(segment.uri).addHeader("Accept-Encoding", "identity");
+        segment.headers.forEach((name, values) -> values.forEach(value -> request.addHeader(name, value)));
+        Call call = client.newCall(request.build());
+        segment.call = call;
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Segment download failed with code " + response.code());
+            }
+            segment.body.complete(response.body().bytes());
+        } catch (IOException | RuntimeException e) {
+            segment.body.completeExceptionally(e);
+        }
+    }
+
+    private static final class Segment {
+        final String queryId;
+        final String uri;
+        final Map<String, List<String>> headers;
+        final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        /** Set by the download thread that starts the download, or by whoever takes or drops it before that. */
+        final AtomicBoolean claimed = new AtomicBoolean();
+        volatile Call call;
+        boolean started;
+
+        Segment(String queryId, String uri, Map<String, List<String>> headers) {
+            this.queryId = queryId;
+            this.uri = uri;
+            this.headers = headers;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package io.trino.driver;
+
+import io.trino.jdbc.TrinoConnection;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * Coalesces identical concurrent queries ({@code singleFlight=true}).
+ * <p>
+ * The first {@code executeQuery} of a SELECT starts a Trino query (a "flight") on its connection; every other
+ * execution of the same rewritten SQL with the same session context (server, user, session user, roles, extra
+ * credentials, client info such as client tags, catalog, schema, time zone and session properties) that arrives while the flight's first rows are still buffered attaches to it instead of
+ * starting its own query. Rows are read from Trino once, into a ring buffer of {@code singleFlightBufferRows} rows
+ * shared by all attached ResultSets; each ResultSet has its own cursor, and whichever consumer needs a row that has
+ * not been read yet fetches it. The slowest open consumer bounds how far the others can run ahead.
+ * <p>
+ * Closing a ResultSet (or its statement) detaches it; when the last consumer detaches before the end, the Trino
+ * query is cancelled. A consumer that stops reading without closing holds the others back for at most
+ * {@code singleFlightStallTimeoutMillis}, after which it is detached and fails on its next read.
+ * <p>
+ * A query whose session context cannot be read completely (a connection that is not a Trino connection, or a
+ * trino-jdbc version without one of the fields read here) is never shared.
+ */
+final class SingleFlight {
+
+    /** Statements that only read data and may be shared. */
+    private static final Pattern READ_ONLY = Pattern.compile("^\\s*\\(*\\s*(SELECT|WITH|VALUES|TABLE)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Map<List<Object>, Flight> FLIGHTS = new ConcurrentHashMap<>();
+    private static final AtomicLong QUERIES = new AtomicLong();
+    private static final AtomicLong ATTACHED = new AtomicLong();
+
+    /**
+     * Fields of {@code TrinoConnection} that are part of the session context but have no public getter: the
+     * impersonated session user, the authorization user, the original and current roles, and the extra credentials.
+     * Null if any of them is missing.
+     */
+    private static final Field[] CONTEXT_FIELDS = contextFields("sessionUser", "authorizationUser", "originalRoles",
+            "roles", "extraCredentials");
+
+    private SingleFlight() {
+        // Utility class - prevent instantiation
+    }
+
+    /** True if {@code sql} may be shared between callers (a query that does not modify anything). */
+    static boolean isShareable(String sql) {
+        return sql != null && READ_ONLY.matcher(sql).find();
+    }
+
+    /**
+     * Runs {@code sql} on {@code connection}, or attaches to an identical query already in flight. Returns null,
+     * without running anything, if the session context of {@code connection} cannot be read; the caller then runs
+     * the query itself.
+     *
+     * @param connection   the Trino connection of the calling statement
+     * @param user         user the connection was opened with (part of the session context)
+     * @param sql          rewritten SQL
+     * @param queryTimeout query timeout of the calling statement in seconds (used if a new query is started)
+     * @param statement    the statement returned by {@code ResultSet.getStatement()}
+     * @param config       driver settings (buffer size and stall timeout)
+     * @return a ResultSet over the shared rows, or null if the query may not be shared
+     */
+    static ResultSet executeQuery(Connection connection, String user, String sql, int queryTimeout,
+                                  Statement statement, DriverConfig config) throws SQLException {
+        List<Object> key = key(connection, user, sql);
+        if (key == null) {
+            return null;
+        }
+        while (true) {
+            Flight flight = FLIGHTS.get(key);
+            if (flight == null) {
+                Flight started = new Flight(key, config);
+                flight = FLIGHTS.putIfAbsent(key, started);
+                if (flight == null) {
+                    QUERIES.incrementAndGet();
+                    return started.start(connection, sql, queryTimeout, statement);
+                }
+            }
+            ResultSet attached = flight.attach(statement);
+            if (attached != null) {
+                ATTACHED.incrementAndGet();
+                return attached;
+            }
+            FLIGHTS.remove(key, flight); // no longer joinable; start a new one
+        }
+    }
+
+    /** Number of Trino queries started through single-flight execution. */
+    static long getQueryCount() {
+        return QUERIES.get();
+    }
+
+    /** Number of executions that attached to a query already in flight instead of starting one. */
+    static long getAttachedCount() {
+        return ATTACHED.get();
+    }
+
+    /** The flight key of {@code sql} on {@code connection}: its session context and the SQL; null if unreadable. */
+    private static List<Object> key(Connection connection, String user, String sql) throws SQLException {
+        Map<String, String> session = QueryHints.sessionMap(connection);
+        if (CONTEXT_FIELDS == null || session == null || !connection.isWrapperFor(TrinoConnection.class)) {
+            return null;
+        }
+        TrinoConnection trino = connection.unwrap(TrinoConnection.class);
+        List<Object> key = new ArrayList<>(Arrays.asList(connection.getMetaData().getURL(), user,
+                connection.getCatalog(), connection.getSchema(), trino.getTimeZoneId(), new TreeMap<>(session),
+                new TreeMap<>(connection.getClientInfo())));
+        for (Field field : CONTEXT_FIELDS) {
+            Object value;
+            try {
+                value = field.get(trino);
+            } catch (IllegalAccessException | RuntimeException e) {
+                return null;
+            }
+            if (value instanceof AtomicReference<?> reference) {
+                value = reference.get();
+            } else if (value instanceof Map<?, ?> map) {
+                value = new HashMap<>(map);
+            } else if (value instanceof Set<?> set) {
+                value = new HashSet<>(set);
+            }
+            key.add(value);
+        }
+        key.add(sql);
+        return key;
+    }
+
+    private static Field[] contextFields(String... names) {
+        Field[] fields = new Field[names.length];
+        try {
+            for (int i = 0; i < names.length; i++) {
+                fields[i] = TrinoConnection.class.getDeclaredField(names[i]);
+                fields[i].setAccessible(true);
+            }
+            return fields;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            DriverLogging.getLogger().warning("Single-flight sharing is not supported with this trino-jdbc version: "
+                    + e);
+            return null;
+        }
+    }
+
+    /**
+     * One Trino query and the consumers attached to it. All mutable state is guarded by the flight's monitor.
+     */
+    private static final class Flight {
+        private final List<Object> key;
+        private final int capacity;
+        private final long stallNanos;
+        private final List<Consumer> consumers = new ArrayList<>();
+        private Object[][] buffer;
+        private Statement source;
+        private ResultSet rows;
+        private ResultSetMetaData metaData;
+        private int columns;
+        /** Number of rows read from Trino so far. */
+        private long produced;
+        private boolean started;
+        private boolean fetching;
+        private boolean done;
+        private boolean cancelled;
+        private SQLException failure;
+
+        Flight(List<Object> key, DriverConfig config) {
+            this.key = key;
+            this.capacity = Math.max(1, config.getSingleFlightBufferRows());
+            this.stallNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getSingleFlightStallTimeoutMillis()));
+        }
+
+        /** Starts the query on a statement of its own, so the caller's statement can be reused or closed freely. */
+        ResultSet start(Connection connection, String sql, int queryTimeout, Statement statement) throws SQLException {
+            Consumer leader;
+            synchronized (this) {
+                leader = new Consumer(this, statement);
+                consumers.add(leader);
+            }
+            try {
+                Statement query = connection.createStatement();
+                synchronized (this) {
+                    source = query;
+                }
+                query.setQueryTimeout(queryTimeout);
+                ResultSet result = query.executeQuery(sql);
+                ResultSetMetaData meta = MaterializedResult.copyMetaData(result.getMetaData());
+                boolean cancelledMeanwhile;
+                synchronized (this) {
+                    rows = result;
+                    metaData = meta;
+                    columns = meta.getColumnCount();
+                    buffer = new Object[Math.min(capacity, 1024)][];
+                    started = true;
+                    notifyAll();
+                    cancelledMeanwhile = cancelled;
+                }
+                if (cancelledMeanwhile) {
+                    closeSource();
+                }
+            } catch (SQLException | RuntimeException e) {
+                SQLException error = e instanceof SQLException sqlException ? sqlException : new SQLException(e);
+                synchronized (this) {
+                    failure = error;
+                    started = true;
+                    notifyAll();
+                }
+                FLIGHTS.remove(key, this);
+                closeSource();
+                throw error;
+            }
+            return leader.newResultSet(metaData);
+        }
+
+        /** Attaches a new consumer at the first row, or returns null if the first row is gone or the flight ended. */
+        ResultSet attach(Statement statement) throws SQLException {
+            Consumer consumer;
+            synchronized (this) {
+                Thread current = Thread.currentThread();
+                if (done || cancelled || failure != null || produced >= capacity
+                        || consumers.stream().anyMatch(c -> c.thread == current)) {
+                    // A thread that already reads this flight must not wait on itself: it gets a query of its own.
+                    return null;
+                }
+                consumer = new Consumer(this, statement);
+                consumers.add(consumer);
+                awaitStart();
+                if (failure != null) {
+                    consumers.remove(consumer);
+                    throw new SQLException(failure.getMessage(), failure.getSQLState(), failure.getErrorCode(), failure);
+                }
+            }
+            return consumer.newResultSet(metaData);
+        }
+
+        private void awaitStart() throws SQLException {
+            while (!started) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a shared query", e);
+                }
+            }
+        }
+
+        /** Returns row {@code index} for {@code consumer}, fetching it from Trino if nobody has yet. */
+        Object[] row(Consumer consumer, long index) throws SQLException {
+            while (true) {
+                synchronized (this) {
+                    long waitStart = System.nanoTime();
+                    while (true) {
+                        if (consumer.detached) {
+                            throw new SQLException("Shared query result is no longer available"
+                                    + (consumer.stalled ? " (this ResultSet was not read for too long)" : ""));
+                        }
+                        if (index < produced) {
+                            Object[] row = buffer[(int) (index % buffer.length)];
+                            consumer.position = index + 1;
+                            notifyAll(); // the slot may now be reusable
+                            return row;
+                        }
+                        if (failure != null) throw failure;
+                        if (done) return null;
+                        if (!fetching && produced - oldestPosition() < capacity) {
+                            fetching = true;
+                            break;
+                        }
+                        // Another consumer is fetching, or the buffer holds rows a slower consumer has not read yet.
+                        if (!fetching && System.nanoTime() - waitStart > stallNanos) {
+                            detachStalled();
+                            continue;
+                        }
+                        try {
+                            TimeUnit.NANOSECONDS.timedWait(this, stallNanos);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrupted while reading a shared query", e);
+                        }
+                    }
+                }
+                fetchOne();
+            }
+        }
+
+        /** Reads one row from Trino outside the monitor, so consumers of buffered rows are not blocked meanwhile. */
+        private void fetchOne() {
+            Object[] row = null;
+            boolean end = false;
+            SQLException error = null;
+            try {
+                if (rows.next()) {
+                    row = MaterializedResult.readRow(rows, columns);
+                } else {
+                    end = true;
+                }
+            } catch (SQLException | RuntimeException e) {
+                error = e instanceof SQLException sqlException ? sqlException : new SQLException(e);
+            }
+            boolean finished;
+            synchronized (this) {
+                fetching = false;
+                if (cancelled) {
+                    finished = true; // every consumer left while this row was being read
+                } else if (error != null) {
+                    failure = error;
+                    finished = true;
+                } else if (end) {
+                    done = true;
+                    finished = true;
+                } else {
+                    ensureCapacity();
+                    buffer[(int) (produced % buffer.length)] = row;
+                    produced++;
+                    finished = false;
+                }
+                notifyAll();
+                if (finished || produced >= capacity) {
+                    FLIGHTS.remove(key, this);
+                }
+            }
+            if (finished) {
+                closeSource();
+            }
+        }
+
+        /** Grows the ring buffer up to {@code capacity} while no row has been overwritten yet. */
+        private void ensureCapacity() {
+            if (produced == buffer.length && buffer.length < capacity) {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(capacity, (long) buffer.length * 2));
+            }
+        }
+
+        private long oldestPosition() {
+            long oldest = produced;
+            for (Consumer consumer : consumers) {
+                oldest = Math.min(oldest, consumer.position);
+            }
+            return oldest;
+        }
+
+        /** Detaches the consumers holding the buffer full, so the others can continue. */
+        private void detachStalled() {
+            long oldest = oldestPosition();
+            for (Consumer consumer : new ArrayList<>(consumers)) {
+                if (consumer.position == oldest) {
+                    consumer.stalled = true;
+                    detach(consumer);
+                }
+            }
+            if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
+                DriverLogging.getLogger().fine("Detached stalled consumer(s) of a shared query");
+            }
+        }
+
+        /** Removes {@code consumer}; cancels the query when it was the last one and rows are still pending. */
+        void detach(Consumer consumer) {
+            boolean cancel;
+            synchronized (this) {
+                if (consumer.detached) return;
+                consumer.detached = true;
+                consumers.remove(consumer);
+                notifyAll();
+                cancel = consumers.isEmpty() && !done && failure == null && !cancelled;
+                if (cancel) {
+                    cancelled = true;
+                    FLIGHTS.remove(key, this);
+                    // A fetch in progress or a query still starting closes the statement when it returns.
+                    cancel = started && !fetching;
+                }
+            }
+            if (cancel) {
+                closeSource();
+                if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
+                    DriverLogging.getLogger().fine("Shared query cancelled: all consumers closed");
+                }
+            }
+        }
+
+        private void closeSource() {
+            Statement statement;
+            synchronized (this) {
+                statement = source;
+                source = null;
+            }
+            if (statement == null) return;
+            try {
+                statement.close(); // cancels the Trino query if it is still running
+            } catch (SQLException e) {
+                if (DriverLogging.getLogger().isLoggable(Level.FINE)) {
+                    DriverLogging.getLogger().fine("Could not close shared query: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** One attached ResultSet: its own cursor over the flight's rows. */
+    private static final class Consumer {
+        private final Flight flight;
+        private final Statement statement;
+        private final Thread thread = Thread.currentThread();
+        /** Index of the next row to read; guarded by the flight's monitor. */
+        private long position;
+        private boolean detached;
+        private boolean stalled;
+
+        Consumer(Flight flight, Statement statement) {
+            this.flight = flight;
+            this.statement = statement;
+        }
+
+        ResultSet newResultSet(ResultSetMetaData metaData) {
+            return new MaterializedResult.Cursor(metaData, statement) {
+                @Override
+                Object[] fetch() throws SQLException {
+                    return flight.row(Consumer.this, position); // position is only advanced by this consumer
+                }
+
+                @Override
+                void release() {
+                    flight.detach(Consumer.this);
+                }
+
+                @Override
+                public String toString() {
+                    return "SharedResultSet[" + flight.key.get(flight.key.size() - 1) + "]";
+                }
+            }.newResultSet();
+        }
+    }
+}
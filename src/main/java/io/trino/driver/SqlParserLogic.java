@@ -1,9 +1,58 @@
 package io.trino.driver;
 
 import net.sf.jsqlparser.JSQLParserException;
-import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.expression.AllValue;
+import net.sf.jsqlparser.expression.AnalyticExpression;
+import net.sf.jsqlparser.expression.AnalyticType;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.CastExpression;
+import net.sf.jsqlparser.expression.DateTimeLiteralExpression;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExtractExpression;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.NotExpression;
+import net.sf.jsqlparser.expression.NullValue;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.TranscodingFunction;
+import net.sf.jsqlparser.expression.operators.arithmetic.Multiplication;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.Between;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.ParenthesedExpressionList;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.select.Fetch;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SampleClause;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.update.Update;
+import net.sf.jsqlparser.util.TablesNamesFinder;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -14,10 +63,43 @@ import java.util.regex.Pattern;
  */
 public final class SqlParserLogic {
 
+    /**
+     * Version of the rewrite rules. Bump whenever {@link #parse} can produce different output for the same input,
+     * so rewrites persisted by {@link RewriteStore} under an older version are discarded.
+     */
+    static final int REWRITE_VERSION = 3;
+
     private static final Pattern TS_PATTERN = Pattern.compile("\\{ts\\s+'(.*?)'\\}", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
     private static final Pattern D_PATTERN = Pattern.compile("\\{d\\s+'(.*?)'\\}", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
     private static final Pattern T_PATTERN = Pattern.compile("\\{t\\s+'(.*?)'\\}", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
 
+    /** Cheap pre-check for SQL that may compare a function-wrapped column; only such SQL is walked by {@link #sargable}. */
+    private static final Pattern WRAPPED_COLUMN_HINT = Pattern.compile("\\b(CAST|DATE|YEAR|EXTRACT|CONVERT)\\s*\\(",
+            Pattern.CASE_INSENSITIVE);
+
+    /** The column argument of MySQL/ODBC {@code CONVERT(column, SQL_DATE)}, which JSQLParser keeps as a type name. */
+    private static final Pattern CONVERTED_COLUMN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*){0,3}");
+
+    /** Maximum number of (SQL, max rows) pairs whose {@link #limitRows} result is kept. */
+    static final int MAX_LIMITED = 1_000;
+
+    /** Results of {@link #limitRows} by max rows and SQL, in access order. Guarded by itself. */
+    private static final Map<String, String> LIMITED = new LinkedHashMap<>(64, 0.75f, true);
+
+    /** Aggregates whose value on a uniform sample of 1 in N rows, multiplied by N, estimates the exact value. */
+    private static final Set<String> SCALED_AGGREGATES = Set.of("count", "count_if", "sum");
+
+    /** Aggregates whose value on a uniform sample estimates the exact value as is. */
+    private static final Set<String> UNSCALED_AGGREGATES = Set.of("avg", "approx_percentile", "geometric_mean");
+
+    /** Other Trino aggregates; a query using any of them is never sampled. */
+    private static final Set<String> OTHER_AGGREGATES = Set.of("min", "max", "min_by", "max_by", "approx_distinct",
+            "approx_set", "approx_most_frequent", "arbitrary", "any_value", "array_agg", "bool_and", "bool_or",
+            "every", "checksum", "histogram", "map_agg", "map_union", "multimap_agg", "listagg", "string_agg",
+            "numeric_histogram", "stddev", "stddev_pop", "stddev_samp", "variance", "var_pop", "var_samp",
+            "corr", "covar_pop", "covar_samp", "kurtosis", "skewness", "regr_intercept", "regr_slope",
+            "bitwise_and_agg", "bitwise_or_agg", "bitwise_xor_agg", "merge", "tdigest_agg", "qdigest_agg");
+
     private SqlParserLogic() {
         // Utility class - prevent instantiation
     }
@@ -29,34 +111,732 @@ public final class SqlParserLogic {
      * @return the modified ANSI SQL string, or the original if parsing fails
      */
     public static String parse(String sql) {
+        return parse(sql, false);
+    }
+
+    /**
+     * Like {@link #parse(String)}, and with {@code sargableDates} also rewrites function-wrapped date filters into
+     * ranges on the bare column (see {@link #sargable}). The rewrite does not know the column types, so it is only
+     * safe where every such column is a {@code date} or a {@code timestamp} without time zone.
+     *
+     * @param sql           the original SQL string (may contain ODBC escape sequences)
+     * @param sargableDates whether to rewrite function-wrapped date filters
+     * @return the modified ANSI SQL string, or the original if parsing fails
+     */
+    static String parse(String sql, boolean sargableDates) {
+        return parse(sql, sargableDates, DriverLogging.Scope.inherit());
+    }
+
+    /**
+     * Like {@link #parse(String, boolean)}, logging the rewrite at FINER through the scope of the calling connection.
+     *
+     * @param log log settings of the connection that runs {@code sql}
+     */
+    static String parse(String sql, boolean sargableDates, DriverLogging.Scope log) {
         if (sql == null) {
             return null;
         }
-        if (DriverLogging.getLogger().isLoggable(Level.FINER)) {
-            DriverLogging.getLogger().finer("parse(original): " + truncate(sql));
+        DriverEvents.RewriteEvent event = new DriverEvents.RewriteEvent();
+        event.begin();
+        String result = sql;
+        boolean fallback = false;
+        if (log.isLoggable(Level.FINER)) {
+            log.log(Level.FINER, "parse(original): " + truncate(sql));
         }
         try {
             String preprocessed = preprocessOdbcEscapes(sql);
-            Statement statement = CCJSqlParserUtil.parse(preprocessed);
+            Statement statement = StatementParser.parse(preprocessed);
             if (statement != null) {
-                String result = statement.toString();
-                if (DriverLogging.getLogger().isLoggable(Level.FINER)) {
-                    DriverLogging.getLogger().finer("parse(result): " + truncate(result));
+                if (sargableDates && WRAPPED_COLUMN_HINT.matcher(preprocessed).find()) {
+                    sargable(statement, log);
+                }
+                result = statement.toString();
+                if (log.isLoggable(Level.FINER)) {
+                    log.log(Level.FINER, "parse(result): " + truncate(result));
                 }
-                return result;
             }
         } catch (JSQLParserException e) {
-            if (DriverLogging.getLogger().isLoggable(Level.FINER)) {
-                DriverLogging.getLogger().finer("parse failed: " + e.getMessage() + ", using fallback");
+            if (log.isLoggable(Level.FINER)) {
+                log.log(Level.FINER, "parse failed: " + e.getMessage() + ", using fallback");
             }
+            fallback = true;
             // If parsing fails after pre-processing, return pre-processed SQL
             try {
-                return preprocessOdbcEscapes(sql);
+                result = preprocessOdbcEscapes(sql);
             } catch (Exception ignored) {
+                result = sql;
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.originalLength = sql.length();
+            event.rewrittenLength = result.length();
+            event.changed = !result.equals(sql);
+            event.fallback = fallback;
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Rewrites comparisons of a function-wrapped column with a literal into half-open ranges on the bare column,
+     * which Trino can push down to connectors and use for partition pruning:
+     * <ul>
+     *   <li>{@code CAST(c AS DATE)}, {@code date(c)} and {@code CONVERT(c, SQL_DATE)} compared with a
+     *       {@code DATE} literal, e.g. {@code CAST(c AS DATE) = DATE '2024-01-01'} becomes
+     *       {@code c >= DATE '2024-01-01' AND c < DATE '2024-01-02'}</li>
+     *   <li>{@code year(c)} and {@code EXTRACT(YEAR FROM c)} compared with an integer literal, e.g.
+     *       {@code year(c) = 2024} becomes {@code c >= DATE '2024-01-01' AND c < DATE '2025-01-01'}</li>
+     * </ul>
+     * The operators {@code =}, {@code <}, {@code <=}, {@code >}, {@code >=} and {@code BETWEEN} are rewritten,
+     * with the literal on either side. A range is NULL exactly when the original comparison is, so the rewrite is
+     * also equivalent under {@code NOT} and {@code OR}. Anything else is left as is: {@code <>},
+     * {@code NOT BETWEEN}, {@code TRY_CAST}, wrapped expressions other than a bare column, parameters, and literals
+     * of another type or out of range (a {@code DATE} column compared with a {@code TIMESTAMP} is not a day range).
+     * <p>
+     * Predicates of WHERE, HAVING and JOIN ... ON clauses of every SELECT (including subqueries), UPDATE and DELETE
+     * are rewritten, through {@code AND}, {@code OR}, {@code NOT} and parentheses, in place.
+     * <p>
+     * The column types are not known here. On a {@code varchar} column Trino rejects the range
+     * ({@code varchar >= date}), and on a {@code timestamp with time zone} column the bounds are taken in the session
+     * zone while {@code CAST(c AS DATE)} uses each value's own zone, so the rewrite is opt-in
+     * ({@code sargableDates}).
+     */
+    private static void sargable(Statement statement, DriverLogging.Scope log) {
+        AggregateFinder finder = new AggregateFinder();
+        try {
+            finder.find(statement);
+        } catch (RuntimeException e) {
+            // TablesNamesFinder does not support every statement; nothing has been changed yet
+            return;
+        }
+        for (PlainSelect select : finder.selects) {
+            select.setWhere(sargable(select.getWhere(), true, log));
+            select.setHaving(sargable(select.getHaving(), true, log));
+            if (select.getJoins() != null) {
+                for (Join join : select.getJoins()) {
+                    List<Expression> on = new ArrayList<>();
+                    for (Expression expression : join.getOnExpressions()) {
+                        on.add(sargable(expression, true, log));
+                    }
+                    join.setOnExpressions(on);
+                }
+            }
+        }
+        if (statement instanceof Update update) {
+            update.setWhere(sargable(update.getWhere(), true, log));
+        } else if (statement instanceof Delete delete) {
+            delete.setWhere(sargable(delete.getWhere(), true, log));
+        }
+    }
+
+    /**
+     * Returns {@code expression} with its sargable comparisons replaced by ranges.
+     *
+     * @param conjunct whether {@code expression} is a clause or an operand of {@code AND}, where a two-sided range
+     *                 needs no parentheses
+     */
+    private static Expression sargable(Expression expression, boolean conjunct, DriverLogging.Scope log) {
+        if (expression instanceof AndExpression and) {
+            and.setLeftExpression(sargable(and.getLeftExpression(), true, log));
+            and.setRightExpression(sargable(and.getRightExpression(), true, log));
+            return and;
+        }
+        if (expression instanceof OrExpression or) {
+            or.setLeftExpression(sargable(or.getLeftExpression(), false, log));
+            or.setRightExpression(sargable(or.getRightExpression(), false, log));
+            return or;
+        }
+        if (expression instanceof NotExpression not) {
+            not.setExpression(sargable(not.getExpression(), false, log));
+            return not;
+        }
+        if (expression instanceof ParenthesedExpressionList<?> list && list.size() == 1) {
+            @SuppressWarnings("unchecked")
+            List<Expression> expressions = (List<Expression>) list;
+            expressions.set(0, sargable(expressions.get(0), true, log));
+            return list;
+        }
+        Expression range = range(expression);
+        if (range == null) {
+            return expression;
+        }
+        if (log.isLoggable(Level.FINER)) {
+            log.log(Level.FINER, "parse: rewrote " + expression + " as " + range);
+        }
+        return conjunct || !(range instanceof AndExpression) ? range : new ParenthesedExpressionList<>(range);
+    }
+
+    /** The range equivalent to a comparison of a wrapped column with a literal, or null if there is none. */
+    private static Expression range(Expression expression) {
+        if (expression instanceof Between between) {
+            WrappedColumn wrapped = WrappedColumn.of(between.getLeftExpression());
+            if (between.isNot() || wrapped == null) {
+                return null;
+            }
+            LocalDate start = wrapped.start(between.getBetweenExpressionStart());
+            LocalDate end = wrapped.next(wrapped.start(between.getBetweenExpressionEnd()));
+            if (start == null || end == null) {
+                return null;
+            }
+            return new AndExpression(wrapped.atLeast(start), wrapped.before(end));
+        }
+        if (!(expression instanceof ComparisonOperator comparison)
+                || comparison.getOldOracleJoinSyntax() != ComparisonOperator.NO_ORACLE_JOIN) {
+            return null;
+        }
+        String operator = comparison.getStringExpression();
+        WrappedColumn wrapped = WrappedColumn.of(comparison.getLeftExpression());
+        Expression literal = comparison.getRightExpression();
+        if (wrapped == null) {
+            // literal <op> wrapped: mirror the operator
+            wrapped = WrappedColumn.of(comparison.getRightExpression());
+            literal = comparison.getLeftExpression();
+            operator = operator.replace('<', '#').replace('>', '<').replace('#', '>');
+        }
+        if (wrapped == null) {
+            return null;
+        }
+        LocalDate start = wrapped.start(literal);
+        LocalDate next = wrapped.next(start);
+        if (start == null || next == null) {
+            return null;
+        }
+        switch (operator) {
+            case "=":
+                return new AndExpression(wrapped.atLeast(start), wrapped.before(next));
+            case "<":
+                return wrapped.before(start);
+            case "<=":
+                return wrapped.before(next);
+            case ">":
+                return wrapped.atLeast(next);
+            case ">=":
+                return wrapped.atLeast(start);
+            default:
+                return null;
+        }
+    }
+
+    /** A bare column inside a function that truncates it to a day or a year. */
+    private static final class WrappedColumn {
+        private final Column column;
+        private final ChronoUnit unit;
+
+        private WrappedColumn(Column column, ChronoUnit unit) {
+            this.column = column;
+            this.unit = unit;
+        }
+
+        /** The wrapped column of {@code expression}, or null if it is not a supported function of a bare column. */
+        static WrappedColumn of(Expression expression) {
+            if (expression instanceof CastExpression cast && "CAST".equalsIgnoreCase(cast.keyword)
+                    && cast.getColDataType() != null && "DATE".equalsIgnoreCase(cast.getColDataType().getDataType())
+                    && cast.getLeftExpression() instanceof Column column) {
+                return new WrappedColumn(column, ChronoUnit.DAYS);
+            }
+            if (expression instanceof Function function && !function.isDistinct() && !function.isAllColumns()
+                    && function.getParameters() != null && function.getParameters().size() == 1
+                    && function.getParameters().get(0) instanceof Column column) {
+                String name = function.getName().toLowerCase(Locale.ROOT);
+                if ("date".equals(name)) {
+                    return new WrappedColumn(column, ChronoUnit.DAYS);
+                }
+                if ("year".equals(name)) {
+                    return new WrappedColumn(column, ChronoUnit.YEARS);
+                }
+                return null;
+            }
+            if (expression instanceof ExtractExpression extract && "YEAR".equalsIgnoreCase(extract.getName())
+                    && extract.getExpression() instanceof Column column) {
+                return new WrappedColumn(column, ChronoUnit.YEARS);
+            }
+            // CONVERT(c, SQL_DATE) is parsed with the column as the type and the target type as the expression
+            if (expression instanceof TranscodingFunction convert && !convert.isTranscodeStyle()
+                    && convert.getExpression() instanceof Column target
+                    && ("SQL_DATE".equalsIgnoreCase(target.getFullyQualifiedName())
+                            || "DATE".equalsIgnoreCase(target.getFullyQualifiedName()))
+                    && convert.getColDataType() != null
+                    && CONVERTED_COLUMN.matcher(convert.getColDataType().getDataType()).matches()) {
+                return new WrappedColumn(new Column(convert.getColDataType().getDataType()), ChronoUnit.DAYS);
+            }
+            return null;
+        }
+
+        /** The first day of the day or year given by {@code literal}, or null if it is not a valid literal. */
+        LocalDate start(Expression literal) {
+            if (unit == ChronoUnit.YEARS) {
+                if (literal instanceof LongValue value && value.getValue() >= 1 && value.getValue() <= 9999) {
+                    return LocalDate.of((int) value.getValue(), 1, 1);
+                }
+                return null;
+            }
+            // DATE 'yyyy-mm-dd' is parsed as a cast without keyword
+            if (literal instanceof CastExpression cast && cast.keyword == null && cast.getColDataType() != null
+                    && "DATE".equalsIgnoreCase(cast.getColDataType().getDataType())
+                    && cast.getLeftExpression() instanceof StringValue value) {
+                try {
+                    return LocalDate.parse(value.getValue());
+                } catch (DateTimeParseException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        /** The first day of the next day or year, or null if it is past year 9999. */
+        LocalDate next(LocalDate start) {
+            if (start == null) {
+                return null;
+            }
+            LocalDate next = start.plus(1, unit);
+            return next.getYear() <= 9999 ? next : null;
+        }
+
+        Expression atLeast(LocalDate date) {
+            return new GreaterThanEquals(column, literal(date));
+        }
+
+        Expression before(LocalDate date) {
+            return new MinorThan(column, literal(date));
+        }
+
+        private static Expression literal(LocalDate date) {
+            return new DateTimeLiteralExpression().withType(DateTimeLiteralExpression.DateTime.DATE)
+                    .withValue("'" + date + "'");
+        }
+    }
+
+    /**
+     * Adds a row limit to a plain SELECT, or tightens its existing {@code LIMIT}/{@code FETCH FIRST}, so Trino
+     * stops producing rows the client would discard because of {@code Statement.setMaxRows}.
+     * <p>
+     * Only a single {@code SELECT} (optionally with {@code WITH}) is changed; set operations, parenthesized queries,
+     * non-SELECT statements, limits given as parameters and SQL that does not parse are returned unchanged.
+     * With an {@code OFFSET} and no limit, {@code FETCH FIRST n ROWS ONLY} is added, since Trino expects the
+     * limit after the offset.
+     * <p>
+     * The result is kept for the last {@value #MAX_LIMITED} pairs of SQL and max rows, so a statement executed
+     * repeatedly with the same max rows is parsed once.
+     *
+     * @param sql     SQL already rewritten by {@link #parse}
+     * @param maxRows the statement's max rows; 0 or less means no limit
+     * @return the SQL with the limit applied, or {@code sql} if no change is needed or possible
+     */
+    static String limitRows(String sql, long maxRows) {
+        if (sql == null || maxRows <= 0) {
+            return sql;
+        }
+        String key = maxRows + ":" + sql;
+        String limited;
+        synchronized (LIMITED) {
+            limited = LIMITED.get(key);
+        }
+        if (limited == null) {
+            limited = applyLimit(sql, maxRows);
+            synchronized (LIMITED) {
+                LIMITED.put(key, limited);
+                if (LIMITED.size() > MAX_LIMITED) {
+                    var eldest = LIMITED.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+        return limited.equals(sql) ? sql : limited;
+    }
+
+    private static String applyLimit(String sql, long maxRows) {
+        Statement statement;
+        try {
+            statement = StatementParser.parse(sql);
+        } catch (JSQLParserException e) {
+            return sql;
+        }
+        if (!(statement instanceof PlainSelect select) || select.getIntoTables() != null || select.getForMode() != null) {
+            return sql;
+        }
+        Limit limit = select.getLimit();
+        Fetch fetch = select.getFetch();
+        if (limit != null) {
+            Expression rowCount = limit.getRowCount();
+            if (!(rowCount instanceof AllValue) && !(rowCount instanceof NullValue) && !exceeds(rowCount, maxRows)) {
                 return sql;
             }
+            limit.setRowCount(new LongValue(maxRows));
+        } else if (fetch != null) {
+            if (!exceeds(fetch.getExpression(), maxRows)) {
+                return sql;
+            }
+            fetch.setExpression(new LongValue(maxRows));
+        } else if (select.getOffset() != null) {
+            Fetch first = new Fetch().withExpression(new LongValue(maxRows));
+            first.setFetchParamFirst(true);
+            first.addFetchParameter("ROWS");
+            first.addFetchParameter("ONLY");
+            select.setFetch(first);
+        } else {
+            select.setLimit(new Limit().withRowCount(new LongValue(maxRows)));
+        }
+        return select.toString();
+    }
+
+    /**
+     * Rewrites exact aggregates of a query into Trino's approximate aggregates, for {@code approximate} mode:
+     * <ul>
+     *   <li>{@code COUNT(DISTINCT x)} becomes {@code approx_distinct(x)} (with {@code maxStandardError} if given)</li>
+     *   <li>{@code percentile_cont(p)}/{@code percentile_disc(p) WITHIN GROUP (ORDER BY x)}, {@code median(x)},
+     *       {@code percentile(x, p)} and {@code percentile_approx(x, p)} become {@code approx_percentile(x, p)}</li>
+     *   <li>with {@code sampleRatio} N &gt; 1, a single-table aggregation whose aggregates can be estimated from a
+     *       sample reads the table {@code TABLESAMPLE BERNOULLI (100/N)}, and its {@code count}, {@code count_if}
+     *       and {@code sum} values are multiplied by N</li>
+     * </ul>
+     * Only queries are changed. Each applied rewrite is described in {@link Approximation#getRewrites()}.
+     *
+     * @param sql              SQL already rewritten by {@link #parse}
+     * @param maxStandardError standard error passed to {@code approx_distinct}; 0 or less for Trino's default
+     * @param sampleRatio      sample 1 in {@code sampleRatio} rows; 1 or less for no sampling
+     * @return the approximated SQL; {@code sql} itself (and no rewrites) if nothing applies or it does not parse
+     */
+    static Approximation approximate(String sql, double maxStandardError, int sampleRatio) {
+        return approximate(sql, maxStandardError, sampleRatio, DriverLogging.Scope.inherit());
+    }
+
+    /**
+     * Like {@link #approximate(String, double, int)}, logging at FINER through the scope of the calling connection.
+     *
+     * @param log log settings of the connection that runs {@code sql}
+     */
+    static Approximation approximate(String sql, double maxStandardError, int sampleRatio, DriverLogging.Scope log) {
+        Statement statement;
+        try {
+            statement = StatementParser.parse(sql);
+        } catch (JSQLParserException e) {
+            return new Approximation(sql, List.of());
+        }
+        if (!(statement instanceof Select)) {
+            return new Approximation(sql, List.of());
+        }
+        AggregateFinder aggregates = new AggregateFinder();
+        aggregates.find(statement);
+        List<String> rewrites = new ArrayList<>();
+        for (Function function : aggregates.functions) {
+            approximate(function, maxStandardError, rewrites);
+        }
+        for (AnalyticExpression analytic : aggregates.analytics) {
+            approximate(analytic, rewrites);
+        }
+        String approximated = rewrites.isEmpty() ? sql : statement.toString();
+        if (sampleRatio > 1) {
+            String rejected = sample(statement, aggregates, sampleRatio);
+            if (rejected == null) {
+                rewrites.add("Sampled 1 in " + sampleRatio + " rows (TABLESAMPLE BERNOULLI), count and sum scaled by "
+                        + sampleRatio);
+                approximated = statement.toString();
+            } else if (log.isLoggable(Level.FINER)) {
+                log.log(Level.FINER, "approximate: not sampled, " + rejected);
+            }
+        }
+        return new Approximation(approximated, Collections.unmodifiableList(rewrites));
+    }
+
+    private static void approximate(Function function, double maxStandardError, List<String> rewrites) {
+        String name = function.getName().toLowerCase(Locale.ROOT);
+        ExpressionList<?> parameters = function.getParameters();
+        int arguments = parameters == null ? 0 : parameters.size();
+        String before = function.toString();
+        if ("count".equals(name) && function.isDistinct() && arguments == 1 && !function.isAllColumns()) {
+            Expression argument = parameters.get(0);
+            function.setDistinct(false);
+            function.setName("approx_distinct");
+            if (maxStandardError > 0) {
+                function.setParameters(argument, new DoubleValue(Double.toString(maxStandardError)));
+            }
+        } else if ("median".equals(name) && arguments == 1 && !function.isDistinct()) {
+            function.setName("approx_percentile");
+            function.setParameters(parameters.get(0), new DoubleValue("0.5"));
+        } else if (("percentile".equals(name) || "percentile_approx".equals(name)) && arguments >= 2
+                && !function.isDistinct()) {
+            function.setName("approx_percentile");
+            function.setParameters(parameters.get(0), parameters.get(1));
+        } else {
+            return;
+        }
+        rewrites.add("Approximated " + before + " with " + function);
+    }
+
+    private static void approximate(AnalyticExpression analytic, List<String> rewrites) {
+        String name = analytic.getName().toLowerCase(Locale.ROOT);
+        List<OrderByElement> orderBy = analytic.getOrderByElements();
+        if (analytic.getType() != AnalyticType.WITHIN_GROUP
+                || !("percentile_cont".equals(name) || "percentile_disc".equals(name))
+                || orderBy == null || orderBy.size() != 1 || analytic.getFilterExpression() != null) {
+            return;
+        }
+        Expression percentage = analytic.getExpression();
+        if (!orderBy.get(0).isAsc()) {
+            // approx_percentile ranks ascending: the p-th value in descending order is the (1-p)-th ascending
+            BigDecimal p = literal(percentage);
+            if (p == null) {
+                return;
+            }
+            percentage = new DoubleValue(BigDecimal.ONE.subtract(p).toPlainString());
+        }
+        String before = analytic.toString();
+        // FILTER_ONLY without a filter renders as name(expression, offset)
+        analytic.setType(AnalyticType.FILTER_ONLY);
+        analytic.setName("approx_percentile");
+        analytic.setExpression(orderBy.get(0).getExpression());
+        analytic.setOffset(percentage);
+        analytic.setOrderByElements(null);
+        rewrites.add("Approximated " + before + " with " + analytic.toString().trim());
+    }
+
+    private static BigDecimal literal(Expression expression) {
+        if (expression instanceof DoubleValue value) {
+            return BigDecimal.valueOf(value.getValue());
+        }
+        if (expression instanceof LongValue value) {
+            return BigDecimal.valueOf(value.getValue());
+        }
+        return null;
+    }
+
+    /**
+     * Adds {@code TABLESAMPLE BERNOULLI} to a single-table aggregation and scales its additive aggregates.
+     *
+     * @return null if the query was sampled, otherwise why it was not (the statement must then not be used)
+     */
+    private static String sample(Statement statement, AggregateFinder aggregates, int sampleRatio) {
+        if (!(statement instanceof PlainSelect select) || aggregates.selects.size() != 1 || select.getWithItemsList() != null) {
+            return "not a single SELECT without subqueries";
+        }
+        if (!(select.getFromItem() instanceof Table table) || table.getSampleClause() != null
+                || (select.getJoins() != null && !select.getJoins().isEmpty())) {
+            return "not reading a single table";
+        }
+        if (select.getDistinct() != null) {
+            return "SELECT DISTINCT";
+        }
+        for (AnalyticExpression analytic : aggregates.analytics) {
+            if (analytic.getType() != AnalyticType.FILTER_ONLY || !"approx_percentile".equals(analytic.getName())) {
+                return "window or ordered-set aggregate " + analytic.getName();
+            }
+        }
+        boolean sampleable = !aggregates.analytics.isEmpty();
+        Set<Function> scaled = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Function function : aggregates.functions) {
+            String name = function.getName().toLowerCase(Locale.ROOT);
+            if (OTHER_AGGREGATES.contains(name) || function.isDistinct()) {
+                return name + " cannot be estimated from a sample";
+            }
+            if (SCALED_AGGREGATES.contains(name)) {
+                scaled.add(function);
+            }
+            sampleable |= SCALED_AGGREGATES.contains(name) || UNSCALED_AGGREGATES.contains(name);
+        }
+        if (!sampleable) {
+            return "no aggregates";
+        }
+        // Clauses are rewritten in place; on a miss the statement is discarded by the caller
+        Set<Function> replaced = Collections.newSetFromMap(new IdentityHashMap<>());
+        @SuppressWarnings("unchecked")
+        List<SelectItem<Expression>> items = (List<SelectItem<Expression>>) (List<?>) select.getSelectItems();
+        for (SelectItem<Expression> item : items) {
+            item.setExpression(scale(item.getExpression(), replaced, sampleRatio));
+        }
+        select.setHaving(scale(select.getHaving(), replaced, sampleRatio));
+        if (select.getOrderByElements() != null) {
+            for (OrderByElement element : select.getOrderByElements()) {
+                element.setExpression(scale(element.getExpression(), replaced, sampleRatio));
+            }
+        }
+        if (!replaced.containsAll(scaled)) {
+            return "count or sum in an expression that cannot be rewritten";
+        }
+        BigDecimal percent = BigDecimal.valueOf(100).divide(BigDecimal.valueOf(sampleRatio), new MathContext(6))
+                .stripTrailingZeros();
+        table.setSampleClause(new SampleClause("TABLESAMPLE").setMethod(SampleClause.SampleMethod.BERNOULLI)
+                .setPercentageArgument(percent.scale() <= 0 ? (Number) percent.longValueExact() : percent));
+        return null;
+    }
+
+    /**
+     * Returns {@code expression} with each additive aggregate replaced by {@code (aggregate * factor)}, recording
+     * the replaced ones. Only arithmetic, casts, function arguments and parentheses are descended into, and child
+     * expressions are replaced in place.
+     */
+    private static Expression scale(Expression expression, Set<Function> replaced, int factor) {
+        if (expression instanceof Function function && !function.isDistinct()
+                && SCALED_AGGREGATES.contains(function.getName().toLowerCase(Locale.ROOT))) {
+            replaced.add(function);
+            return new ParenthesedExpressionList<>(new Multiplication(function, new LongValue(factor)));
+        }
+        if (expression instanceof BinaryExpression binary) {
+            binary.setLeftExpression(scale(binary.getLeftExpression(), replaced, factor));
+            binary.setRightExpression(scale(binary.getRightExpression(), replaced, factor));
+        } else if (expression instanceof CastExpression cast) {
+            cast.setLeftExpression(scale(cast.getLeftExpression(), replaced, factor));
+        } else if (expression instanceof Function function && function.getParameters() != null) {
+            scaleAll(function.getParameters(), replaced, factor);
+        } else if (expression instanceof ExpressionList<?> list) {
+            scaleAll(list, replaced, factor);
+        }
+        return expression;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void scaleAll(ExpressionList<?> list, Set<Function> replaced, int factor) {
+        List<Expression> expressions = (List<Expression>) list;
+        for (int i = 0; i < expressions.size(); i++) {
+            expressions.set(i, scale(expressions.get(i), replaced, factor));
+        }
+    }
+
+    /**
+     * Describes the shape of a statement for {@link WorkloadClassifier}: joins, tables, aggregation and row limit.
+     *
+     * @param sql SQL already rewritten by {@link #parse}
+     * @return the shape, or null if the SQL does not parse
+     */
+    static Shape shape(String sql) {
+        Statement statement;
+        try {
+            statement = StatementParser.parse(sql);
+        } catch (JSQLParserException e) {
+            return null;
+        }
+        if (statement == null) {
+            return null;
+        }
+        AggregateFinder finder = new AggregateFinder();
+        Set<String> tables;
+        try {
+            tables = finder.find(statement);
+        } catch (RuntimeException e) {
+            // TablesNamesFinder does not support every statement
+            return new Shape(statement instanceof Select, 0, 0, false, Long.MAX_VALUE);
+        }
+        int joins = 0;
+        boolean aggregate = !finder.analytics.isEmpty();
+        for (PlainSelect select : finder.selects) {
+            joins += select.getJoins() != null ? select.getJoins().size() : 0;
+            aggregate |= select.getGroupBy() != null;
+        }
+        for (Function function : finder.functions) {
+            String name = function.getName().toLowerCase(Locale.ROOT);
+            aggregate |= SCALED_AGGREGATES.contains(name) || UNSCALED_AGGREGATES.contains(name)
+                    || OTHER_AGGREGATES.contains(name);
+        }
+        long limit = Long.MAX_VALUE;
+        if (statement instanceof PlainSelect select) {
+            Expression rowCount = select.getLimit() != null ? select.getLimit().getRowCount()
+                    : select.getFetch() != null ? select.getFetch().getExpression() : null;
+            if (rowCount instanceof LongValue value) {
+                limit = value.getValue();
+            }
+        }
+        return new Shape(statement instanceof Select, joins, tables.size(), aggregate, limit);
+    }
+
+    /** Result of {@link #shape}. */
+    static final class Shape {
+        private final boolean query;
+        private final int joins;
+        private final int tables;
+        private final boolean aggregate;
+        private final long limit;
+
+        Shape(boolean query, int joins, int tables, boolean aggregate, long limit) {
+            this.query = query;
+            this.joins = joins;
+            this.tables = tables;
+            this.aggregate = aggregate;
+            this.limit = limit;
+        }
+
+        /** True for a SELECT (possibly with WITH or set operations). */
+        boolean isQuery() {
+            return query;
         }
-        return sql;
+
+        /** JOINs over all SELECTs of the statement, subqueries included. */
+        int getJoins() {
+            return joins;
+        }
+
+        /** Distinct tables read or written. */
+        int getTables() {
+            return tables;
+        }
+
+        /** True if any SELECT groups or calls an aggregate or window function. */
+        boolean isAggregate() {
+            return aggregate;
+        }
+
+        /** Literal LIMIT or FETCH FIRST of a plain SELECT; {@link Long#MAX_VALUE} without one. */
+        long getLimit() {
+            return limit;
+        }
+    }
+
+    /** Result of {@link #approximate}: the SQL to run and a description of every rewrite applied. */
+    static final class Approximation {
+        private final String sql;
+        private final List<String> rewrites;
+
+        Approximation(String sql, List<String> rewrites) {
+            this.sql = sql;
+            this.rewrites = rewrites;
+        }
+
+        String getSql() {
+            return sql;
+        }
+
+        /** One message per applied rewrite, reported to the application as SQL warnings. */
+        List<String> getRewrites() {
+            return rewrites;
+        }
+    }
+
+    /**
+     * Collects the function calls, WITHIN GROUP/window expressions and SELECTs (including those of subqueries, CTEs
+     * and set operations) of a statement.
+     */
+    private static final class AggregateFinder extends TablesNamesFinder<Void> {
+        final List<Function> functions = new ArrayList<>();
+        final List<AnalyticExpression> analytics = new ArrayList<>();
+        final List<PlainSelect> selects = new ArrayList<>();
+
+        /** Walks the statement and returns the names of the tables it reads or writes. */
+        Set<String> find(Statement statement) {
+            return getTables(statement);
+        }
+
+        @Override
+        public <S> Void visit(Function function, S context) {
+            functions.add(function);
+            return super.visit(function, context);
+        }
+
+        @Override
+        public <S> Void visit(AnalyticExpression analytic, S context) {
+            analytics.add(analytic);
+            return super.visit(analytic, context);
+        }
+
+        @Override
+        public <S> Void visit(PlainSelect plainSelect, S context) {
+            selects.add(plainSelect);
+            return super.visit(plainSelect, context);
+        }
+    }
+
+    /** True if {@code rowCount} is a literal greater than {@code maxRows}. */
+    private static boolean exceeds(Expression rowCount, long maxRows) {
+        return rowCount instanceof LongValue value && value.getValue() > maxRows;
     }
 
     private static String truncate(String s) {
@@ -0,0 +1,136 @@
+package io.trino.driver;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParser;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.parser.ParseException;
+import net.sf.jsqlparser.parser.StringProvider;
+import net.sf.jsqlparser.parser.TokenMgrException;
+import net.sf.jsqlparser.statement.Statement;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drop-in replacement for {@code CCJSqlParserUtil.parse(String)} used by the rewrite stage.
+ * <p>
+ * {@code CCJSqlParserUtil.parse} creates a new single-thread executor (and thread) for every statement to enforce
+ * its parse timeout, and a new JavaCC parser with all its lookahead tables and buffers. Here each thread parses
+ * directly with its own parser, re-initialized for every statement, so a parse allocates little beyond the AST
+ * and no thread is created. The timeout is enforced by one driver-wide watchdog thread that flags parsers running
+ * past their deadline, which makes JSQLParser abandon the parse just as its own timeout does.
+ * <p>
+ * Like {@code CCJSqlParserUtil.parse}, a statement is parsed with simple parsing first and, if that fails and
+ * the statement is not nested too deeply, again with complex parsing.
+ */
+final class StatementParser {
+
+    /** JSQLParser's own default parse timeout. */
+    static final long DEFAULT_TIMEOUT_MILLIS = 6000;
+
+    /** Statements longer than this are parsed with a throwaway parser, so threads do not keep huge buffers. */
+    private static final int MAX_REUSED_LENGTH = 64 * 1024;
+
+    private static final long TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(Math.max(1, DriverConfig.getLong(
+            DriverConfig.PROP_PARSE_TIMEOUT_MILLIS, null, null, DEFAULT_TIMEOUT_MILLIS)));
+
+    /** How often the watchdog looks for parsers past their deadline. */
+    private static final long WATCHDOG_TICK_MILLIS = Math.max(1, Math.min(100, TIMEOUT_NANOS / 4_000_000));
+
+    /** Parsers of all threads; weak, so a parser goes away with its thread. Guarded by itself. */
+    private static final Set<ReusableParser> PARSERS = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private static final ThreadLocal<ReusableParser> THREAD_PARSER = ThreadLocal.withInitial(StatementParser::register);
+
+    static {
+        Thread watchdog = new Thread(StatementParser::watch, "mytrino-parse-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    private StatementParser() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Parses one SQL statement.
+     *
+     * @return the statement, or null for null or empty SQL
+     * @throws JSQLParserException if the SQL does not parse or the parse timed out
+     */
+    static Statement parse(String sql) throws JSQLParserException {
+        if (sql == null || sql.isEmpty()) {
+            return null;
+        }
+        ReusableParser parser = sql.length() <= MAX_REUSED_LENGTH ? THREAD_PARSER.get() : register();
+        try {
+            return parser.parse(sql, false);
+        } catch (JSQLParserException e) {
+            if (parser.interrupted || CCJSqlParserUtil.getNestingDepth(sql) > CCJSqlParserUtil.ALLOWED_NESTING_DEPTH) {
+                throw e;
+            }
+            return parser.parse(sql, true);
+        }
+    }
+
+    private static ReusableParser register() {
+        ReusableParser parser = new ReusableParser();
+        synchronized (PARSERS) {
+            PARSERS.add(parser);
+        }
+        return parser;
+    }
+
+    private static void watch() {
+        while (true) {
+            try {
+                Thread.sleep(WATCHDOG_TICK_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            synchronized (PARSERS) {
+                for (ReusableParser parser : PARSERS) {
+                    long deadline = parser.deadline;
+                    if (deadline != 0 && now - deadline > 0) {
+                        parser.interrupted = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /** JSQLParser's parser with the per-statement state reset between statements. */
+    private static final class ReusableParser extends CCJSqlParser {
+        /** {@code System.nanoTime()} after which the current parse is abandoned; 0 while idle. */
+        volatile long deadline;
+
+        ReusableParser() {
+            super(new StringProvider(""));
+        }
+
+        Statement parse(String sql, boolean complex) throws JSQLParserException {
+            ReInit(sql);
+            bracketsCounter = 0;
+            caseCounter = 0;
+            jdbcParameterIndex = 0;
+            interrupted = false;
+            withAllowComplexParsing(complex);
+            deadline = System.nanoTime() + TIMEOUT_NANOS;
+            Statement statement;
+            try {
+                statement = Statement();
+            } catch (ParseException | TokenMgrException | StackOverflowError e) {
+                throw new JSQLParserException(interrupted ? "Time out occurred." : e.getMessage(), e);
+            } finally {
+                deadline = 0;
+            }
+            if (interrupted) {
+                throw new JSQLParserException("Time out occurred.");
+            }
+            return statement;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package io.trino.driver;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies statements into workload classes with the rules of {@code workloadRules}, so Trino resource groups
+ * (and the driver's own admission control) can tell short lookups from long scans.
+ * <p>
+ * Rules are written {@code class[@priority][:condition,condition...]} and separated by semicolons; the first rule
+ * whose conditions all hold names the class of a statement, and a statement no rule matches keeps the connection's
+ * settings. A condition compares a metric with a number ({@code <}, {@code <=}, {@code >}, {@code >=}, {@code =}):
+ * <ul>
+ *   <li>{@code query}: 1 for a SELECT, 0 for other statements</li>
+ *   <li>{@code joins}: JOINs over all SELECTs, subqueries included</li>
+ *   <li>{@code tables}: distinct tables read or written</li>
+ *   <li>{@code aggregate}: 1 if any SELECT groups or aggregates, else 0</li>
+ *   <li>{@code limit}: literal {@code LIMIT}/{@code FETCH FIRST} rows of a plain SELECT (infinite without one)</li>
+ *   <li>{@code latencyMillis}: moving average of past executions of the statement's fingerprint (the SQL with its
+ *       literals other than row limits replaced by {@code ?}); a condition on it never holds before the first
+ *       execution finishes</li>
+ * </ul>
+ * A statement of class {@code c} is submitted with {@code c} added to its client tags and {@code /c} appended to
+ * its source (the {@code ApplicationName} client info, which Trino uses unless the URL sets {@code source}). A rule
+ * with {@code @interactive} or {@code @batch} also sets the statement's admission queue priority and Trino's
+ * {@code query_priority} session property (2 and 1).
+ * <p>
+ * Statement shapes and latencies are kept per fingerprint in a driver-wide table of bounded size, so a statement is
+ * parsed for classification only the first time its fingerprint is seen.
+ */
+final class WorkloadClassifier {
+
+    /** Fingerprints whose shape and latency are remembered (least recently used are evicted). */
+    static final int MAX_PROFILES = 10_000;
+
+    /** Weight of the newest execution in the moving average latency. */
+    private static final double LATENCY_WEIGHT = 0.25;
+
+    private static final String CLIENT_TAGS = "ClientTags";
+    private static final String APPLICATION_NAME = "ApplicationName";
+    /** Source of the Trino driver when no {@code ApplicationName} is set. */
+    private static final String DEFAULT_SOURCE = "trino-jdbc";
+    private static final String QUERY_PRIORITY = "query_priority";
+
+    private static final Pattern RULE = Pattern.compile(
+            "\\s*([A-Za-z0-9_.-]+)\\s*(?:@\\s*([A-Za-z]+)\\s*)?(?::(.*))?", Pattern.DOTALL);
+    private static final Pattern CONDITION = Pattern.compile("\\s*([A-Za-z]+)\\s*(<=|>=|<|>|=)\\s*([^\\s,]+)\\s*");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    /** A row limit (kept, group 1) or another numeric literal (replaced). */
+    private static final Pattern NUMBER_LITERAL = Pattern.compile(
+            "(\\b(?:LIMIT|FETCH\\s+(?:FIRST|NEXT))\\s+\\d+)|(?<![\\w.])\\d+(?:\\.\\d+)?(?:[eE][-+]?\\d+)?",
+            Pattern.CASE_INSENSITIVE);
+
+    /** Profiles by fingerprint; read without locking on every classified execution. */
+    private static final Map<String, Profile> PROFILES = new ConcurrentHashMap<>();
+
+    /** Held by the one thread that trims {@link #PROFILES} back under {@link #MAX_PROFILES}. */
+    private static final Object EVICTION_LOCK = new Object();
+
+    private final List<Rule> rules;
+
+    private WorkloadClassifier(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Parses {@code workloadRules}; invalid rules are logged and skipped.
+     *
+     * @return the classifier, or null if no valid rule is given
+     */
+    static WorkloadClassifier parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (String text : value.split(";")) {
+            if (text.isBlank()) {
+                continue;
+            }
+            Rule rule = Rule.parse(text);
+            if (rule == null) {
+                DriverLogging.getLogger().warning("Ignoring invalid rule of " + DriverConfig.PROP_WORKLOAD_RULES
+                        + ": '" + text.trim() + "'");
+            } else {
+                rules.add(rule);
+            }
+        }
+        return rules.isEmpty() ? null : new WorkloadClassifier(Collections.unmodifiableList(rules));
+    }
+
+    /**
+     * Classifies one execution of {@code sql}.
+     *
+     * @param sql SQL as sent to Trino
+     * @return the workload of the execution; {@link Workload#getName()} is null if no rule matched
+     */
+    Workload classify(String sql) {
+        Profile profile = profile(fingerprint(sql), sql);
+        for (Rule rule : rules) {
+            if (rule.matches(profile)) {
+                return new Workload(profile, rule);
+            }
+        }
+        return new Workload(profile, null);
+    }
+
+    /**
+     * {@code sql} with string and numeric literals replaced by {@code ?}, except the row counts of {@code LIMIT} and
+     * {@code FETCH FIRST}: they are part of the shape (the {@code limit} metric), so each limit has its own profile.
+     */
+    static String fingerprint(String sql) {
+        String withoutStrings = STRING_LITERAL.matcher(sql).replaceAll("?");
+        return NUMBER_LITERAL.matcher(withoutStrings).replaceAll(WorkloadClassifier::numberReplacement);
+    }
+
+    private static String numberReplacement(MatchResult number) {
+        return number.group(1) != null ? Matcher.quoteReplacement(number.group(1)) : "?";
+    }
+
+    /** Moving average latency of a fingerprint in milliseconds, or NaN if none of its executions finished. */
+    static double getLatencyMillis(String fingerprint) {
+        Profile profile = PROFILES.get(fingerprint);
+        return profile == null ? Double.NaN : profile.latencyMillis();
+    }
+
+    /** Forgets every fingerprint's shape and latency. */
+    static void reset() {
+        PROFILES.clear();
+    }
+
+    /** Number of remembered fingerprints (tests only). */
+    static int getProfileCount() {
+        return PROFILES.size();
+    }
+
+    private static Profile profile(String fingerprint, String sql) {
+        Profile profile = PROFILES.get(fingerprint);
+        if (profile != null) {
+            profile.lastUsed = System.nanoTime();
+            return profile;
+        }
+        // A concurrent first execution of the same fingerprint may parse it twice
+        Profile parsed = new Profile(SqlParserLogic.shape(sql));
+        profile = PROFILES.putIfAbsent(fingerprint, parsed);
+        if (profile == null && PROFILES.size() > MAX_PROFILES) {
+            evict();
+        }
+        return profile != null ? profile : parsed;
+    }
+
+    /**
+     * Drops the least recently used tenth of the profiles once the table outgrows {@link #MAX_PROFILES}, so the sort
+     * is paid once per thousand new fingerprints rather than on every one. Other threads keep reading meanwhile.
+     */
+    private static void evict() {
+        synchronized (EVICTION_LOCK) {
+            int excess = PROFILES.size() - MAX_PROFILES;
+            if (excess <= 0) {
+                return;
+            }
+            List<Map.Entry<String, Profile>> entries = new ArrayList<>(PROFILES.entrySet());
+            // Sorted on a copy of lastUsed: executions running meanwhile must not reorder the list under the sort
+            for (Map.Entry<String, Profile> entry : entries) {
+                entry.getValue().evictionOrder = entry.getValue().lastUsed;
+            }
+            entries.sort(Comparator.comparingLong(entry -> entry.getValue().evictionOrder));
+            int evicted = Math.min(entries.size(), excess + MAX_PROFILES / 10);
+            for (int i = 0; i < evicted; i++) {
+                PROFILES.remove(entries.get(i).getKey(), entries.get(i).getValue());
+            }
+        }
+    }
+
+    /** Shape and latency history of one fingerprint. */
+    private static final class Profile {
+        final SqlParserLogic.Shape shape;
+        /** {@link System#nanoTime()} of the last execution, for eviction. */
+        volatile long lastUsed = System.nanoTime();
+        /** Copy of {@link #lastUsed} the eviction sorts on. Guarded by {@code EVICTION_LOCK}. */
+        long evictionOrder;
+        /** Guarded by this. */
+        private double latencyMillis = Double.NaN;
+
+        Profile(SqlParserLogic.Shape shape) {
+            this.shape = shape;
+        }
+
+        synchronized double latencyMillis() {
+            return latencyMillis;
+        }
+
+        synchronized void record(double millis) {
+            latencyMillis = Double.isNaN(latencyMillis) ? millis
+                    : LATENCY_WEIGHT * millis + (1 - LATENCY_WEIGHT) * latencyMillis;
+        }
+    }
+
+    /** Metrics rule conditions can test; NaN when unknown, which fails every comparison. */
+    private enum Metric {
+        QUERY("query", p -> p.shape == null ? Double.NaN : p.shape.isQuery() ? 1 : 0),
+        JOINS("joins", p -> p.shape == null ? Double.NaN : p.shape.getJoins()),
+        TABLES("tables", p -> p.shape == null ? Double.NaN : p.shape.getTables()),
+        AGGREGATE("aggregate", p -> p.shape == null ? Double.NaN : p.shape.isAggregate() ? 1 : 0),
+        LIMIT("limit", p -> p.shape == null ? Double.NaN
+                : p.shape.getLimit() == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : p.shape.getLimit()),
+        LATENCY_MILLIS("latencyMillis", Profile::latencyMillis);
+
+        final String key;
+        final ToDoubleFunction<Profile> value;
+
+        Metric(String key, ToDoubleFunction<Profile> value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        static Metric forKey(String key) {
+            for (Metric metric : values()) {
+                if (metric.key.equalsIgnoreCase(key)) {
+                    return metric;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Condition {
+        final Metric metric;
+        final String operator;
+        final double operand;
+
+        Condition(Metric metric, String operator, double operand) {
+            this.metric = metric;
+            this.operator = operator;
+            this.operand = operand;
+        }
+
+        boolean holds(Profile profile) {
+            double value = metric.value.applyAsDouble(profile);
+            switch (operator) {
+                case "<":
+                    return value < operand;
+                case "<=":
+                    return value <= operand;
+                case ">":
+                    return value > operand;
+                case ">=":
+                    return value >= operand;
+                default:
+                    return value == operand;
+            }
+        }
+    }
+
+    private static final class Rule {
+        final String name;
+        final AdmissionController.Priority priority;
+        final List<Condition> conditions;
+
+        Rule(String name, AdmissionController.Priority priority, List<Condition> conditions) {
+            this.name = name;
+            this.priority = priority;
+            this.conditions = conditions;
+        }
+
+        /** Parses {@code class[@priority][:condition,...]}; null if invalid. */
+        static Rule parse(String text) {
+            Matcher rule = RULE.matcher(text);
+            if (!rule.matches()) {
+                return null;
+            }
+            AdmissionController.Priority priority = null;
+            if (rule.group(2) != null) {
+                priority = AdmissionController.Priority.parse(rule.group(2));
+                if (priority == null) {
+                    return null;
+                }
+            }
+            List<Condition> conditions = new ArrayList<>();
+            if (rule.group(3) != null && !rule.group(3).isBlank()) {
+                for (String item : rule.group(3).split(",")) {
+                    Matcher condition = CONDITION.matcher(item);
+                    Metric metric = condition.matches() ? Metric.forKey(condition.group(1)) : null;
+                    if (metric == null) {
+                        return null;
+                    }
+                    String operand = condition.group(3).toLowerCase(Locale.ROOT);
+                    try {
+                        double number = "true".equals(operand) ? 1 : "false".equals(operand) ? 0
+                                : Double.parseDouble(operand);
+                        conditions.add(new Condition(metric, condition.group(2), number));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                }
+            }
+            return new Rule(rule.group(1), priority, conditions);
+        }
+
+        boolean matches(Profile profile) {
+            for (Condition condition : conditions) {
+                if (!condition.holds(profile)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Classification of one execution; records the execution's latency for its fingerprint when it finishes. */
+    static final class Workload {
+        private final Profile profile;
+        private final Rule rule;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile long startNanos;
+
+        private Workload(Profile profile, Rule rule) {
+            this.profile = profile;
+            this.rule = rule;
+        }
+
+        /** Class of the statement, or null if no rule matched. */
+        String getName() {
+            return rule != null ? rule.name : null;
+        }
+
+        /** Client tags of the statement: the connection's tags plus the class. */
+        Set<String> tags(Set<String> connectionTags) {
+            if (rule == null || connectionTags.contains(rule.name)) {
+                return connectionTags;
+            }
+            Set<String> tags = new LinkedHashSet<>(connectionTags);
+            tags.add(rule.name);
+            return Collections.unmodifiableSet(tags);
+        }
+
+        /** Admission queue priority of the statement: the rule's, else the connection's. */
+        AdmissionController.Priority priority(AdmissionController.Priority connectionPriority) {
+            return rule != null && rule.priority != null ? rule.priority : connectionPriority;
+        }
+
+        /** Marks the submission of the statement; its latency is measured from here. */
+        void start() {
+            startNanos = System.nanoTime();
+        }
+
+        /** Records the latency of a successful execution (once; later calls are ignored). */
+        void finished() {
+            if (done.compareAndSet(false, true) && startNanos != 0) {
+                profile.record((System.nanoTime() - startNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+
+        /** Ends a failed or cancelled execution without recording its latency. */
+        void discard() {
+            done.set(true);
+        }
+
+        /**
+         * Runs {@code action} (which submits one query) with the class added to the client tags and source of the
+         * Trino connection, and the rule's {@code query_priority}, for the calling thread only (see
+         * {@link QueryHints#withOverrides}). Without a class, or if {@code connection} is not a Trino connection,
+         * {@code action} just runs.
+         *
+         * @throws java.sql.SQLFeatureNotSupportedException if this trino-jdbc version cannot take the class's tags,
+         *                                                  source or priority; the statement is not run untagged
+         */
+        <T> T execute(Connection connection, QueryHints.SqlAction<T> action) throws SQLException {
+            if (rule == null) {
+                return action.run();
+            }
+            String tags = connection.getClientInfo(CLIENT_TAGS);
+            String source = connection.getClientInfo(APPLICATION_NAME);
+            Map<String, String> clientInfo = new HashMap<>();
+            clientInfo.put(CLIENT_TAGS, tags == null || tags.isBlank() ? rule.name
+                    : DriverConfig.parseTags(tags).contains(rule.name) ? tags : tags + "," + rule.name);
+            clientInfo.put(APPLICATION_NAME, (source != null ? source : DEFAULT_SOURCE) + "/" + rule.name);
+            Map<String, String> session = rule.priority == null ? Map.of()
+                    : Map.of(QUERY_PRIORITY, rule.priority == AdmissionController.Priority.INTERACTIVE ? "2" : "1");
+            return QueryHints.withOverrides(connection, session, clientInfo, action);
+        }
+    }
+}
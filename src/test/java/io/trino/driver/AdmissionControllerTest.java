@@ -0,0 +1,162 @@
+package io.trino.driver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+
+    private MockTrinoCoordinator coordinator;
+    private final MyTrinoDriver driver = new MyTrinoDriver();
+    private ExecutorService pool;
+
+    @BeforeEach
+    void start() throws Exception {
+        coordinator = new MockTrinoCoordinator();
+        pool = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void stop() {
+        pool.shutdownNow();
+        coordinator.close();
+    }
+
+    @Test
+    void admit_capsConcurrentQueries() throws Exception {
+        coordinator.latencyMillis(20).pages(3);
+        long admittedBefore = AdmissionController.getAdmittedCount();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(pool.submit(() -> countRows(props("2", "interactive"))));
+        }
+        for (Future<Integer> result : results) {
+            assertEquals(30, result.get(30, TimeUnit.SECONDS));
+        }
+        assertTrue(coordinator.getPeakRunningQueries() <= 2, "peak " + coordinator.getPeakRunningQueries());
+        assertEquals(6, AdmissionController.getAdmittedCount() - admittedBefore);
+        assertEquals(0, AdmissionController.getRunningQueries());
+        assertTrue(AdmissionController.getMaxWaitMillis() > 0);
+    }
+
+    @Test
+    void admit_queueTimeout_failsWithSqlTimeoutAndRecovers() throws Exception {
+        Properties props = props("1", "interactive");
+        props.setProperty(DriverConfig.PROP_ADMISSION_QUEUE_TIMEOUT_MILLIS, "200");
+        long timedOutBefore = AdmissionController.getTimedOutCount();
+        try (Connection holder = driver.connect(coordinator.jdbcUrl(), props);
+             Statement held = holder.createStatement()) {
+            ResultSet open = held.executeQuery("SELECT 1");
+            assertEquals(1, AdmissionController.getRunningQueries());
+            assertThrows(SQLTimeoutException.class, () -> countRows(props));
+            assertEquals(1, AdmissionController.getTimedOutCount() - timedOutBefore);
+            open.close();
+            assertEquals(0, AdmissionController.getRunningQueries());
+            assertEquals(10, countRows(props));
+        }
+    }
+
+    @Test
+    void admit_interactiveBeforeBatch() throws Exception {
+        List<String> order = new CopyOnWriteArrayList<>();
+        try (Connection holder = driver.connect(coordinator.jdbcUrl(), props("1", "interactive"))) {
+            Statement held = holder.createStatement();
+            held.executeQuery("SELECT 1");
+            Future<?> batch = pool.submit(() -> admitted(props("1", "batch"), "batch", order));
+            awaitQueueDepth(1);
+            Future<?> interactive = pool.submit(() -> admitted(props("1", "interactive"), "interactive", order));
+            awaitQueueDepth(2);
+            held.close(); // releases the permit
+            batch.get(10, TimeUnit.SECONDS);
+            interactive.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of("interactive", "batch"), order);
+    }
+
+    @Test
+    void admit_tagLimitDoesNotBlockOtherTags() throws Exception {
+        Properties etl = props("0", "interactive");
+        etl.setProperty(DriverConfig.PROP_MAX_CONCURRENT_QUERIES_PER_TAG, "etl:1");
+        etl.setProperty(DriverConfig.PROP_ADMISSION_QUEUE_TIMEOUT_MILLIS, "200");
+        etl.setProperty("clientTags", "etl");
+        Properties bi = (Properties) etl.clone();
+        bi.setProperty("clientTags", "bi");
+        try (Connection holder = driver.connect(coordinator.jdbcUrl(), etl);
+             Statement held = holder.createStatement();
+             ResultSet open = held.executeQuery("SELECT 1")) {
+            assertFalse(open.isClosed());
+            assertThrows(SQLTimeoutException.class, () -> countRows(etl));
+            assertEquals(10, countRows(bi));
+        }
+        assertEquals(10, countRows(etl));
+    }
+
+    @Test
+    void admit_connectionClosedWithResultOpen_releasesPermit() throws Exception {
+        Properties props = props("1", "interactive");
+        Connection holder = driver.connect(coordinator.jdbcUrl(), props);
+        Statement held = holder.createStatement();
+        ResultSet open = held.executeQuery("SELECT id, name FROM t");
+        assertTrue(open.next());
+        assertEquals(1, AdmissionController.getRunningQueries());
+        holder.close(); // the statement and its result are never closed through their proxies
+        assertEquals(0, AdmissionController.getRunningQueries());
+        assertEquals(10, countRows(props));
+    }
+
+    /** Runs a query and records {@code name} as soon as it has been admitted. */
+    private Void admitted(Properties props, String name, List<String> order) throws Exception {
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+            order.add(name);
+            while (rs.next()) {
+                // drain so the permit is released
+            }
+        }
+        return null;
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (AdmissionController.getQueueDepth() < depth) {
+            assertTrue(System.nanoTime() < deadline, "queue depth " + AdmissionController.getQueueDepth());
+            Thread.sleep(5);
+        }
+    }
+
+    private int countRows(Properties props) throws Exception {
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+            int rows = 0;
+            while (rs.next()) {
+                rows++;
+            }
+            return rows;
+        }
+    }
+
+    private static Properties props(String maxConcurrentQueries, String priority) {
+        Properties props = new Properties();
+        props.setProperty("user", "test");
+        props.setProperty(DriverConfig.PROP_MAX_CONCURRENT_QUERIES, maxConcurrentQueries);
+        props.setProperty(DriverConfig.PROP_QUERY_PRIORITY, priority);
+        return props;
+    }
+}
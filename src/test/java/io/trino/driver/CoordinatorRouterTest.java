@@ -0,0 +1,215 @@
+package io.trino.driver;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoordinatorRouterTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(server -> server.stop(0));
+        CoordinatorRouter.reset();
+    }
+
+    @Test
+    void isMultiHost_detectsCommaSeparatedHosts() {
+        assertTrue(CoordinatorRouter.isMultiHost("jdbc:trino://h1:8080,h2:8080/mysql/demo_db"));
+        assertFalse(CoordinatorRouter.isMultiHost("jdbc:trino://h1:8080/mysql/demo_db?a=b,c"));
+        assertFalse(CoordinatorRouter.isMultiHost(null));
+    }
+
+    @Test
+    void choose_skipsUnhealthyCoordinator() throws Exception {
+        String bad = "localhost:" + startServer(503, "{}");
+        String good = "localhost:" + startServer(200, "{\"starting\":false}");
+        String url = "jdbc:trino://" + bad + "," + good + "/mysql/demo_db";
+
+        CoordinatorRouter.Coordinator chosen = CoordinatorRouter.choose(url, null, config());
+        assertEquals(good, chosen.getAddress());
+        assertEquals("jdbc:trino://" + good + "/mysql/demo_db", CoordinatorRouter.rewriteUrl(url, chosen));
+    }
+
+    @Test
+    void choose_skipsStartingCoordinator() throws Exception {
+        String starting = "localhost:" + startServer(200, "{\"starting\": true}");
+        String good = "localhost:" + startServer(200, "{\"starting\": false}");
+        CoordinatorRouter.Coordinator chosen = CoordinatorRouter.choose("jdbc:trino://" + starting + "," + good + "/", null, config());
+        assertEquals(good, chosen.getAddress());
+    }
+
+    @Test
+    void choose_failsOverWhenCoordinatorIsDown() throws Exception {
+        String down = "localhost:" + freePort();
+        String good = "localhost:" + startServer(200, "{}");
+        CoordinatorRouter.Coordinator chosen = CoordinatorRouter.choose("jdbc:trino://" + down + "," + good, null, config());
+        assertEquals(good, chosen.getAddress());
+    }
+
+    @Test
+    void choose_prefersCoordinatorWithFewerQueriesInFlight() throws Exception {
+        String first = "localhost:" + startServer(200, "{}");
+        String second = "localhost:" + startServer(200, "{}");
+        String url = "jdbc:trino://" + first + "," + second + "/";
+        CoordinatorRouter.Coordinator busy = CoordinatorRouter.choose(url, null, config());
+        for (int i = 0; i < 10; i++) {
+            busy.queryStarted();
+        }
+        CoordinatorRouter.Coordinator next = CoordinatorRouter.choose(url, null, config());
+        assertNotEquals(busy.getAddress(), next.getAddress());
+        assertTrue(next.isHealthy());
+    }
+
+    @Test
+    void choose_noHealthyCoordinatorThrows() throws Exception {
+        String url = "jdbc:trino://localhost:" + freePort() + ",localhost:" + freePort() + "/";
+        assertThrows(SQLException.class, () -> CoordinatorRouter.choose(url, null, config()));
+    }
+
+    @Test
+    void evictIdle_dropsUnusedGroupsWithoutQueriesInFlight() throws Exception {
+        String first = "localhost:" + startServer(200, "{}");
+        String second = "localhost:" + startServer(200, "{}");
+        CoordinatorRouter.Coordinator busy = CoordinatorRouter.choose("jdbc:trino://" + first + "," + second, null, config());
+        CoordinatorRouter.choose("jdbc:trino://" + second + "," + first, null, config());
+        busy.queryStarted();
+        Thread.sleep(5);
+
+        CoordinatorRouter.evictIdle(0);
+        assertEquals(1, CoordinatorRouter.getGroupCount(), "the group with a query in flight is kept");
+        busy.queryFinished(1_000_000, false);
+        CoordinatorRouter.evictIdle(0);
+        assertEquals(0, CoordinatorRouter.getGroupCount());
+        assertTrue(CoordinatorRouter.choose("jdbc:trino://" + first + "," + second, null, config()).isHealthy());
+        assertEquals(1, CoordinatorRouter.getGroupCount());
+    }
+
+    @Test
+    void choose_otherHealthCheckSettings_useOwnGroup() throws Exception {
+        String url = "jdbc:trino://localhost:" + startServer(200, "{}") + ",localhost:" + startServer(200, "{}");
+        Properties props = new Properties();
+        props.setProperty(DriverConfig.PROP_HEALTH_CHECK_INTERVAL_SECONDS, "0");
+        props.setProperty(DriverConfig.PROP_HEALTH_CHECK_TIMEOUT_MILLIS, "500");
+        CoordinatorRouter.choose(url, null, config());
+        CoordinatorRouter.choose(url, null, config());
+        CoordinatorRouter.choose(url, null, DriverConfig.from(null, props));
+        assertEquals(2, CoordinatorRouter.getGroupCount());
+    }
+
+    @Test
+    void connect_multiHostUrlRoutesToHealthyCoordinator() throws Exception {
+        String bad = "localhost:" + startServer(500, "{}");
+        String good = "localhost:" + startServer(200, "{}");
+        Properties props = new Properties();
+        props.setProperty("user", "test");
+        props.setProperty(DriverConfig.PROP_HEALTH_CHECK_INTERVAL_SECONDS, "0");
+        try (Connection conn = new MyTrinoDriver().connect("jdbc:mytrino://" + bad + "," + good + "/mysql/demo_db", props)) {
+            assertTrue(conn.getMetaData().getURL().contains(good));
+        }
+    }
+
+    @Test
+    void queryFinished_queryLatency_keptApartFromProbeLatency() throws Exception {
+        String url = "jdbc:trino://localhost:" + startServer(200, "{}") + ",localhost:" + startServer(200, "{}");
+        CoordinatorRouter.Coordinator chosen = CoordinatorRouter.choose(url, null, config());
+        double probe = chosen.getProbeLatencyMillis();
+        assertFalse(Double.isNaN(probe));
+        assertTrue(Double.isNaN(chosen.getQueryLatencyMillis()));
+
+        chosen.queryStarted();
+        chosen.queryFinished(TimeUnit.SECONDS.toNanos(60), false);
+        assertEquals(60_000, chosen.getQueryLatencyMillis());
+        assertEquals(probe, chosen.getProbeLatencyMillis());
+        assertEquals(probe + 1, chosen.score());
+    }
+
+    @Test
+    void connect_failsOnChosenCoordinator_triesNextHealthyOne() throws Exception {
+        String first = "localhost:" + startServer(200, "{}");
+        String second = "localhost:" + startServer(200, "{}");
+        List<String> attempts = new ArrayList<>();
+        MyTrinoDriver driver = new MyTrinoDriver() {
+            @Override
+            Connection connectTrino(String trinoUrl, Properties info) throws SQLException {
+                attempts.add(trinoUrl);
+                if (attempts.size() == 1) {
+                    throw new SQLException("connect refused");
+                }
+                return super.connectTrino(trinoUrl, info);
+            }
+        };
+        try (Connection conn = driver.connect("jdbc:mytrino://" + first + "," + second + "/mysql", props())) {
+            assertEquals(2, attempts.size(), attempts.toString());
+            String used = attempts.get(1).contains(first) ? first : second;
+            assertFalse(attempts.get(0).contains(used), attempts.toString());
+            assertTrue(conn.getMetaData().getURL().contains(used));
+        }
+    }
+
+    @Test
+    void connect_failsOnEveryCoordinator_throwsFirstFailure() throws Exception {
+        String url = "jdbc:mytrino://localhost:" + startServer(200, "{}") + ",localhost:" + startServer(200, "{}");
+        AtomicInteger attempts = new AtomicInteger();
+        MyTrinoDriver driver = new MyTrinoDriver() {
+            @Override
+            Connection connectTrino(String trinoUrl, Properties info) throws SQLException {
+                throw new SQLException("connect refused " + attempts.incrementAndGet());
+            }
+        };
+        SQLException e = assertThrows(SQLException.class, () -> driver.connect(url, props()));
+        assertEquals("connect refused 1", e.getMessage());
+        assertEquals(2, attempts.get());
+        assertEquals(2, e.getSuppressed().length); // the second attempt, then no coordinator left
+    }
+
+    private static Properties props() {
+        Properties props = new Properties();
+        props.setProperty("user", "test");
+        props.setProperty(DriverConfig.PROP_HEALTH_CHECK_INTERVAL_SECONDS, "0");
+        return props;
+    }
+
+    private static DriverConfig config() {
+        Properties props = new Properties();
+        props.setProperty(DriverConfig.PROP_HEALTH_CHECK_INTERVAL_SECONDS, "0");
+        props.setProperty(DriverConfig.PROP_HEALTH_CHECK_TIMEOUT_MILLIS, "1000");
+        return DriverConfig.from(null, props);
+    }
+
+    private int startServer(int status, String body) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/info", exchange -> {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        servers.add(server);
+        return server.getAddress().getPort();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.trino.driver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DriverConfigTest {
+
+    @Test
+    void get_propertiesWinOverUrl() {
+        Properties info = new Properties();
+        info.setProperty(DriverConfig.PROP_METADATA_CACHE_TTL_SECONDS, "5");
+        String url = "jdbc:mytrino://localhost:8080/?metadataCacheTtlSeconds=60";
+        assertEquals("5", DriverConfig.get(DriverConfig.PROP_METADATA_CACHE_TTL_SECONDS, url, info));
+        assertEquals("60", DriverConfig.get(DriverConfig.PROP_METADATA_CACHE_TTL_SECONDS, url, null));
+    }
+
+    @Test
+    void from_parsesMetadataCacheSettings() {
+        DriverConfig config = DriverConfig.from("jdbc:mytrino://localhost:8080/?metadataCacheTtlSeconds=30&metadataCacheMaxEntries=50", null);
+        assertEquals(30_000L, config.getMetadataCacheTtlMillis());
+        assertEquals(50, config.getMetadataCacheMaxEntries());
+    }
+
+    @Test
+    void from_invalidNumberFallsBackToDefault() {
+        DriverConfig config = DriverConfig.from("jdbc:mytrino://localhost:8080/?metadataCacheTtlSeconds=abc", null);
+        assertEquals(0L, config.getMetadataCacheTtlMillis());
+    }
+
+    @Test
+    void defaults_metadataCacheDisabled() {
+        assertEquals(0L, DriverConfig.defaults().getMetadataCacheTtlMillis());
+    }
+
+    @Test
+    void from_parsesAdmissionSettings() {
+        Properties info = new Properties();
+        info.setProperty(DriverConfig.PROP_MAX_CONCURRENT_QUERIES_PER_TAG, "etl:4, bi:16,bad,zero:0");
+        info.setProperty(DriverConfig.PROP_QUERY_PRIORITY, "Batch");
+        info.setProperty("clientTags", "etl,nightly");
+        DriverConfig config = DriverConfig.from("jdbc:mytrino://localhost:8080/", info);
+        assertEquals(java.util.Map.of("etl", 4, "bi", 16), config.getMaxConcurrentQueriesPerTag());
+        assertEquals(AdmissionController.Priority.BATCH, config.getQueryPriority());
+        assertEquals(java.util.Set.of("etl", "nightly"), config.getClientTags());
+        assertTrue(config.isAdmissionControlled());
+        assertFalse(DriverConfig.defaults().isAdmissionControlled());
+        assertEquals(AdmissionController.Priority.INTERACTIVE, DriverConfig.defaults().getQueryPriority());
+    }
+
+    @Test
+    void stripFromUrl_removesAllDriverKeys() {
+        String url = "jdbc:trino://localhost:8080/?user=a&metadataCacheTtlSeconds=30&logLevel=FINE";
+        assertEquals("jdbc:trino://localhost:8080/?user=a", DriverConfig.stripFromUrl(url));
+    }
+
+    @Test
+    void stripFromProperties_keepsTrinoKeysOnly() {
+        Properties info = new Properties();
+        info.setProperty("user", "test");
+        info.setProperty(DriverLogging.PROP_LOG_LEVEL, "FINE");
+        info.setProperty(DriverConfig.PROP_METADATA_CACHE_TTL_SECONDS, "30");
+        Properties stripped = DriverConfig.stripFromProperties(info);
+        assertEquals("test", stripped.getProperty("user"));
+        assertEquals(1, stripped.size());
+        assertEquals(3, info.size(), "original properties must not be modified");
+    }
+
+    @Test
+    void stripFromProperties_nullReturnsNull() {
+        assertNull(DriverConfig.stripFromProperties(null));
+    }
+}
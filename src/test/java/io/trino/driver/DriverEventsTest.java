@@ -0,0 +1,138 @@
+package io.trino.driver;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DriverEventsTest {
+
+    private static final String REWRITE = "io.trino.driver.Rewrite";
+    private static final String EXECUTE = "io.trino.driver.Execute";
+    private static final String FETCH = "io.trino.driver.Fetch";
+    private static final String CONNECT = "io.trino.driver.ConnectionOpen";
+
+    private MockTrinoCoordinator coordinator;
+    private final MyTrinoDriver driver = new MyTrinoDriver();
+
+    @BeforeEach
+    void start() throws Exception {
+        coordinator = new MockTrinoCoordinator();
+    }
+
+    @AfterEach
+    void stop() {
+        coordinator.close();
+    }
+
+    @Test
+    void recording_emitsConnectRewriteExecuteAndFetchEvents() throws Exception {
+        coordinator.pages(3).rowsPerPage(20);
+        List<RecordedEvent> events = record(() -> assertEquals(60, readAll(props(), "SELECT id, name FROM t")));
+
+        RecordedEvent connect = single(events, CONNECT);
+        assertTrue(connect.getString("url").startsWith("jdbc:trino://"));
+        assertEquals("test", connect.getString("user"));
+        assertFalse(connect.getBoolean("failed"));
+
+        RecordedEvent rewrite = single(events, REWRITE);
+        assertEquals("SELECT id, name FROM t".length(), rewrite.getInt("originalLength"));
+        assertFalse(rewrite.getBoolean("fallback"));
+
+        RecordedEvent execute = single(events, EXECUTE);
+        assertEquals("executeQuery", execute.getString("method"));
+        assertTrue(execute.getString("queryId").startsWith("mock_"));
+        assertTrue(execute.getLong("timeToFirstRow") >= 0);
+        assertNotNull(execute.getStackTrace());
+
+        List<RecordedEvent> fetches = of(events, FETCH);
+        assertEquals(60, fetches.stream().mapToLong(e -> e.getLong("rows")).sum());
+        assertTrue(fetches.stream().allMatch(e -> execute.getString("queryId").equals(e.getString("queryId"))));
+        assertTrue(fetches.stream().mapToLong(e -> e.getLong("bytes")).sum() > 0);
+    }
+
+    @Test
+    void recording_spooledPages_countSegmentRows() throws Exception {
+        coordinator.spooledSegments(2).pages(2).rowsPerPage(10);
+        List<RecordedEvent> events = record(() -> assertEquals(20, readAll(props(), "SELECT id, name FROM t")));
+
+        List<RecordedEvent> fetches = of(events, FETCH);
+        assertEquals(20, fetches.stream().mapToLong(e -> e.getLong("rows")).sum());
+        assertEquals(4, fetches.stream().mapToInt(e -> e.getInt("segments")).sum());
+    }
+
+    @Test
+    void recording_unparsableSql_rewriteFallback() throws Exception {
+        List<RecordedEvent> events = record(() -> SqlParserLogic.parse("SELECT FROM WHERE ((("));
+
+        RecordedEvent rewrite = single(events, REWRITE);
+        assertTrue(rewrite.getBoolean("fallback"));
+    }
+
+    @Test
+    void noRecording_queriesUnaffected() throws Exception {
+        coordinator.pages(2).rowsPerPage(5);
+        assertEquals(10, readAll(props(), "SELECT id, name FROM t"));
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    private static List<RecordedEvent> record(Action action) throws Exception {
+        Path file = Files.createTempFile("driver-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : List.of(REWRITE, EXECUTE, FETCH, CONNECT)) {
+                recording.enable(name).withStackTrace();
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> of(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = of(events, name);
+        assertEquals(1, matching.size(), name + " events: " + matching);
+        return matching.get(0);
+    }
+
+    private int readAll(Properties props, String sql) throws Exception {
+        int rows = 0;
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static Properties props() {
+        Properties props = new Properties();
+        props.setProperty("user", "test");
+        return props;
+    }
+}
@@ -2,6 +2,13 @@ package io.trino.driver;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class DriverLoggingTest {
@@ -62,4 +69,112 @@ class DriverLoggingTest {
         assertDoesNotThrow(() -> DriverLogging.applyLevelFrom(null, null));
         assertDoesNotThrow(() -> DriverLogging.applyLevelFrom("jdbc:mytrino://localhost:8080/", new java.util.Properties()));
     }
+
+    @Test
+    void applyLevelFrom_connectionLevelDoesNotChangeDriverLogger() {
+        Level before = DriverLogging.getLogger().getLevel();
+        Properties props = new Properties();
+        props.setProperty(DriverLogging.PROP_LOG_LEVEL, "FINEST");
+        DriverLogging.applyLevelFrom("jdbc:mytrino://localhost:8080/?logLevel=FINEST", props);
+        assertEquals(before, DriverLogging.getLogger().getLevel());
+    }
+
+    @Test
+    void scopeFrom_levelAppliesToScopeOnly() {
+        DriverLogging.Scope scope = DriverLogging.scopeFrom("jdbc:mytrino://localhost:8080/?logLevel=FINE", null);
+        assertTrue(scope.isLoggable(Level.FINE));
+        assertFalse(scope.isLoggable(Level.FINER));
+        assertFalse(DriverLogging.Scope.inherit().isLoggable(Level.FINE));
+    }
+
+    @Test
+    void scopeLog_publishesBelowDriverLoggerLevel() {
+        List<LogRecord> records = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        DriverLogging.getLogger().addHandler(handler);
+        try {
+            DriverLogging.scopeFrom("jdbc:mytrino://localhost:8080/?logLevel=FINE", null).log(Level.FINE, "scoped");
+            DriverLogging.Scope.inherit().log(Level.FINE, "global");
+        } finally {
+            DriverLogging.getLogger().removeHandler(handler);
+        }
+        assertEquals(1, records.size());
+        assertEquals("scoped", records.get(0).getMessage());
+    }
+
+    @Test
+    void rewrite_logsThroughConnectionScope() {
+        List<LogRecord> records = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        DriverLogging.getLogger().addHandler(handler);
+        try {
+            DriverConfig.from("jdbc:mytrino://localhost:8080/?logLevel=FINER", null).rewrite("SELECT {fn UCASE(a)}");
+            DriverConfig.from("jdbc:mytrino://localhost:8080/", null).rewrite("SELECT {fn LCASE(a)}");
+        } finally {
+            DriverLogging.getLogger().removeHandler(handler);
+        }
+        assertFalse(records.isEmpty());
+        for (LogRecord record : records) {
+            assertEquals(Level.FINER, record.getLevel());
+            assertFalse(record.getMessage().contains("LCASE"), record.getMessage());
+        }
+    }
+
+    @Test
+    void sampleStatement_logsOneInN() {
+        DriverLogging.Scope scope = DriverLogging.scopeFrom("jdbc:mytrino://localhost:8080/?logLevel=FINE&logSampleRate=3", null);
+        int sampled = 0;
+        for (int i = 0; i < 9; i++) {
+            if (scope.sampleStatement()) sampled++;
+        }
+        assertEquals(3, sampled);
+    }
+
+    @Test
+    void sampleStatement_falseWhenFineDisabled() {
+        assertFalse(DriverLogging.scopeFrom("jdbc:mytrino://localhost:8080/?logLevel=INFO", null).sampleStatement());
+    }
+
+    @Test
+    void tryAcquire_capsRecordsPerSecond() {
+        DriverLogging.Scope scope = DriverLogging.scopeFrom("jdbc:mytrino://localhost:8080/?logLevel=FINE&logMaxPerSecond=5", null);
+        int acquired = 0;
+        for (int i = 0; i < 20; i++) {
+            if (scope.tryAcquire()) acquired++;
+        }
+        // At most two one-second windows can be touched by this loop.
+        assertTrue(acquired >= 5 && acquired <= 10, "acquired " + acquired);
+    }
+
+    @Test
+    void stripDriverParamsFromUrl_stripsSamplingParams() {
+        String url = "jdbc:trino://localhost:8080/?logSampleRate=10&logSlowQueryMillis=500&logMaxPerSecond=5&SSL=false";
+        assertEquals("jdbc:trino://localhost:8080/?SSL=false", DriverLogging.stripDriverParamsFromUrl(url));
+    }
 }
@@ -0,0 +1,153 @@
+package io.trino.driver;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Throughput benchmark of {@link ResultExporter}: exports one query into a temporary directory for each requested
+ * encoding parallelism and reports rows and bytes per second and the peak heap of the run.
+ * <p>
+ * Standalone run against an in-process {@link MockTrinoCoordinator} (no network or Docker needed):
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=io.trino.driver.ExportBenchmark \
+ *     -Dexec.args="format=PARQUET compression=gzip parallelism=1,2,4,8 pages=200 rows=5000 batchRows=10000"
+ * </pre>
+ * Pass {@code url=jdbc:mytrino://host:8080/...} and {@code sql=...} to export from a real coordinator instead.
+ */
+final class ExportBenchmark {
+
+    private ExportBenchmark() {
+    }
+
+    /** Result of one export run. */
+    static final class Report {
+        final int parallelism;
+        final ExportResult result;
+        final long elapsedNanos;
+        final long peakHeapBytes;
+
+        Report(int parallelism, ExportResult result, long elapsedNanos, long peakHeapBytes) {
+            this.parallelism = parallelism;
+            this.result = result;
+            this.elapsedNanos = elapsedNanos;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+        double rowsPerSecond() {
+            return result.getRowCount() / (elapsedNanos / 1e9);
+        }
+
+        double megabytesPerSecond() {
+            return result.getByteCount() / 1e6 / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("parallelism=%d rows=%d files=%d bytes=%d elapsed=%.2fs: %.0f rows/s, %.1f MB/s, "
+                            + "peak heap %.1f MB",
+                    parallelism, result.getRowCount(), result.getFiles().size(), result.getByteCount(),
+                    elapsedNanos / 1e9, rowsPerSecond(), megabytesPerSecond(), peakHeapBytes / 1e6);
+        }
+    }
+
+    /**
+     * Exports {@code sql} into {@code directory} (which must not hold files of an earlier run) with the export
+     * settings in {@code props} and {@code exportParallelism} set to {@code parallelism}.
+     */
+    static Report run(String url, Properties props, String sql, ResultExporter.Format format, int parallelism,
+                      Path directory) throws Exception {
+        Properties settings = new Properties();
+        settings.putAll(props);
+        settings.setProperty(DriverConfig.PROP_EXPORT_PARALLELISM, String.valueOf(parallelism));
+        try (Connection conn = DriverManager.getConnection(url, settings);
+             Statement stmt = conn.createStatement()) {
+            System.gc();
+            resetPeakHeap();
+            long begin = System.nanoTime();
+            ExportResult result = stmt.unwrap(ResultExporter.class).export(sql, directory, format);
+            long elapsed = System.nanoTime() - begin;
+            return new Report(parallelism, result, elapsed, peakHeap());
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    /** Sum of the peak usage of the heap pools since the last reset (an upper bound of the peak heap). */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int pages = 100;
+        int rowsPerPage = 5000;
+        String url = null;
+        String sql = "SELECT id, name FROM t";
+        ResultExporter.Format format = ResultExporter.Format.PARQUET;
+        String[] parallelism = {"1", "2", "4", String.valueOf(Runtime.getRuntime().availableProcessors())};
+        Properties props = new Properties();
+        props.setProperty("user", "export");
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String key = eq > 0 ? arg.substring(0, eq) : arg;
+            String value = eq > 0 ? arg.substring(eq + 1) : "";
+            switch (key) {
+                case "pages": pages = Integer.parseInt(value); break;
+                case "rows": rowsPerPage = Integer.parseInt(value); break;
+                case "url": url = value; break;
+                case "sql": sql = value; break;
+                case "format": format = ResultExporter.Format.valueOf(value.toUpperCase(Locale.ROOT)); break;
+                case "parallelism": parallelism = value.split(","); break;
+                case "compression": props.setProperty(DriverConfig.PROP_EXPORT_COMPRESSION, value); break;
+                case "batchRows": props.setProperty(DriverConfig.PROP_EXPORT_BATCH_ROWS, value); break;
+                case "maxFileBytes": props.setProperty(DriverConfig.PROP_EXPORT_MAX_FILE_BYTES, value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        Class.forName(MyTrinoDriver.class.getName());
+        MockTrinoCoordinator coordinator = null;
+        if (url == null) {
+            coordinator = new MockTrinoCoordinator().pages(pages).rowsPerPage(rowsPerPage);
+            url = coordinator.jdbcUrl();
+        }
+        Path root = Files.createTempDirectory("export-benchmark");
+        try {
+            // Warm-up (class loading, JIT) before the measured runs
+            run(url, props, sql, format, 2, root.resolve("warmup"));
+            for (String p : parallelism) {
+                Path directory = root.resolve("p" + p.trim());
+                System.out.println(run(url, props, sql, format, Integer.parseInt(p.trim()), directory));
+                delete(directory);
+            }
+        } finally {
+            delete(root);
+            if (coordinator != null) coordinator.close();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package io.trino.driver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportBenchmarkTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void run_parallelExportFromMockCoordinator() throws Exception {
+        Class.forName(MyTrinoDriver.class.getName());
+        Properties props = new Properties();
+        props.setProperty("user", "export");
+        props.setProperty(DriverConfig.PROP_EXPORT_BATCH_ROWS, "500");
+        props.setProperty(DriverConfig.PROP_EXPORT_COMPRESSION, "gzip");
+        try (MockTrinoCoordinator coordinator = new MockTrinoCoordinator()) {
+            coordinator.pages(10).rowsPerPage(1000);
+            ExportBenchmark.Report report = ExportBenchmark.run(coordinator.jdbcUrl(), props, "SELECT id, name FROM t",
+                    ResultExporter.Format.PARQUET, 4, dir);
+
+            assertEquals(10_000, report.result.getRowCount(), report.toString());
+            assertEquals(1, report.result.getFiles().size());
+            assertTrue(report.rowsPerSecond() > 0);
+            assertTrue(report.peakHeapBytes > 0);
+        }
+    }
+}
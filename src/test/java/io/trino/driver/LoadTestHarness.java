@@ -0,0 +1,190 @@
+package io.trino.driver;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-threaded load generator for {@code jdbc:mytrino:} URLs.
+ * <p>
+ * Each worker thread opens its own connection and runs {@code queriesPerThread} queries, reading every row.
+ * The report contains throughput, latency percentiles and the bytes allocated by the worker threads
+ * (the JDBC calling side of the driver; HTTP client threads are not included).
+ * <p>
+ * Standalone run against an in-process {@link MockTrinoCoordinator} (no network or Docker needed):
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=io.trino.driver.LoadTestHarness \
+ *     -Dexec.args="threads=32 queries=200 pages=4 rows=500 latencyMs=2"
+ * </pre>
+ * Pass {@code url=jdbc:mytrino://host:8080/...} to drive a real coordinator instead.
+ */
+final class LoadTestHarness {
+
+    private LoadTestHarness() {
+    }
+
+    /** Result of one load run. */
+    static final class Report {
+        final int threads;
+        final long queries;
+        final long rows;
+        final long errors;
+        final long elapsedNanos;
+        final long[] latenciesNanos;
+        final long allocatedBytes;
+
+        Report(int threads, long queries, long rows, long errors, long elapsedNanos, long[] latenciesNanos, long allocatedBytes) {
+            this.threads = threads;
+            this.queries = queries;
+            this.rows = rows;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.latenciesNanos = latenciesNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        double queriesPerSecond() {
+            return queries / (elapsedNanos / 1e9);
+        }
+
+        double rowsPerSecond() {
+            return rows / (elapsedNanos / 1e9);
+        }
+
+        /** Latency at percentile {@code p} (0-100) in milliseconds. */
+        double percentileMillis(double p) {
+            if (latenciesNanos.length == 0) return 0;
+            int index = (int) Math.min(latenciesNanos.length - 1, Math.ceil(p / 100.0 * latenciesNanos.length) - 1);
+            return latenciesNanos[Math.max(0, index)] / 1e6;
+        }
+
+        double allocatedMegabytesPerSecond() {
+            return allocatedBytes / 1e6 / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("threads=%d queries=%d rows=%d errors=%d elapsed=%.2fs%n"
+                            + "throughput: %.1f queries/s, %.0f rows/s%n"
+                            + "latency ms: p50=%.2f p90=%.2f p99=%.2f max=%.2f%n"
+                            + "allocated: %.1f MB (%.1f MB/s, %.0f bytes/row)",
+                    threads, queries, rows, errors, elapsedNanos / 1e9,
+                    queriesPerSecond(), rowsPerSecond(),
+                    percentileMillis(50), percentileMillis(90), percentileMillis(99), percentileMillis(100),
+                    allocatedBytes / 1e6, allocatedMegabytesPerSecond(), rows == 0 ? 0.0 : (double) allocatedBytes / rows);
+        }
+    }
+
+    /**
+     * Runs {@code threads} workers, each executing {@code queriesPerThread} times {@code sql} on its own connection.
+     */
+    static Report run(String url, Properties props, String sql, int threads, int queriesPerThread) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong rows = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong allocated = new AtomicLong();
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                long[] latencies = new long[queriesPerThread];
+                try (Connection conn = DriverManager.getConnection(url, props)) {
+                    start.await();
+                    long allocatedBefore = currentThreadAllocatedBytes();
+                    for (int q = 0; q < queriesPerThread; q++) {
+                        long begin = System.nanoTime();
+                        try (Statement stmt = conn.createStatement();
+                             ResultSet rs = stmt.executeQuery(sql)) {
+                            long n = 0;
+                            while (rs.next()) {
+                                rs.getObject(1);
+                                n++;
+                            }
+                            rows.addAndGet(n);
+                        } catch (SQLException e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[q] = System.nanoTime() - begin;
+                    }
+                    allocated.addAndGet(currentThreadAllocatedBytes() - allocatedBefore);
+                }
+                return latencies;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        long[] all = new long[threads * queriesPerThread];
+        int i = 0;
+        for (Future<long[]> future : futures) {
+            long[] latencies = future.get();
+            System.arraycopy(latencies, 0, all, i, latencies.length);
+            i += latencies.length;
+        }
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+        Arrays.sort(all);
+        return new Report(threads, all.length, rows.get(), errors.get(), elapsed, all, allocated.get());
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()) {
+            return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = 8;
+        int queries = 100;
+        int pages = 4;
+        int rowsPerPage = 250;
+        long latencyMs = 1;
+        String url = null;
+        String sql = "SELECT id, name FROM t";
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String key = eq > 0 ? arg.substring(0, eq) : arg;
+            String value = eq > 0 ? arg.substring(eq + 1) : "";
+            switch (key) {
+                case "threads": threads = Integer.parseInt(value); break;
+                case "queries": queries = Integer.parseInt(value); break;
+                case "pages": pages = Integer.parseInt(value); break;
+                case "rows": rowsPerPage = Integer.parseInt(value); break;
+                case "latencyMs": latencyMs = Long.parseLong(value); break;
+                case "url": url = value; break;
+                case "sql": sql = value; break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        Class.forName(MyTrinoDriver.class.getName());
+        Properties props = new Properties();
+        props.setProperty("user", "load");
+        if (url != null) {
+            System.out.println(run(url, props, sql, threads, queries));
+            return;
+        }
+        try (MockTrinoCoordinator coordinator = new MockTrinoCoordinator(Math.max(16, threads * 2))) {
+            coordinator.pages(pages).rowsPerPage(rowsPerPage).latencyMillis(latencyMs);
+            // Warm-up (class loading, JIT) before the measured run
+            run(coordinator.jdbcUrl(), props, sql, threads, Math.max(1, queries / 10));
+            Report report = run(coordinator.jdbcUrl(), props, sql, threads, queries);
+            System.out.println(report);
+            System.out.println("peak concurrent queries on coordinator: " + coordinator.getPeakRunningQueries());
+        }
+    }
+}
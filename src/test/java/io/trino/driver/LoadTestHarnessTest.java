@@ -0,0 +1,28 @@
+package io.trino.driver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadTestHarnessTest {
+
+    @Test
+    void run_concurrentWorkersAgainstMockCoordinator() throws Exception {
+        Class.forName(MyTrinoDriver.class.getName());
+        Properties props = new Properties();
+        props.setProperty("user", "load");
+        try (MockTrinoCoordinator coordinator = new MockTrinoCoordinator()) {
+            coordinator.pages(2).rowsPerPage(50);
+            LoadTestHarness.Report report = LoadTestHarness.run(coordinator.jdbcUrl(), props, "SELECT id, name FROM t", 4, 10);
+
+            assertEquals(0, report.errors, report.toString());
+            assertEquals(40, report.queries);
+            assertEquals(40 * 100, report.rows);
+            assertTrue(report.queriesPerSecond() > 0);
+            assertTrue(report.percentileMillis(50) <= report.percentileMillis(99));
+            assertTrue(coordinator.getPeakRunningQueries() >= 1);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package io.trino.driver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetadataCacheTest {
+
+    private final MetadataCache cache = MetadataCache.getInstance();
+
+    @BeforeEach
+    @AfterEach
+    void clear() {
+        MetadataCache.reset();
+    }
+
+    @Test
+    void get_secondCallServedFromCache() throws SQLException {
+        AtomicInteger loads = new AtomicInteger();
+        MetadataCache.Key key = MetadataCache.key("jdbc:trino://h:8080", "u", "getTables", new Object[]{null, "s", "%", new String[]{"TABLE"}});
+        MetadataCache.Key sameKey = MetadataCache.key("jdbc:trino://h:8080", "u", "getTables", new Object[]{null, "s", "%", new String[]{"TABLE"}});
+
+        try (ResultSet rs = cache.get(key, 60_000, () -> rows(loads, "users", "orders"))) {
+            assertTrue(rs.next());
+            assertEquals("users", rs.getString(1));
+        }
+        try (ResultSet rs = cache.get(sameKey, 60_000, () -> rows(loads, "other"))) {
+            assertTrue(rs.next());
+            assertEquals("users", rs.getString(1));
+            assertTrue(rs.next());
+            assertEquals("orders", rs.getString(1));
+            assertFalse(rs.next());
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void get_eachHitHasOwnCursor() throws SQLException {
+        AtomicInteger loads = new AtomicInteger();
+        MetadataCache.Key key = MetadataCache.key("url", "u", "getSchemas", null);
+        ResultSet first = cache.get(key, 60_000, () -> rows(loads, "a", "b"));
+        ResultSet second = cache.get(key, 60_000, () -> rows(loads, "a", "b"));
+        assertTrue(first.next());
+        assertTrue(first.next());
+        assertTrue(second.next());
+        assertEquals("a", second.getString(1));
+        assertEquals("b", first.getString(1));
+    }
+
+    @Test
+    void get_differentArgumentsAreSeparateEntries() throws SQLException {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(MetadataCache.key("url", "u", "getColumns", new Object[]{"c", "s", "t1", "%"}), 60_000, () -> rows(loads, "x"));
+        cache.get(MetadataCache.key("url", "u", "getColumns", new Object[]{"c", "s", "t2", "%"}), 60_000, () -> rows(loads, "x"));
+        cache.get(MetadataCache.key("url", "other", "getColumns", new Object[]{"c", "s", "t1", "%"}), 60_000, () -> rows(loads, "x"));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void get_expiredEntryIsReloaded() throws SQLException {
+        AtomicInteger loads = new AtomicInteger();
+        MetadataCache.Key key = MetadataCache.key("url", "u", "getCatalogs", null);
+        cache.get(key, 60_000, () -> rows(loads, "old"));
+        try (ResultSet rs = cache.get(key, 0, () -> rows(loads, "new"))) {
+            assertTrue(rs.next());
+            assertEquals("new", rs.getString(1));
+        }
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidate_dropsEntriesForUrlOnly() throws SQLException {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(MetadataCache.key("url1", "u", "getCatalogs", null), 60_000, () -> rows(loads, "a"));
+        cache.get(MetadataCache.key("url2", "u", "getCatalogs", null), 60_000, () -> rows(loads, "a"));
+        MetadataCache.invalidate("url1");
+        assertEquals(1, MetadataCache.size());
+    }
+
+    @Test
+    void put_evictsBeyondMaxEntries() throws SQLException {
+        AtomicInteger loads = new AtomicInteger();
+        cache.setMaxEntries(2);
+        for (int i = 0; i < 5; i++) {
+            cache.get(MetadataCache.key("url", "u", "getTables", new Object[]{"t" + i}), 60_000, () -> rows(loads, "a"));
+        }
+        assertEquals(2, MetadataCache.size());
+    }
+
+    @Test
+    void setMaxEntries_largestBoundWins() throws SQLException {
+        AtomicInteger loads = new AtomicInteger();
+        cache.setMaxEntries(3);
+        cache.setMaxEntries(2);
+        for (int i = 0; i < 5; i++) {
+            cache.get(MetadataCache.key("url", "u", "getTables", new Object[]{"t" + i}), 60_000, () -> rows(loads, "a"));
+        }
+        assertEquals(3, MetadataCache.size());
+    }
+
+    @Test
+    void invalidate_duringLoad_loadedRowsNotStored() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        MetadataCache.Key key = MetadataCache.key("url", "u", "getTables", null);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResultSet> stale = pool.submit(() -> cache.get(key, 60_000, () -> {
+                loading.countDown();
+                await(invalidated, 5_000);
+                return rows(loads, "dropped");
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            MetadataCache.invalidate("url");
+            invalidated.countDown();
+            ResultSet rs = stale.get(5, TimeUnit.SECONDS);
+            assertTrue(rs.next());
+            assertEquals("dropped", rs.getString(1));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(0, MetadataCache.size());
+        try (ResultSet rs = cache.get(key, 60_000, () -> rows(loads, "created"))) {
+            assertTrue(rs.next());
+            assertEquals("created", rs.getString(1));
+        }
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_concurrentMisses_loadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        MetadataCache.Key key = MetadataCache.key("url", "u", "getColumns", new Object[]{"c", "s", "t", "%"});
+        int threads = 8;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    barrier.await(5, TimeUnit.SECONDS);
+                    try (ResultSet rs = cache.get(key, 60_000, () -> {
+                        await(new CountDownLatch(1), 200); // a slow load
+                        return rows(loads, "x");
+                    })) {
+                        assertTrue(rs.next());
+                        return rs.getString(1);
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals("x", result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    private static void await(CountDownLatch latch, long millis) throws SQLException {
+        try {
+            latch.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private static ResultSet rows(AtomicInteger loads, String... names) throws SQLException {
+        loads.incrementAndGet();
+        RowSetMetaDataImpl meta = new RowSetMetaDataImpl();
+        meta.setColumnCount(1);
+        meta.setColumnName(1, "TABLE_NAME");
+        meta.setColumnType(1, Types.VARCHAR);
+        CachedRowSet rs = RowSetProvider.newFactory().createCachedRowSet();
+        rs.setMetaData(meta);
+        for (String name : names) {
+            rs.moveToInsertRow();
+            rs.updateString(1, name);
+            rs.insertRow();
+        }
+        rs.moveToCurrentRow();
+        rs.beforeFirst();
+        return rs;
+    }
+}
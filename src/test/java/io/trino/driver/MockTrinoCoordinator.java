@@ -0,0 +1,338 @@
+package io.trino.driver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for a Trino coordinator that speaks the client HTTP protocol
+ * ({@code POST /v1/statement}, then {@code GET nextUri} until the query is finished).
+ * <p>
+ * Every query returns the same synthetic result: columns {@code id bigint, name varchar}, {@link #pages(int)} pages
+ * of {@link #rowsPerPage(int)} rows each. Latency can be injected per HTTP request and a query can be held in the
+ * QUEUED state for a number of polls. Submitted SQL and request headers are recorded for assertions.
+ * <p>
+ * With {@link #spooledSegments(int)} the mock also acts as a segment server for the spooling protocol: queries that
+ * request an encoding get each page as that many {@code spooled} segments (plain {@code json} encoding), which the
+ * client downloads from {@code /v1/spooled/segments/...} and acknowledges.
+ * <p>
+ * Use in unit tests and load tests: {@code jdbc:mytrino://localhost:<port>/} with any user.
+ */
+final class MockTrinoCoordinator implements AutoCloseable {
+
+    static {
+        // Headers and body are written separately; without TCP_NODELAY every response waits for a delayed ACK.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, String> queries = new ConcurrentHashMap<>();
+    private final List<String> statements = new CopyOnWriteArrayList<>();
+    private final List<Map<String, List<String>>> statementHeaders = new CopyOnWriteArrayList<>();
+    private final AtomicInteger queryIds = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger peakRunning = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    private final Set<String> spooledQueries = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger segmentRequests = new AtomicInteger();
+    private final AtomicInteger runningSegments = new AtomicInteger();
+    private final AtomicInteger peakSegments = new AtomicInteger();
+    private final AtomicInteger acknowledged = new AtomicInteger();
+
+    private volatile int rowsPerPage = 10;
+    private volatile int pages = 1;
+    private volatile long latencyMillis;
+    private volatile int queuedPolls;
+    private volatile int segmentsPerPage;
+    private volatile long segmentLatencyMillis;
+
+    MockTrinoCoordinator() throws IOException {
+        this(16);
+    }
+
+    MockTrinoCoordinator(int httpThreads) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 512);
+        this.executor = Executors.newFixedThreadPool(httpThreads, r -> {
+            Thread t = new Thread(r, "mock-trino-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v1/info", exchange -> respond(exchange, 200,
+                "{\"nodeVersion\":{\"version\":\"478\"},\"environment\":\"mock\",\"coordinator\":true,\"starting\":false}"));
+        server.createContext("/v1/statement", this::handleStatement);
+        server.createContext("/v1/spooled", this::handleSegment);
+        server.start();
+    }
+
+    MockTrinoCoordinator rowsPerPage(int rowsPerPage) {
+        this.rowsPerPage = rowsPerPage;
+        return this;
+    }
+
+    MockTrinoCoordinator pages(int pages) {
+        this.pages = pages;
+        return this;
+    }
+
+    /** Delay added to every HTTP response (simulates network and coordinator latency). */
+    MockTrinoCoordinator latencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /** Number of polls each query reports QUEUED (no data) before its first page. */
+    MockTrinoCoordinator queuedPolls(int queuedPolls) {
+        this.queuedPolls = queuedPolls;
+        return this;
+    }
+
+    /** Pages of queries that request an encoding are returned as this many spooled segments; 0 returns rows inline. */
+    MockTrinoCoordinator spooledSegments(int segmentsPerPage) {
+        this.segmentsPerPage = segmentsPerPage;
+        return this;
+    }
+
+    /** Delay added to every segment download. */
+    MockTrinoCoordinator segmentLatencyMillis(long segmentLatencyMillis) {
+        this.segmentLatencyMillis = segmentLatencyMillis;
+        return this;
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    String getAddress() {
+        return "localhost:" + getPort();
+    }
+
+    /** {@code jdbc:mytrino://localhost:<port>/} */
+    String jdbcUrl() {
+        return MyTrinoDriver.URL_PREFIX + "//" + getAddress() + "/";
+    }
+
+    /** SQL text of every submitted statement, in arrival order. */
+    List<String> getStatements() {
+        return statements;
+    }
+
+    /** Request headers of every submitted statement (same order as {@link #getStatements()}). */
+    List<Map<String, List<String>>> getStatementHeaders() {
+        return statementHeaders;
+    }
+
+    long getRequestCount() {
+        return requests.get();
+    }
+
+    /** Highest number of queries that were running at the same time. */
+    int getPeakRunningQueries() {
+        return peakRunning.get();
+    }
+
+    /** Number of queries the client cancelled (DELETE before the last page). */
+    int getCancelledQueries() {
+        return cancelled.get();
+    }
+
+    /** Number of spooled segment downloads. */
+    int getSegmentRequests() {
+        return segmentRequests.get();
+    }
+
+    /** Highest number of segment downloads in progress at the same time. */
+    int getPeakSegmentDownloads() {
+        return peakSegments.get();
+    }
+
+    /** Number of segment acknowledgements. */
+    int getAcknowledgedSegments() {
+        return acknowledged.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleStatement(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            sleep();
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            if ("POST".equals(method) && path.equals("/v1/statement")) {
+                String sql;
+                try (InputStream in = exchange.getRequestBody()) {
+                    sql = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+                statements.add(sql);
+                statementHeaders.add(Map.copyOf(exchange.getRequestHeaders()));
+                String id = "mock_" + queryIds.incrementAndGet();
+                queries.put(id, sql);
+                String encoding = exchange.getRequestHeaders().getFirst("X-Trino-Query-Data-Encoding");
+                if (segmentsPerPage > 0 && encoding != null && encoding.contains("json")) {
+                    spooledQueries.add(id);
+                }
+                peakRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                respond(exchange, 200, page(id, 0));
+                return;
+            }
+            // /v1/statement/executing/{id}/{token}
+            String[] parts = path.split("/");
+            String id = parts.length >= 5 ? parts[4] : "";
+            if ("DELETE".equals(method)) {
+                if (queries.containsKey(id)) cancelled.incrementAndGet();
+                spooledQueries.remove(id);
+                finish(id);
+                respond(exchange, 204, null);
+                return;
+            }
+            if (!queries.containsKey(id) || parts.length < 6) {
+                respond(exchange, 404, "{}");
+                return;
+            }
+            respond(exchange, 200, page(id, Integer.parseInt(parts[5])));
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "{}");
+        }
+    }
+
+    private String page(String id, int token) {
+        String base = "http://" + getAddress();
+        StringBuilder json = new StringBuilder(256 + rowsPerPage * 32);
+        json.append("{\"id\":\"").append(id).append("\",\"infoUri\":\"").append(base).append("/ui/query.html?").append(id).append('"');
+        int dataPage = token - queuedPolls;
+        boolean queued = dataPage < 0;
+        boolean last = !queued && dataPage >= pages - 1;
+        if (!last) {
+            json.append(",\"nextUri\":\"").append(base).append("/v1/statement/executing/").append(id).append('/').append(token + 1).append('"');
+        }
+        if (!queued) {
+            json.append(",\"columns\":[")
+                    .append("{\"name\":\"id\",\"type\":\"bigint\",\"typeSignature\":{\"rawType\":\"bigint\",\"arguments\":[]}},")
+                    .append("{\"name\":\"name\",\"type\":\"varchar\",\"typeSignature\":{\"rawType\":\"varchar\",\"arguments\":[")
+                    .append("{\"kind\":\"LONG\",\"value\":2147483647}]}}]");
+            long first = (long) dataPage * rowsPerPage;
+            if (pages > 0 && spooledQueries.contains(id)) {
+                json.append(",\"data\":{\"encoding\":\"json\",\"segments\":[");
+                int segments = Math.min(segmentsPerPage, rowsPerPage);
+                for (int s = 0; s < segments; s++) {
+                    long from = first + (long) rowsPerPage * s / segments;
+                    long to = first + (long) rowsPerPage * (s + 1) / segments;
+                    if (s > 0) json.append(',');
+                    String segment = from + "/" + (to - from);
+                    json.append("{\"type\":\"spooled\",\"uri\":\"").append(base).append("/v1/spooled/segments/").append(segment)
+                            .append("\",\"ackUri\":\"").append(base).append("/v1/spooled/ack/").append(segment)
+                            .append("\",\"metadata\":{\"rowOffset\":").append(from).append(",\"rowsCount\":").append(to - from)
+                            .append(",\"segmentSize\":").append(rows(from, to - from).length()).append("}}");
+                }
+                json.append("]}");
+            } else if (pages > 0) {
+                json.append(",\"data\":").append(rows(first, rowsPerPage));
+            }
+        }
+        String state = queued ? "QUEUED" : last ? "FINISHED" : "RUNNING";
+        json.append(",\"stats\":{\"state\":\"").append(state).append("\",\"queued\":").append(queued)
+                .append(",\"scheduled\":").append(!queued)
+                .append(",\"nodes\":1,\"totalSplits\":1,\"queuedSplits\":0,\"runningSplits\":0,\"completedSplits\":1")
+                .append(",\"cpuTimeMillis\":0,\"wallTimeMillis\":0,\"queuedTimeMillis\":0,\"elapsedTimeMillis\":0")
+                .append(",\"processedRows\":").append(Math.max(0, dataPage + 1) * (long) rowsPerPage)
+                .append(",\"processedBytes\":0,\"physicalInputBytes\":0,\"peakMemoryBytes\":0,\"spilledBytes\":0}")
+                .append(",\"warnings\":[]}");
+        if (last) {
+            spooledQueries.remove(id);
+            finish(id);
+        }
+        return json.toString();
+    }
+
+    /** {@code [[first,"name-first"],...]} */
+    private static String rows(long first, long count) {
+        StringBuilder json = new StringBuilder(2 + (int) count * 32).append('[');
+        for (long row = first; row < first + count; row++) {
+            if (row > first) json.append(',');
+            json.append('[').append(row).append(",\"name-").append(row).append("\"]");
+        }
+        return json.append(']').toString();
+    }
+
+    /** {@code GET /v1/spooled/segments/{firstRow}/{rows}} and {@code GET /v1/spooled/ack/{firstRow}/{rows}} */
+    private void handleSegment(HttpExchange exchange) throws IOException {
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        try {
+            if (parts.length == 6 && "ack".equals(parts[3])) {
+                acknowledged.incrementAndGet();
+                respond(exchange, 200, "{}");
+                return;
+            }
+            if (parts.length != 6 || !"segments".equals(parts[3])) {
+                respond(exchange, 404, "{}");
+                return;
+            }
+            segmentRequests.incrementAndGet();
+            peakSegments.accumulateAndGet(runningSegments.incrementAndGet(), Math::max);
+            try {
+                long delay = segmentLatencyMillis;
+                if (delay > 0) TimeUnit.MILLISECONDS.sleep(delay);
+                respond(exchange, 200, rows(Long.parseLong(parts[4]), Long.parseLong(parts[5])));
+            } finally {
+                runningSegments.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 500, "{}");
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "{}");
+        }
+    }
+
+    private void finish(String id) {
+        if (queries.remove(id) != null) {
+            running.decrementAndGet();
+        }
+    }
+
+    private void sleep() {
+        long delay = latencyMillis;
+        if (delay <= 0) return;
+        try {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
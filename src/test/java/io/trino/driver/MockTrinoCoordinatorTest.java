@@ -0,0 +1,132 @@
+package io.trino.driver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the full driver (rewrite, proxies, Trino client) against the in-process {@link MockTrinoCoordinator}.
+ */
+class MockTrinoCoordinatorTest {
+
+    private MockTrinoCoordinator coordinator;
+    private final MyTrinoDriver driver = new MyTrinoDriver();
+
+    @BeforeEach
+    void start() throws Exception {
+        coordinator = new MockTrinoCoordinator();
+    }
+
+    @AfterEach
+    void stop() {
+        coordinator.close();
+    }
+
+    @Test
+    void executeQuery_readsAllPages() throws SQLException {
+        coordinator.pages(3).rowsPerPage(5);
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props());
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+            int rows = 0;
+            while (rs.next()) {
+                assertEquals(rows, rs.getLong("id"));
+                assertEquals("name-" + rows, rs.getString("name"));
+                rows++;
+            }
+            assertEquals(15, rows);
+        }
+    }
+
+    @Test
+    void executeQuery_waitsThroughQueuedPolls() throws SQLException {
+        coordinator.queuedPolls(2).pages(1).rowsPerPage(1);
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props());
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1")) {
+            assertTrue(rs.next());
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    void executeQuery_serverReceivesRewrittenSql() throws SQLException {
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props());
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT {fn UCASE(name)} FROM t WHERE d = {d '2024-01-01'}")) {
+            assertTrue(rs.next());
+        }
+        String received = coordinator.getStatements().get(0);
+        assertFalse(received.contains("{"), received);
+        assertTrue(received.contains("DATE '2024-01-01'"), received);
+    }
+
+    @Test
+    void preparedStatement_executesRewrittenSql() throws SQLException {
+        coordinator.rowsPerPage(2);
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props());
+             PreparedStatement ps = conn.prepareStatement("SELECT id, name FROM t WHERE ts > {ts '2024-01-01 00:00:00'}");
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            assertTrue(rs.next());
+            assertFalse(rs.next());
+        }
+        assertTrue(coordinator.getStatements().stream().anyMatch(sql -> sql.contains("TIMESTAMP '2024-01-01 00:00:00'")));
+    }
+
+    @Test
+    void setMaxRows_pushedIntoSelectAsLimit() throws SQLException {
+        coordinator.rowsPerPage(3);
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props());
+             Statement stmt = conn.createStatement()) {
+            stmt.setMaxRows(2);
+            try (ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+                assertTrue(rs.next());
+                assertTrue(rs.next());
+                assertFalse(rs.next());
+            }
+            stmt.setLargeMaxRows(0);
+            stmt.executeQuery("SELECT id FROM t").close();
+        }
+        assertEquals("SELECT id, name FROM t LIMIT 2", coordinator.getStatements().get(0));
+        assertEquals("SELECT id FROM t", coordinator.getStatements().get(1));
+    }
+
+    @Test
+    void executeQuery_wrappedDateColumns_rewrittenOnlyWhenOptedIn() throws SQLException {
+        // name is varchar and created_at a timestamp with time zone: neither can become a range on the bare column
+        String varchar = "SELECT id, name FROM t WHERE CAST(name AS DATE) = DATE '2024-01-01'";
+        String withTimeZone = "SELECT id, name FROM t WHERE CAST(created_at AS DATE) = DATE '2024-01-01'";
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props());
+             Statement stmt = conn.createStatement()) {
+            stmt.executeQuery(varchar).close();
+            stmt.executeQuery(withTimeZone).close();
+        }
+        assertEquals(varchar, coordinator.getStatements().get(0));
+        assertEquals(withTimeZone, coordinator.getStatements().get(1));
+
+        Properties props = props();
+        props.setProperty(DriverConfig.PROP_SARGABLE_DATES, "true");
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeQuery("SELECT id, name FROM t WHERE CAST(d AS DATE) = DATE '2024-01-01'").close();
+        }
+        assertEquals("SELECT id, name FROM t WHERE d >= DATE '2024-01-01' AND d < DATE '2024-01-02'",
+                coordinator.getStatements().get(2));
+    }
+
+    private static Properties props() {
+        Properties props = new Properties();
+        props.setProperty("user", "test");
+        return props;
+    }
+}
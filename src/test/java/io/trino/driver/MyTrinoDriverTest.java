@@ -2,7 +2,9 @@ package io.trino.driver;
 
 import org.junit.jupiter.api.Test;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -41,4 +43,15 @@ class MyTrinoDriverTest {
     void connect_unacceptedUrl_returnsNull() throws SQLException {
         assertNull(driver.connect("jdbc:mysql://localhost:3306/", null));
     }
+
+    @Test
+    void connect_driverOnlyPropertiesNotForwardedToTrino() throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("user", "test");
+        props.setProperty(DriverConfig.PROP_METADATA_CACHE_TTL_SECONDS, "30");
+        // Trino creates the connection lazily, so no server is needed; it would reject unknown properties.
+        try (Connection conn = driver.connect("jdbc:mytrino://localhost:1/?metadataCacheMaxEntries=10", props)) {
+            assertNotNull(conn);
+        }
+    }
 }
@@ -0,0 +1,353 @@
+package io.trino.driver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads back the Parquet files written by {@link ParquetEncoder}, independently of it: the Thrift compact
+ * {@code FileMetaData} footer is parsed field by field, then every column chunk of every row group is read from its
+ * offset as one v1 data page (header, optional GZIP, RLE/bit-packed definition levels, PLAIN values).
+ * <p>
+ * The layout is asserted on the way: magic and footer framing, {@code num_rows} of the file and of each row group,
+ * column chunk offsets, page and chunk sizes, value counts, and that every page is consumed exactly. Values come back
+ * as Java objects of their annotated type: {@code Boolean}, {@code Integer}, {@code Long}, {@code Float},
+ * {@code Double}, {@code String} (UTF8), {@code LocalDate} (DATE), {@code BigDecimal} (DECIMAL),
+ * {@code LocalDateTime} (TIMESTAMP micros) or {@code byte[]}; nulls are null.
+ */
+final class ParquetDecoder {
+
+    private static final int CODEC_UNCOMPRESSED = 0;
+    private static final int CODEC_GZIP = 2;
+    private static final int CONVERTED_UTF8 = 0;
+    private static final int CONVERTED_DECIMAL = 5;
+    private static final int CONVERTED_DATE = 6;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Object[]> rows = new ArrayList<>();
+    private int rowGroups;
+
+    private ParquetDecoder() {
+    }
+
+    /** Decodes a whole file. */
+    static ParquetDecoder read(byte[] file) {
+        ParquetDecoder decoder = new ParquetDecoder();
+        decoder.decode(file);
+        return decoder;
+    }
+
+    /** Column names of the schema, in order. */
+    List<String> getNames() {
+        return names;
+    }
+
+    /** Rows of all row groups, in file order. */
+    List<Object[]> getRows() {
+        return rows;
+    }
+
+    int getRowGroupCount() {
+        return rowGroups;
+    }
+
+    private void decode(byte[] file) {
+        int n = file.length;
+        assertEquals("PAR1", new String(file, 0, 4, StandardCharsets.US_ASCII));
+        assertEquals("PAR1", new String(file, n - 4, 4, StandardCharsets.US_ASCII));
+        int length = ByteBuffer.wrap(file, n - 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        assertTrue(length > 0 && length <= n - 12, "footer length " + length);
+        ThriftReader footer = new ThriftReader(file, n - 8 - length);
+        Map<Integer, Object> meta = footer.struct();
+        assertEquals(n - 8, footer.position(), "footer not consumed exactly");
+
+        List<Map<Integer, Object>> schema = structs(meta.get(2));
+        Map<Integer, Object> root = schema.get(0);
+        int columns = (int) i64(root, 5);
+        assertEquals(schema.size() - 1, columns, "root num_children");
+        for (int c = 0; c < columns; c++) {
+            names.add(string(schema.get(c + 1).get(4)));
+        }
+        long total = 0;
+        long expectedOffset = 4;
+        for (Map<Integer, Object> group : structs(meta.get(4))) {
+            long groupRows = i64(group, 3);
+            List<Map<Integer, Object>> chunks = structs(group.get(1));
+            assertEquals(columns, chunks.size(), "column chunks");
+            assertEquals(expectedOffset, i64(group, 5), "row group file_offset");
+            Object[][] values = new Object[(int) groupRows][columns];
+            long uncompressed = 0;
+            long compressed = 0;
+            for (int c = 0; c < columns; c++) {
+                Map<Integer, Object> chunk = chunks.get(c);
+                Map<Integer, Object> column = struct(chunk.get(3));
+                Map<Integer, Object> element = schema.get(c + 1);
+                assertEquals(i64(element, 1), i64(column, 1), "column type");
+                assertEquals(names.get(c), string(column.get(3)), "path_in_schema");
+                long offset = i64(column, 9);
+                assertEquals(i64(chunk, 2), offset, "column chunk file_offset");
+                assertEquals(expectedOffset, offset, "column chunk offset");
+                assertEquals(groupRows, i64(column, 5), "column num_values");
+                long chunkSize = readPage(file, (int) offset, (int) i64(column, 4), element, column, values, c);
+                assertEquals(i64(column, 7), chunkSize, "total_compressed_size");
+                expectedOffset += chunkSize;
+                uncompressed += i64(column, 6);
+                compressed += chunkSize;
+            }
+            assertEquals(uncompressed, i64(group, 2), "row group total_byte_size");
+            assertEquals(compressed, i64(group, 6), "row group total_compressed_size");
+            rows.addAll(List.of(values));
+            total += groupRows;
+            rowGroups++;
+        }
+        assertEquals(n - 8 - length, expectedOffset, "pages must be followed by the footer");
+        assertEquals(total, i64(meta, 3), "file num_rows");
+    }
+
+    /** Decodes the single page of a column chunk into column {@code c} of {@code values}; returns the chunk size. */
+    private static long readPage(byte[] file, int offset, int codec, Map<Integer, Object> element,
+                                 Map<Integer, Object> column, Object[][] values, int c) {
+        ThriftReader reader = new ThriftReader(file, offset);
+        Map<Integer, Object> header = reader.struct();
+        int headerLength = reader.position() - offset;
+        assertEquals(0L, i64(header, 1), "page type DATA_PAGE");
+        int uncompressedSize = (int) i64(header, 2);
+        int compressedSize = (int) i64(header, 3);
+        Map<Integer, Object> dataPage = struct(header.get(5));
+        assertEquals(values.length, i64(dataPage, 1), "page num_values");
+        assertEquals(0L, i64(dataPage, 2), "PLAIN values");
+        assertEquals(3L, i64(dataPage, 3), "RLE definition levels");
+        assertEquals(headerLength + uncompressedSize, i64(column, 6), "total_uncompressed_size");
+
+        byte[] stored = Arrays.copyOfRange(file, reader.position(), reader.position() + compressedSize);
+        byte[] body;
+        if (codec == CODEC_GZIP) {
+            body = gunzip(stored);
+        } else {
+            assertEquals(CODEC_UNCOMPRESSED, codec, "codec");
+            body = stored;
+        }
+        assertEquals(uncompressedSize, body.length, "uncompressed_page_size");
+
+        ByteBuffer page = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+        int levelsLength = page.getInt();
+        int levelsEnd = page.position() + levelsLength;
+        boolean[] defined = definitionLevels(page, values.length);
+        assertEquals(levelsEnd, page.position(), "definition levels length");
+        int physical = (int) i64(element, 1);
+        int bit = 0;
+        int bits = 0;
+        for (int r = 0; r < values.length; r++) {
+            if (!defined[r]) continue;
+            Object value;
+            switch (physical) {
+                case 0:
+                    if (bit == 0) bits = page.get();
+                    value = (bits >>> bit & 1) == 1;
+                    bit = (bit + 1) % 8;
+                    break;
+                case 1:
+                    value = page.getInt();
+                    break;
+                case 2:
+                    value = page.getLong();
+                    break;
+                case 4:
+                    value = page.getFloat();
+                    break;
+                case 5:
+                    value = page.getDouble();
+                    break;
+                case 6:
+                    byte[] bytes = new byte[page.getInt()];
+                    page.get(bytes);
+                    value = bytes;
+                    break;
+                default:
+                    throw new AssertionError("physical type " + physical);
+            }
+            values[r][c] = annotated(element, value);
+        }
+        assertFalse(page.hasRemaining(), "page not consumed exactly");
+        return headerLength + compressedSize;
+    }
+
+    /** RLE/bit-packed hybrid runs of bit width 1. */
+    private static boolean[] definitionLevels(ByteBuffer page, int count) {
+        boolean[] defined = new boolean[count];
+        int r = 0;
+        while (r < count) {
+            long header = varint(page);
+            if ((header & 1) == 1) {
+                int groups = (int) (header >>> 1);
+                for (int g = 0; g < groups; g++) {
+                    int bits = page.get();
+                    for (int b = 0; b < 8; b++, r++) {
+                        if (r < count) defined[r] = (bits >>> b & 1) == 1;
+                    }
+                }
+            } else {
+                int run = (int) (header >>> 1);
+                boolean level = page.get() == 1;
+                for (int i = 0; i < run; i++) {
+                    defined[r++] = level;
+                }
+            }
+        }
+        return defined;
+    }
+
+    private static Object annotated(Map<Integer, Object> element, Object value) {
+        Object converted = element.get(6);
+        Map<Integer, Object> logical = element.containsKey(10) ? struct(element.get(10)) : Map.of();
+        if (converted == null) {
+            if (logical.containsKey(8)) {
+                long micros = (Long) value;
+                return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                        (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+            }
+            return value;
+        }
+        switch ((int) (long) (Long) converted) {
+            case CONVERTED_UTF8:
+                assertTrue(logical.containsKey(1), "STRING logical type");
+                return new String((byte[]) value, StandardCharsets.UTF_8);
+            case CONVERTED_DATE:
+                assertTrue(logical.containsKey(6), "DATE logical type");
+                return LocalDate.ofEpochDay((Integer) value);
+            case CONVERTED_DECIMAL:
+                assertTrue(logical.containsKey(5), "DECIMAL logical type");
+                return new BigDecimal(BigInteger.valueOf((Long) value), (int) i64(element, 7));
+            default:
+                throw new AssertionError("converted type " + converted);
+        }
+    }
+
+    private static byte[] gunzip(byte[] stored) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(stored))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long varint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    private static long i64(Map<Integer, Object> struct, int id) {
+        Object value = struct.get(id);
+        assertNotNull(value, "missing field " + id + " in " + struct);
+        return (Long) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, Object> struct(Object value) {
+        assertNotNull(value, "missing struct");
+        return (Map<Integer, Object>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<Integer, Object>> structs(Object value) {
+        assertNotNull(value, "missing list");
+        return (List<Map<Integer, Object>>) value;
+    }
+
+    /** A binary field, or the only element of a list of binaries (a column's {@code path_in_schema}). */
+    private static String string(Object value) {
+        if (value instanceof List<?> list) {
+            assertEquals(1, list.size(), "path_in_schema");
+            value = list.get(0);
+        }
+        return value == null ? null : new String((byte[]) value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reader of the Thrift compact protocol into maps of field id to value: integers as {@code Long}, binaries as
+     * {@code byte[]}, booleans, lists and nested structs.
+     */
+    private static final class ThriftReader {
+        private final ByteBuffer in;
+
+        ThriftReader(byte[] bytes, int offset) {
+            this.in = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            in.position(offset);
+        }
+
+        int position() {
+            return in.position();
+        }
+
+        Map<Integer, Object> struct() {
+            Map<Integer, Object> fields = new HashMap<>();
+            int lastId = 0;
+            while (true) {
+                int b = in.get() & 0xFF;
+                if (b == 0) return fields;
+                int type = b & 0x0F;
+                int delta = b >>> 4;
+                int id = delta != 0 ? lastId + delta : (int) unzigzag(varint(in));
+                Object value = type == 1 || type == 2 ? Boolean.valueOf(type == 1) : value(type);
+                assertNull(fields.put(id, value), "duplicate field " + id);
+                lastId = id;
+            }
+        }
+
+        private Object value(int type) {
+            switch (type) {
+                case 3:
+                    return (long) in.get();
+                case 4:
+                case 5:
+                case 6:
+                    return unzigzag(varint(in));
+                case 7:
+                    return in.getDouble();
+                case 8:
+                    byte[] bytes = new byte[(int) varint(in)];
+                    in.get(bytes);
+                    return bytes;
+                case 9:
+                case 10:
+                    int header = in.get() & 0xFF;
+                    int size = header >>> 4 == 15 ? (int) varint(in) : header >>> 4;
+                    int elementType = header & 0x0F;
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(elementType == 1 || elementType == 2 ? Boolean.valueOf(in.get() == 1)
+                                : value(elementType));
+                    }
+                    return list;
+                case 12:
+                    return struct();
+                default:
+                    throw new AssertionError("Thrift type " + type);
+            }
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
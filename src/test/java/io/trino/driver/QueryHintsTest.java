@@ -0,0 +1,266 @@
+package io.trino.driver;
+
+import io.trino.jdbc.TrinoConnection;
+import io.trino.jdbc.TrinoDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryHintsTest {
+
+    private MockTrinoCoordinator coordinator;
+    private final MyTrinoDriver driver = new MyTrinoDriver();
+
+    @BeforeEach
+    void start() throws Exception {
+        coordinator = new MockTrinoCoordinator();
+    }
+
+    @AfterEach
+    void stop() {
+        coordinator.close();
+    }
+
+    @Test
+    void parse_noHint_returnsSqlUnchanged() {
+        QueryHints hints = QueryHints.parse("SELECT /* plain comment */ 1");
+        assertTrue(hints.isEmpty());
+        assertEquals("SELECT /* plain comment */ 1", hints.getSql());
+    }
+
+    @Test
+    void parse_sessionHint_stripsCommentAndReturnsProperties() {
+        QueryHints hints = QueryHints.parse(
+                "/*+ session(join_distribution_type=BROADCAST, mysql.domain_compaction_threshold='10') */ SELECT * FROM t");
+        assertEquals("SELECT * FROM t", hints.getSql());
+        assertEquals(Map.of("join_distribution_type", "BROADCAST", "mysql.domain_compaction_threshold", "10"),
+                hints.getSessionProperties());
+    }
+
+    @Test
+    void parse_quotedValueWithComma_keptWhole() {
+        QueryHints hints = QueryHints.parse("SELECT 1 /*+ SESSION(query_tags='a,b') session(task_concurrency=4) */");
+        assertEquals("SELECT 1", hints.getSql());
+        assertEquals("a,b", hints.getSessionProperties().get("query_tags"));
+        assertEquals("4", hints.getSessionProperties().get("task_concurrency"));
+    }
+
+    @Test
+    void parse_unknownOrInvalidHint_leftInPlace() {
+        String other = "SELECT /*+ BROADCAST(t) */ * FROM t";
+        assertEquals(other, QueryHints.parse(other).getSql());
+        assertTrue(QueryHints.parse(other).isEmpty());
+        String invalid = "SELECT /*+ session(bad name=1) */ * FROM t";
+        assertEquals(invalid, QueryHints.parse(invalid).getSql());
+    }
+
+    @Test
+    void parse_hintInsideLiteralIdentifierOrComment_leftInPlace() {
+        for (String sql : new String[]{
+                "SELECT '/*+ session(task_concurrency=1) */'",
+                "SELECT 'it''s /*+ session(task_concurrency=1) */' FROM t",
+                "SELECT \"/*+ session(task_concurrency=1) */\" FROM t",
+                "SELECT 1 -- /*+ session(task_concurrency=1) */",
+                "SELECT /* see /*+ session(task_concurrency=1) */ 1"}) {
+            QueryHints hints = QueryHints.parse(sql);
+            assertEquals(sql, hints.getSql());
+            assertTrue(hints.isEmpty(), sql);
+        }
+        QueryHints hints = QueryHints.parse("SELECT 'a''/*' /*+ session(task_concurrency=1) */ FROM t");
+        assertEquals("SELECT 'a''/*'   FROM t", hints.getSql());
+        assertEquals(Map.of("task_concurrency", "1"), hints.getSessionProperties());
+    }
+
+    @Test
+    void parse_approximateHint_argumentsAndSessionKeptApart() {
+        QueryHints hints = QueryHints.parse(
+                "/*+ approximate(sample_ratio=10), session(task_concurrency=4) */ SELECT count(DISTINCT a) FROM t");
+        assertEquals("SELECT count(DISTINCT a) FROM t", hints.getSql());
+        assertEquals(Map.of("task_concurrency", "4"), hints.getSessionProperties());
+        assertEquals(Map.of("enabled", "true", "sample_ratio", "10"), hints.getApproximate());
+        assertNull(QueryHints.parse("SELECT 1").getApproximate());
+        String invalid = "SELECT /*+ approximate(accuracy=1) */ 1";
+        assertEquals(invalid, QueryHints.parse(invalid).getSql());
+    }
+
+    @Test
+    void executeQuery_approximateHint_rewritesAndReportsWarnings() throws SQLException {
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props());
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("/*+ approximate() */ SELECT count(DISTINCT id) FROM t")) {
+                assertTrue(rs.next());
+            }
+            SQLWarning warning = stmt.getWarnings();
+            assertNotNull(warning);
+            assertTrue(warning.getMessage().contains("approx_distinct(id)"), warning.getMessage());
+            assertNull(warning.getNextWarning());
+            stmt.clearWarnings();
+            assertNull(stmt.getWarnings());
+            try (ResultSet rs = stmt.executeQuery("SELECT count(DISTINCT id) FROM t")) {
+                assertTrue(rs.next());
+            }
+            assertNull(stmt.getWarnings());
+        }
+        assertEquals("SELECT approx_distinct(id) FROM t", coordinator.getStatements().get(0));
+        assertEquals("SELECT count(DISTINCT id) FROM t", coordinator.getStatements().get(1));
+    }
+
+    @Test
+    void preparedStatement_approximateConnection_hintCanOptOut() throws SQLException {
+        Properties props = props();
+        props.setProperty(DriverConfig.PROP_APPROXIMATE, "true");
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props)) {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT median(id) FROM t");
+                 ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                assertNotNull(ps.getWarnings());
+            }
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("/*+ approximate(enabled=false) */ SELECT median(id) FROM t")) {
+                assertTrue(rs.next());
+                assertNull(stmt.getWarnings());
+            }
+        }
+        List<String> statements = coordinator.getStatements();
+        assertTrue(statements.stream().anyMatch(sql -> sql.contains("approx_percentile(id, 0.5)")), statements.toString());
+        assertEquals("SELECT median(id) FROM t", statements.get(statements.size() - 1));
+    }
+
+    @Test
+    void executeQuery_sessionHint_sentForThatQueryOnly() throws SQLException {
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props());
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("/*+ session(join_distribution_type=BROADCAST) */ SELECT id FROM t")) {
+                assertTrue(rs.next());
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                assertTrue(rs.next());
+            }
+        }
+        assertEquals("SELECT id FROM t", coordinator.getStatements().get(0));
+        assertTrue(sessionHeader(0).contains("join_distribution_type=BROADCAST"), sessionHeader(0));
+        assertFalse(sessionHeader(1).contains("join_distribution_type"), sessionHeader(1));
+    }
+
+    @Test
+    void executeQuery_sessionHint_restoresConnectionValue() throws SQLException {
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props())) {
+            conn.unwrap(TrinoConnection.class).setSessionProperty("task_concurrency", "8");
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT 1 /*+ session(task_concurrency=2) */")) {
+                assertTrue(rs.next());
+            }
+            try (PreparedStatement ps = conn.prepareStatement("SELECT 2");
+                 ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+            }
+        }
+        assertTrue(sessionHeader(0).contains("task_concurrency=2"), sessionHeader(0));
+        assertTrue(sessionHeader(1).contains("task_concurrency=8"), sessionHeader(1));
+    }
+
+    @Test
+    void execute_concurrentStatements_neitherWaitForNorSeeHints() throws Exception {
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props());
+             Statement plain = conn.createStatement();
+             Statement hinted = conn.createStatement()) {
+            QueryHints outer = QueryHints.parse("/*+ session(task_concurrency=2) */ SELECT 1");
+            outer.execute(conn.unwrap(TrinoConnection.class), () -> {
+                // While this thread is inside its hint, another thread submits on the same connection
+                CompletableFuture<Void> other = CompletableFuture.runAsync(() -> {
+                    try {
+                        plain.executeQuery("SELECT 2").close();
+                        hinted.executeQuery("/*+ session(query_max_run_time='1h') */ SELECT 3").close();
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                try {
+                    other.get(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new SQLException("Concurrent statements failed or waited for the hint", e);
+                }
+                return plain.executeQuery("SELECT 1");
+            }).close();
+        }
+        assertFalse(sessionHeader(0).contains("task_concurrency"), sessionHeader(0));
+        assertTrue(sessionHeader(1).contains("query_max_run_time=1h"), sessionHeader(1));
+        assertFalse(sessionHeader(1).contains("task_concurrency"), sessionHeader(1));
+        assertTrue(sessionHeader(2).contains("task_concurrency=2"), sessionHeader(2));
+        assertFalse(sessionHeader(2).contains("query_max_run_time"), sessionHeader(2));
+    }
+
+    @Test
+    void preparedStatement_sessionHint_appliedOnEveryExecution() throws SQLException {
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props());
+             PreparedStatement ps = conn.prepareStatement("/*+ session(task_concurrency=4) */ SELECT id FROM t")) {
+            for (int i = 0; i < 2; i++) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    assertTrue(rs.next());
+                }
+            }
+        }
+        List<String> statements = coordinator.getStatements();
+        for (int i = 0; i < statements.size(); i++) {
+            if (statements.get(i).startsWith("EXECUTE")) {
+                assertTrue(sessionHeader(i).contains("task_concurrency=4"), sessionHeader(i));
+            }
+        }
+        assertTrue(statements.stream().noneMatch(sql -> sql.contains("/*+")), statements.toString());
+    }
+
+    @Test
+    void overrides_connectionFieldMissing_failsInsteadOfDroppingHints() throws SQLException {
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props())) {
+            SQLFeatureNotSupportedException e = assertThrows(SQLFeatureNotSupportedException.class,
+                    () -> QueryHints.overrides(conn, null, "sessionProperties"));
+            assertTrue(e.getMessage().contains("TrinoConnection.sessionProperties"), e.getMessage());
+        }
+    }
+
+    /**
+     * Session hints and workload classes replace these private fields of {@link TrinoConnection} (see
+     * {@link QueryHints#withOverrides}). When upgrading trino-jdbc, check that they still exist with these types and
+     * are copied on the submitting thread, then update the pinned version.
+     */
+    @Test
+    void trinoConnection_overriddenFields_matchPinnedTrinoJdbcVersion() throws Exception {
+        assertEquals(478, new TrinoDriver().getMajorVersion(), "trino-jdbc version changed");
+        assertConnectionField("sessionProperties", "java.util.Map<java.lang.String, java.lang.String>");
+        assertConnectionField("clientInfo", "java.util.Map<io.trino.jdbc.ClientInfoProperty, java.lang.String>");
+    }
+
+    private static void assertConnectionField(String name, String type) throws NoSuchFieldException {
+        Field field = TrinoConnection.class.getDeclaredField(name);
+        assertFalse(Modifier.isStatic(field.getModifiers()), name);
+        assertEquals(type, field.getGenericType().getTypeName(), name);
+    }
+
+    private String sessionHeader(int statement) {
+        List<String> values = coordinator.getStatementHeaders().get(statement).get("X-trino-session");
+        return values == null ? "" : String.join(",", values);
+    }
+
+    private static Properties props() {
+        Properties props = new Properties();
+        props.setProperty("user", "test");
+        return props;
+    }
+}
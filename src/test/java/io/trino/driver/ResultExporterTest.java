@@ -0,0 +1,262 @@
+package io.trino.driver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.rowset.RowSetMetaDataImpl;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultExporterTest {
+
+    @TempDir
+    Path dir;
+
+    private MockTrinoCoordinator coordinator;
+    private final MyTrinoDriver driver = new MyTrinoDriver();
+
+    @BeforeEach
+    void start() throws Exception {
+        coordinator = new MockTrinoCoordinator().pages(5).rowsPerPage(200);
+    }
+
+    @AfterEach
+    void stop() {
+        coordinator.close();
+    }
+
+    @Test
+    void export_csv_rollsFilesInResultOrder() throws Exception {
+        Properties props = props();
+        props.setProperty(DriverConfig.PROP_EXPORT_BATCH_ROWS, "100");
+        props.setProperty(DriverConfig.PROP_EXPORT_MAX_FILE_BYTES, "4000");
+        props.setProperty(DriverConfig.PROP_EXPORT_PARALLELISM, "3");
+        ExportResult result;
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+             Statement stmt = conn.createStatement()) {
+            result = stmt.unwrap(ResultExporter.class).export("SELECT id, name FROM t", dir, ResultExporter.Format.CSV);
+        }
+        assertEquals(1000, result.getRowCount());
+        assertTrue(result.getFiles().size() > 1, result.toString());
+        assertEquals(dir.resolve("part-00000.csv"), result.getFiles().get(0));
+        List<String> rows = new ArrayList<>();
+        long bytes = 0;
+        for (Path file : result.getFiles()) {
+            bytes += Files.size(file);
+            assertTrue(Files.size(file) <= 4000, file + ": " + Files.size(file));
+            List<String> lines = Files.readAllLines(file);
+            assertEquals("id,name", lines.get(0));
+            rows.addAll(lines.subList(1, lines.size()));
+        }
+        assertEquals(result.getByteCount(), bytes);
+        assertEquals(1000, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(i + ",name-" + i, rows.get(i));
+        }
+    }
+
+    @Test
+    void export_gzipCsv_readableAsOneStream() throws Exception {
+        Properties props = props();
+        props.setProperty(DriverConfig.PROP_EXPORT_BATCH_ROWS, "64");
+        props.setProperty(DriverConfig.PROP_EXPORT_COMPRESSION, "gzip");
+        ExportResult result;
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+             PreparedStatement ps = conn.prepareStatement("SELECT id, name FROM t")) {
+            result = ps.unwrap(ResultExporter.class).export(dir, ResultExporter.Format.CSV);
+        }
+        assertEquals(List.of(dir.resolve("part-00000.csv.gz")), result.getFiles());
+        String text;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(result.getFiles().get(0)))) {
+            text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String[] lines = text.split("\n");
+        assertEquals(1001, lines.length);
+        assertEquals("999,name-999", lines[1000]);
+    }
+
+    @Test
+    void export_parquet_everyFileReadsBackInResultOrder() throws Exception {
+        Properties props = props();
+        props.setProperty(DriverConfig.PROP_EXPORT_BATCH_ROWS, "250");
+        props.setProperty(DriverConfig.PROP_EXPORT_MAX_FILE_BYTES, "5000");
+        ExportResult result;
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+             Statement stmt = conn.createStatement()) {
+            result = stmt.unwrap(ResultExporter.class).export("SELECT id, name FROM t", dir, ResultExporter.Format.PARQUET);
+        }
+        assertEquals(1000, result.getRowCount());
+        assertEquals(4, result.getFiles().size(), result.toString());
+        assertRows(result.getFiles(), 1000);
+    }
+
+    @Test
+    void export_parquet_severalRowGroupsPerFile_allReadBack() throws Exception {
+        Properties props = props();
+        props.setProperty(DriverConfig.PROP_EXPORT_BATCH_ROWS, "60");
+        props.setProperty(DriverConfig.PROP_EXPORT_MAX_FILE_BYTES, "2500");
+        props.setProperty(DriverConfig.PROP_EXPORT_COMPRESSION, "gzip");
+        ExportResult result;
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+             Statement stmt = conn.createStatement()) {
+            result = stmt.unwrap(ResultExporter.class).export("SELECT id, name FROM t", dir, ResultExporter.Format.PARQUET);
+        }
+        assertTrue(result.getFiles().size() > 1, result.toString());
+        int rowGroups = 0;
+        for (Path file : result.getFiles()) {
+            rowGroups += ParquetDecoder.read(Files.readAllBytes(file)).getRowGroupCount();
+        }
+        assertTrue(rowGroups > result.getFiles().size(), rowGroups + " row groups");
+        assertRows(result.getFiles(), 1000);
+    }
+
+    @Test
+    void export_parquetTypes_nullsAndAnnotations() throws Exception {
+        RowSetMetaDataImpl meta = new RowSetMetaDataImpl();
+        int[] types = {Types.BOOLEAN, Types.INTEGER, Types.BIGINT, Types.REAL, Types.DOUBLE, Types.DATE,
+                Types.TIMESTAMP, Types.DECIMAL, Types.DECIMAL, Types.VARBINARY, Types.VARCHAR};
+        meta.setColumnCount(types.length);
+        for (int i = 0; i < types.length; i++) {
+            meta.setColumnLabel(i + 1, "c" + i);
+            meta.setColumnType(i + 1, types[i]);
+        }
+        meta.setPrecision(8, 10);
+        meta.setScale(8, 2);
+        meta.setPrecision(9, 38);
+        List<Object[]> rows = new ArrayList<>();
+        for (int r = 0; r < 20; r++) {
+            rows.add(r % 3 == 0 ? new Object[types.length] : new Object[]{r % 2 == 0, r, (long) r, r / 2f, r / 4d,
+                    Date.valueOf("2024-03-01"), Timestamp.valueOf("2024-03-01 12:30:00.123456"),
+                    new BigDecimal("12.34"), new BigDecimal("12345678901234567890.5"), new byte[]{1, 2}, "v" + r});
+        }
+        MaterializedResult result = new MaterializedResult(meta, rows);
+        DriverConfig config = DriverConfig.from(null, props(DriverConfig.PROP_EXPORT_COMPRESSION, "gzip"));
+
+        ExportResult exported = new ResultExport(config, dir, ResultExporter.Format.PARQUET).export(result::newResultSet);
+
+        assertEquals(20, exported.getRowCount());
+        ParquetDecoder file = ParquetDecoder.read(Files.readAllBytes(exported.getFiles().get(0)));
+        assertEquals(List.of("c0", "c1", "c2", "c3", "c4", "c5", "c6", "c7", "c8", "c9", "c10"), file.getNames());
+        assertEquals(20, file.getRows().size());
+        for (int r = 0; r < 20; r++) {
+            Object[] expected = r % 3 == 0 ? new Object[types.length] : new Object[]{r % 2 == 0, r, (long) r, r / 2f,
+                    r / 4d, LocalDate.of(2024, 3, 1), LocalDateTime.of(2024, 3, 1, 12, 30, 0, 123_456_000),
+                    new BigDecimal("12.34"), "12345678901234567890.5", new byte[]{1, 2}, "v" + r};
+            assertArrayEquals(expected, file.getRows().get(r), "row " + r);
+        }
+    }
+
+    @Test
+    void export_parquetDuplicateLabels_uniqueColumnNames() throws Exception {
+        RowSetMetaDataImpl meta = new RowSetMetaDataImpl();
+        meta.setColumnCount(3);
+        for (int i = 1; i <= 3; i++) {
+            meta.setColumnLabel(i, i == 3 ? "a_2" : "a");
+            meta.setColumnType(i, Types.BIGINT);
+        }
+        MaterializedResult result = new MaterializedResult(meta, List.<Object[]>of(new Object[]{1L, 2L, 3L}));
+
+        ExportResult exported = new ResultExport(DriverConfig.from(null, props()), dir, ResultExporter.Format.PARQUET)
+                .export(result::newResultSet);
+
+        ParquetDecoder file = ParquetDecoder.read(Files.readAllBytes(exported.getFiles().get(0)));
+        assertEquals(List.of("a", "a_2", "a_2_2"), file.getNames());
+        assertArrayEquals(new Object[]{1L, 2L, 3L}, file.getRows().get(0));
+    }
+
+    @Test
+    void export_existingFile_failsAndDeletesWrittenFiles() throws Exception {
+        Properties props = props();
+        props.setProperty(DriverConfig.PROP_EXPORT_BATCH_ROWS, "100");
+        props.setProperty(DriverConfig.PROP_EXPORT_MAX_FILE_BYTES, "2000");
+        Path existing = Files.writeString(dir.resolve("part-00001.csv"), "keep");
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+             Statement stmt = conn.createStatement()) {
+            ResultExporter exporter = stmt.unwrap(ResultExporter.class);
+            SQLException e = assertThrows(SQLException.class,
+                    () -> exporter.export("SELECT id, name FROM t", dir, ResultExporter.Format.CSV));
+            assertTrue(e.getMessage().contains("part-00001.csv"), e.getMessage());
+            assertThrows(SQLException.class, () -> exporter.export(dir, ResultExporter.Format.CSV));
+            assertTrue(stmt.isWrapperFor(ResultExporter.class));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(existing), files.toList());
+        }
+        assertEquals("keep", Files.readString(existing));
+    }
+
+    @Test
+    void export_moreConcurrentExportsThanPoolThreads_allComplete() throws Exception {
+        Properties props = props();
+        props.setProperty(DriverConfig.PROP_EXPORT_BATCH_ROWS, "50");
+        props.setProperty(DriverConfig.PROP_EXPORT_PARALLELISM, "2");
+        int exports = ResultExport.POOL_THREADS + 2;
+        ExecutorService pool = Executors.newFixedThreadPool(exports);
+        try {
+            List<Future<ExportResult>> results = new ArrayList<>();
+            for (int i = 0; i < exports; i++) {
+                Path target = dir.resolve("export-" + i);
+                results.add(pool.submit(() -> {
+                    try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+                         Statement stmt = conn.createStatement()) {
+                        return stmt.unwrap(ResultExporter.class).export("SELECT id, name FROM t", target,
+                                ResultExporter.Format.CSV);
+                    }
+                }));
+            }
+            for (Future<ExportResult> result : results) {
+                assertEquals(1000, result.get(60, TimeUnit.SECONDS).getRowCount());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Reads back the Parquet files of an export of the mock's {@code id, name} rows and checks every row in order. */
+    private static void assertRows(List<Path> files, int count) throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (Path file : files) {
+            ParquetDecoder decoded = ParquetDecoder.read(Files.readAllBytes(file));
+            assertEquals(List.of("id", "name"), decoded.getNames());
+            rows.addAll(decoded.getRows());
+        }
+        assertEquals(count, rows.size());
+        for (int n = 0; n < count; n++) {
+            assertArrayEquals(new Object[]{(long) n, "name-" + n}, rows.get(n), "row " + n);
+        }
+    }
+
+    private static Properties props(String... keyValues) {
+        Properties props = new Properties();
+        props.setProperty("user", "test");
+        for (int i = 0; i < keyValues.length; i += 2) {
+            props.setProperty(keyValues[i], keyValues[i + 1]);
+        }
+        return props;
+    }
+}
@@ -0,0 +1,129 @@
+package io.trino.driver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RewriteStoreTest {
+
+    private static final DriverLogging.Scope LOG = DriverLogging.Scope.inherit();
+    private static final String SQL = "SELECT {fn UCASE(name)} FROM t WHERE d = {d '2024-01-01'}";
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void reset() throws Exception {
+        RewriteStore.reset();
+    }
+
+    @Test
+    void forFile_emptyPathDisablesStore() {
+        assertNull(RewriteStore.forFile(null, 10));
+        assertNull(RewriteStore.forFile(" ", 10));
+    }
+
+    @Test
+    void rewrite_matchesParser() throws Exception {
+        RewriteStore store = load(dir.resolve("rewrites.bin"));
+        assertEquals(SqlParserLogic.parse(SQL), store.rewrite(SQL, false, LOG));
+        assertEquals(SqlParserLogic.parse(SQL), store.rewrite(SQL, false, LOG));
+    }
+
+    @Test
+    void rewrite_survivesRestart() throws Exception {
+        Path file = dir.resolve("rewrites.bin");
+        RewriteStore store = load(file);
+        store.rewrite(SQL, false, LOG);
+        store.rewrite("SELECT {ts '2024-01-01 00:00:00'}", false, LOG);
+        RewriteStore.flush();
+        RewriteStore.reset(); // simulates a new JVM
+
+        RewriteStore restarted = load(file);
+        assertEquals(2, restarted.size());
+        assertEquals(SqlParserLogic.parse(SQL), restarted.rewrite(SQL, false, LOG));
+    }
+
+    @Test
+    void rewrite_keepsRewritesOfEachOptionApart() throws Exception {
+        Path file = dir.resolve("rewrites.bin");
+        String sql = "SELECT * FROM t WHERE CAST(ts AS DATE) = DATE '2024-01-01'";
+        RewriteStore store = load(file);
+        assertEquals(sql, store.rewrite(sql, false, LOG));
+        String sargable = store.rewrite(sql, true, LOG);
+        assertEquals(SqlParserLogic.parse(sql, true), sargable);
+        assertNotEquals(sql, sargable);
+        RewriteStore.flush();
+        RewriteStore.reset();
+
+        RewriteStore restarted = load(file);
+        assertEquals(2, restarted.size());
+        assertEquals(sql, restarted.rewrite(sql, false, LOG));
+        assertEquals(sargable, restarted.rewrite(sql, true, LOG));
+    }
+
+    @Test
+    void load_otherRewriteVersionIsDiscardedAndCompacted() throws Exception {
+        Path file = dir.resolve("rewrites.bin");
+        ByteBuffer header = ByteBuffer.allocate(12).putInt(0x4D545257).putInt(2).putInt(SqlParserLogic.REWRITE_VERSION + 1);
+        Files.write(file, header.array());
+
+        RewriteStore store = load(file);
+        assertEquals(0, store.size());
+        ByteBuffer rewritten = ByteBuffer.wrap(Files.readAllBytes(file));
+        rewritten.position(8);
+        assertEquals(SqlParserLogic.REWRITE_VERSION, rewritten.getInt());
+    }
+
+    @Test
+    void load_tornTailKeepsCompleteRecords() throws Exception {
+        Path file = dir.resolve("rewrites.bin");
+        RewriteStore store = load(file);
+        store.rewrite(SQL, false, LOG);
+        RewriteStore.flush();
+        RewriteStore.reset();
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7}, StandardOpenOption.APPEND);
+
+        RewriteStore restarted = load(file);
+        assertEquals(1, restarted.size());
+        restarted.rewrite("SELECT 2", false, LOG);
+        RewriteStore.flush();
+        RewriteStore.reset();
+
+        assertEquals(2, load(file).size(), "records appended after a torn tail must be readable");
+    }
+
+    @Test
+    void compact_keepsRewritesAppendedByAnotherStore() throws Exception {
+        Path file = dir.resolve("rewrites.bin");
+        RewriteStore first = load(file);
+        first.rewrite(SQL, false, LOG);
+        RewriteStore.flush();
+        RewriteStore.reset(); // the second store stands for another JVM sharing the file
+
+        RewriteStore second = load(file);
+        second.rewrite("SELECT {ts '2024-01-01 00:00:00'}", false, LOG);
+        RewriteStore.flush();
+        first.compact();
+        RewriteStore.reset();
+
+        assertEquals(2, load(file).size(), "compaction must not drop records appended by other writers");
+        assertFalse(Files.exists(dir.resolve("rewrites.bin.compact")));
+    }
+
+    /** Opens the store and waits for its background load. */
+    private static RewriteStore load(Path file) throws Exception {
+        RewriteStore store = RewriteStore.forFile(file.toString(), 1000);
+        store.startLoad();
+        RewriteStore.flush();
+        assertTrue(store.isLoaded());
+        return store;
+    }
+}
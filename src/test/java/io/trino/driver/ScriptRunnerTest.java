@@ -0,0 +1,171 @@
+package io.trino.driver;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptRunnerTest {
+
+    @Test
+    void split_ignoresSemicolonsInLiteralsAndComments() {
+        String script = "SELECT 'a;b', \"x;y\" FROM t; -- comment; here\n"
+                + "/* block; */ SELECT 'it''s;' FROM u;;\n"
+                + "  -- only a comment\n;"
+                + "SELECT 3";
+        List<String> statements = ScriptRunner.split(script);
+        assertEquals(List.of(
+                "SELECT 'a;b', \"x;y\" FROM t",
+                "-- comment; here\n/* block; */ SELECT 'it''s;' FROM u",
+                "SELECT 3"), statements);
+    }
+
+    @Test
+    void link_independentReadsRunTogetherWritesOrderDependents() {
+        List<ScriptRunner.Step> steps = steps(
+                "SELECT * FROM a",                  // 1
+                "SELECT * FROM cat.s.b",            // 2
+                "INSERT INTO a SELECT * FROM c",    // 3: after 1 (reads a)
+                "SELECT * FROM \"A\"",              // 4: after 3 (a written)
+                "SELECT * FROM b",                  // 5: independent
+                "USE other.s",                      // 6: barrier
+                "SELECT 1");                        // 7: after 6
+        ScriptRunner.link(steps, false);
+        assertEquals(List.of(3, 6), successors(steps.get(0)));
+        assertEquals(0, steps.get(1).dependencies);
+        assertEquals(1, steps.get(2).dependencies);
+        assertEquals(1, steps.get(3).dependencies);
+        assertEquals(0, steps.get(4).dependencies);
+        assertTrue(steps.get(5).barrier);
+        assertEquals(5, steps.get(5).dependencies);
+        assertEquals(1, steps.get(6).dependencies);
+        assertEquals(Set.of("a"), steps.get(2).writes);
+        assertEquals(Set.of("c"), steps.get(2).reads);
+    }
+
+    @Test
+    void link_writesStayInScriptOrder() {
+        List<ScriptRunner.Step> steps = steps("CREATE TABLE x (id int)", "INSERT INTO y VALUES (1)", "DROP TABLE z");
+        ScriptRunner.link(steps, false);
+        assertEquals(List.of(2, 3), successors(steps.get(0)));
+        assertEquals(List.of(3), successors(steps.get(1)));
+    }
+
+    @Test
+    void executeScript_independentSelectsRunConcurrently() throws Exception {
+        try (MockTrinoCoordinator coordinator = new MockTrinoCoordinator(48).queuedPolls(2).latencyMillis(25)) {
+            StringBuilder script = new StringBuilder();
+            for (int i = 0; i < 40; i++) {
+                script.append("SELECT id, name FROM report_").append(i).append(";\n");
+            }
+            Properties props = new Properties();
+            props.setProperty("user", "test");
+            props.setProperty(DriverConfig.PROP_SCRIPT_PARALLELISM, "40");
+            List<ScriptResult> results;
+            long start = System.nanoTime();
+            try (Connection conn = new MyTrinoDriver().connect(coordinator.jdbcUrl(), props)) {
+                results = conn.unwrap(ScriptExecutor.class).executeScript(script.toString());
+            }
+            long wallMillis = (System.nanoTime() - start) / 1_000_000;
+            assertEquals(40, results.size());
+            long sumMillis = 0;
+            for (int i = 0; i < 40; i++) {
+                ScriptResult result = results.get(i);
+                assertEquals(i + 1, result.getIndex());
+                assertTrue(result.getSql().contains("report_" + i));
+                assertTrue(result.hasResultSet());
+                try (ResultSet rs = result.getResultSet()) {
+                    int rows = 0;
+                    while (rs.next()) rows++;
+                    assertEquals(10, rows);
+                }
+                sumMillis += result.getElapsedMillis();
+            }
+            assertTrue(coordinator.getPeakRunningQueries() > 8, "peak " + coordinator.getPeakRunningQueries());
+            assertTrue(wallMillis * 4 < sumMillis, "wall " + wallMillis + " ms, sum " + sumMillis + " ms");
+        }
+    }
+
+    @Test
+    void executeScript_threadsEndWithScript() throws Exception {
+        try (MockTrinoCoordinator coordinator = new MockTrinoCoordinator().latencyMillis(10)) {
+            Properties props = new Properties();
+            props.setProperty("user", "test");
+            props.setProperty(DriverConfig.PROP_SCRIPT_PARALLELISM, "3");
+            String script = "SELECT id FROM a; SELECT id FROM b; SELECT id FROM c; SELECT id FROM d; SELECT id FROM e";
+            try (Connection conn = new MyTrinoDriver().connect(coordinator.jdbcUrl(), props)) {
+                assertEquals(5, conn.unwrap(ScriptExecutor.class).executeScript(script).size());
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (scriptThreads() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, scriptThreads());
+        }
+    }
+
+    @Test
+    void executeScript_statementsGoThroughDriverPipeline() throws Exception {
+        try (MockTrinoCoordinator coordinator = new MockTrinoCoordinator()) {
+            Properties props = new Properties();
+            props.setProperty("user", "test");
+            props.setProperty(DriverConfig.PROP_APPROXIMATE, "true");
+            props.setProperty(DriverConfig.PROP_WORKLOAD_RULES, "lookup:limit<=100;scan");
+            props.setProperty(DriverConfig.PROP_MAX_CONCURRENT_QUERIES_PER_TAG, "lookup:1");
+            String script = "/*+ session(task_concurrency=2) */ SELECT id FROM a;\n"
+                    + "SELECT count(DISTINCT id) FROM b;\n"
+                    + "SELECT id FROM c LIMIT 5";
+            try (Connection conn = new MyTrinoDriver().connect(coordinator.jdbcUrl(), props)) {
+                assertEquals(3, conn.unwrap(ScriptExecutor.class).executeScript(script).size());
+            }
+            assertEquals(0, AdmissionController.getRunningQueries());
+            List<String> statements = coordinator.getStatements();
+            int a = index(statements, "FROM a");
+            int b = index(statements, "FROM b");
+            int c = index(statements, "FROM c");
+            assertTrue(header(coordinator, a, "X-trino-session").contains("task_concurrency=2"));
+            assertFalse(header(coordinator, b, "X-trino-session").contains("task_concurrency"));
+            assertFalse(header(coordinator, c, "X-trino-session").contains("task_concurrency"));
+            assertTrue(statements.get(b).contains("approx_distinct(id)"), statements.get(b));
+            assertEquals("scan", header(coordinator, a, "X-trino-client-tags"));
+            assertEquals("lookup", header(coordinator, c, "X-trino-client-tags"));
+        }
+    }
+
+    private static long scriptThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.isAlive() && t.getName().equals("mytrino-script"))
+                .count();
+    }
+
+    private static int index(List<String> statements, String part) {
+        for (int i = 0; i < statements.size(); i++) {
+            if (statements.get(i).contains(part)) return i;
+        }
+        throw new AssertionError(part + " not sent: " + statements);
+    }
+
+    private static String header(MockTrinoCoordinator coordinator, int statement, String name) {
+        List<String> values = coordinator.getStatementHeaders().get(statement).get(name);
+        return values == null ? "" : String.join(",", values);
+    }
+
+    private static List<ScriptRunner.Step> steps(String... sql) {
+        List<ScriptRunner.Step> steps = new ArrayList<>();
+        for (String s : sql) {
+            steps.add(new ScriptRunner.Step(steps.size() + 1, s, QueryHints.parse(s), s));
+        }
+        return steps;
+    }
+
+    private static List<Integer> successors(ScriptRunner.Step step) {
+        return step.successors.stream().map(s -> s.index).toList();
+    }
+}
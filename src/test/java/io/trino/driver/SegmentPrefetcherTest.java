@@ -0,0 +1,113 @@
+package io.trino.driver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentPrefetcherTest {
+
+    private MockTrinoCoordinator coordinator;
+    private final MyTrinoDriver driver = new MyTrinoDriver();
+
+    @BeforeEach
+    void start() throws Exception {
+        coordinator = new MockTrinoCoordinator().spooledSegments(4);
+    }
+
+    @AfterEach
+    void stop() {
+        coordinator.close();
+    }
+
+    @Test
+    void spooling_readsAllSegmentsInOrder() throws Exception {
+        coordinator.pages(3).rowsPerPage(40);
+        assertEquals(120, readAll(props("4")));
+        assertNotNull(coordinator.getStatementHeaders().get(0).get("X-trino-query-data-encoding"));
+        assertEquals(12, coordinator.getSegmentRequests());
+    }
+
+    @Test
+    void spooling_segmentsDownloadedInParallel() throws Exception {
+        coordinator.pages(2).rowsPerPage(40).segmentLatencyMillis(100);
+        long before = SegmentPrefetcher.getPrefetchedCount();
+        assertEquals(80, readAll(props("4")));
+        assertTrue(coordinator.getPeakSegmentDownloads() > 1,
+                "peak concurrent downloads: " + coordinator.getPeakSegmentDownloads());
+        assertTrue(SegmentPrefetcher.getPrefetchedCount() - before >= 4);
+        assertEquals(8, coordinator.getSegmentRequests());
+    }
+
+    @Test
+    void spooling_prefetchDisabled_segmentsLoadedOneAtATime() throws Exception {
+        coordinator.pages(2).rowsPerPage(40).segmentLatencyMillis(20);
+        assertEquals(80, readAll(props("0")));
+        assertEquals(1, coordinator.getPeakSegmentDownloads());
+        assertEquals(8, coordinator.getSegmentRequests());
+    }
+
+    @Test
+    void spoolingDisabled_rowsInline() throws Exception {
+        coordinator.pages(2).rowsPerPage(40);
+        Properties props = props("4");
+        props.setProperty(DriverConfig.PROP_SPOOLING, "false");
+        assertEquals(80, readAll(props));
+        assertNull(coordinator.getStatementHeaders().get(0).get("X-trino-query-data-encoding"));
+        assertEquals(0, coordinator.getSegmentRequests());
+    }
+
+    @Test
+    void spooling_closedBeforeLastRow_releasesPrefetchedSegments() throws Exception {
+        // More rows than trino-jdbc buffers ahead (50000), so segments are still unclaimed when the result is dropped
+        coordinator.pages(1).rowsPerPage(120_000).spooledSegments(12);
+        long before = SegmentPrefetcher.getReleasedCount();
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props("4"));
+             Statement stmt = conn.createStatement()) {
+            ResultSet rs = stmt.executeQuery("SELECT id, name FROM t");
+            assertTrue(rs.next());
+            rs.close();
+            assertTrue(SegmentPrefetcher.getReleasedCount() - before >= 2,
+                    "released: " + (SegmentPrefetcher.getReleasedCount() - before));
+
+            // Re-executing the statement releases the segments of its previous result
+            before = SegmentPrefetcher.getReleasedCount();
+            assertTrue(stmt.executeQuery("SELECT id, name FROM t").next());
+            ResultSet next = stmt.executeQuery("SELECT id, name FROM t");
+            assertTrue(SegmentPrefetcher.getReleasedCount() - before >= 2);
+            int rows = 0;
+            while (next.next()) {
+                assertEquals(rows, next.getLong(1));
+                rows++;
+            }
+            assertEquals(120_000, rows);
+        }
+    }
+
+    private int readAll(Properties props) throws Exception {
+        int rows = 0;
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+            while (rs.next()) {
+                assertEquals(rows, rs.getLong(1));
+                assertEquals("name-" + rows, rs.getString(2));
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static Properties props(String prefetchSegments) {
+        Properties props = new Properties();
+        props.setProperty("user", "test");
+        props.setProperty(DriverConfig.PROP_SPOOLING_PREFETCH_SEGMENTS, prefetchSegments);
+        return props;
+    }
+}
@@ -0,0 +1,217 @@
+package io.trino.driver;
+
+import io.trino.jdbc.TrinoConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private MockTrinoCoordinator coordinator;
+    private final MyTrinoDriver driver = new MyTrinoDriver();
+
+    @BeforeEach
+    void start() throws Exception {
+        coordinator = new MockTrinoCoordinator();
+    }
+
+    @AfterEach
+    void stop() {
+        coordinator.close();
+    }
+
+    @Test
+    void isShareable_onlyReadOnlyStatements() {
+        assertTrue(SingleFlight.isShareable("SELECT 1"));
+        assertTrue(SingleFlight.isShareable(" with x AS (SELECT 1) SELECT * FROM x"));
+        assertFalse(SingleFlight.isShareable("INSERT INTO t SELECT * FROM u"));
+        assertFalse(SingleFlight.isShareable("DELETE FROM t"));
+    }
+
+    @Test
+    void executeQuery_concurrentIdenticalQueries_shareOneTrinoQuery() throws Exception {
+        coordinator.queuedPolls(3).latencyMillis(20).pages(3).rowsPerPage(10);
+        int threads = 8;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Long>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    try (Connection conn = driver.connect(coordinator.jdbcUrl(), props());
+                         Statement stmt = conn.createStatement()) {
+                        barrier.await(5, TimeUnit.SECONDS);
+                        try (ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+                            return readIds(rs);
+                        }
+                    }
+                }));
+            }
+            for (Future<List<Long>> result : results) {
+                List<Long> ids = result.get(30, TimeUnit.SECONDS);
+                assertEquals(30, ids.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    assertEquals(i, ids.get(i).longValue());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(coordinator.getStatements().size() < threads,
+                "expected coalesced queries, got " + coordinator.getStatements().size());
+    }
+
+    @Test
+    void executeQuery_differentSessionContext_notShared() throws Exception {
+        coordinator.queuedPolls(2).latencyMillis(20);
+        try (Connection a = driver.connect(coordinator.jdbcUrl(), props());
+             Connection b = driver.connect(coordinator.jdbcUrl(), props())) {
+            b.setSchema("other");
+            ExecutorService pool = Executors.newFixedThreadPool(2);
+            try {
+                Future<List<Long>> first = pool.submit(() -> query(a, "SELECT id FROM t"));
+                Future<List<Long>> second = pool.submit(() -> query(b, "SELECT id FROM t"));
+                first.get(10, TimeUnit.SECONDS);
+                second.get(10, TimeUnit.SECONDS);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        assertEquals(2, coordinator.getStatements().size());
+    }
+
+    @Test
+    void executeQuery_otherSessionUserTagsOrCredentials_notShared() throws Exception {
+        coordinator.queuedPolls(2).latencyMillis(20);
+        Properties credentials = props();
+        credentials.setProperty("extraCredentials", "token:secret");
+        List<SqlConsumer> variants = List.of(
+                conn -> conn.unwrap(TrinoConnection.class).setSessionUser("alice"),
+                conn -> conn.setClientInfo("ClientTags", "nightly"),
+                conn -> { });
+        List<Properties> properties = List.of(props(), props(), credentials);
+        int expected = 0;
+        for (int i = 0; i < variants.size(); i++) {
+            try (Connection a = driver.connect(coordinator.jdbcUrl(), props());
+                 Connection b = driver.connect(coordinator.jdbcUrl(), properties.get(i))) {
+                variants.get(i).accept(b);
+                ExecutorService pool = Executors.newFixedThreadPool(2);
+                try {
+                    Future<List<Long>> first = pool.submit(() -> query(a, "SELECT id FROM t"));
+                    Future<List<Long>> second = pool.submit(() -> query(b, "SELECT id FROM t"));
+                    first.get(10, TimeUnit.SECONDS);
+                    second.get(10, TimeUnit.SECONDS);
+                } finally {
+                    pool.shutdownNow();
+                }
+            }
+            expected += 2;
+            assertEquals(expected, coordinator.getStatements().size(), "variant " + i);
+        }
+    }
+
+    @Test
+    void executeQuery_sameThreadTwice_runsSeparateQueries() throws SQLException {
+        coordinator.pages(2).rowsPerPage(5);
+        Properties props = props();
+        props.setProperty(DriverConfig.PROP_SINGLE_FLIGHT_BUFFER_ROWS, "2");
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+             Statement first = conn.createStatement();
+             Statement second = conn.createStatement();
+             ResultSet a = first.executeQuery("SELECT id FROM t");
+             ResultSet b = second.executeQuery("SELECT id FROM t")) {
+            assertEquals(10, readIds(a).size());
+            assertEquals(10, readIds(b).size());
+        }
+        assertEquals(2, coordinator.getStatements().size());
+    }
+
+    @Test
+    void close_lastConsumerBeforeEnd_cancelsTrinoQuery() throws Exception {
+        coordinator.pages(50).rowsPerPage(200).latencyMillis(20); // Trino hands out rows in batches of 100
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props());
+             Statement stmt = conn.createStatement()) {
+            ResultSet rs = stmt.executeQuery("SELECT id FROM t");
+            assertTrue(rs.next());
+            rs.close();
+            assertThrows(SQLException.class, rs::next);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coordinator.getCancelledQueries() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, coordinator.getCancelledQueries());
+    }
+
+    @Test
+    void next_consumerStoppedReading_detachedAfterStallTimeout() throws Exception {
+        coordinator.queuedPolls(3).latencyMillis(20).pages(4).rowsPerPage(5);
+        Properties props = props();
+        props.setProperty(DriverConfig.PROP_SINGLE_FLIGHT_BUFFER_ROWS, "4");
+        props.setProperty(DriverConfig.PROP_SINGLE_FLIGHT_STALL_TIMEOUT_MILLIS, "200");
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try (Connection a = driver.connect(coordinator.jdbcUrl(), props);
+             Connection b = driver.connect(coordinator.jdbcUrl(), props);
+             Statement idle = b.createStatement()) {
+            Future<ResultSet> idleResult = pool.submit(() -> {
+                barrier.await(5, TimeUnit.SECONDS);
+                return idle.executeQuery("SELECT id FROM t");
+            });
+            Future<List<Long>> reader = pool.submit(() -> {
+                barrier.await(5, TimeUnit.SECONDS);
+                return query(a, "SELECT id FROM t");
+            });
+            assertEquals(20, reader.get(10, TimeUnit.SECONDS).size());
+            ResultSet stalled = idleResult.get(10, TimeUnit.SECONDS);
+            if (coordinator.getStatements().size() == 1) {
+                // The two executions were coalesced: the idle one was detached so the reader could finish.
+                assertThrows(SQLException.class, () -> readIds(stalled));
+            }
+            stalled.close();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private interface SqlConsumer {
+        void accept(Connection connection) throws SQLException;
+    }
+
+    private static List<Long> query(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return readIds(rs);
+        }
+    }
+
+    private static List<Long> readIds(ResultSet rs) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        while (rs.next()) {
+            ids.add(rs.getLong(1));
+        }
+        return ids;
+    }
+
+    private static Properties props() {
+        Properties props = new Properties();
+        props.setProperty("user", "test");
+        props.setProperty(DriverConfig.PROP_SINGLE_FLIGHT, "true");
+        return props;
+    }
+}
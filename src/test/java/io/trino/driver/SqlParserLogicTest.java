@@ -127,4 +127,185 @@ class SqlParserLogicTest {
     void parse_nullReturnsNull() {
         assertNull(SqlParserLogic.parse(null));
     }
+
+    // --- Sargable Predicates ---
+
+    @Test
+    void parse_castToDateEquals_halfOpenRange() {
+        assertEquals("SELECT * FROM t WHERE ts >= DATE '2024-01-01' AND ts < DATE '2024-01-02'",
+                SqlParserLogic.parse("SELECT * FROM t WHERE CAST(ts AS DATE) = {d '2024-01-01'}", true));
+        assertEquals("DELETE FROM t WHERE ts < DATE '2024-01-01'",
+                SqlParserLogic.parse("DELETE FROM t WHERE CAST(ts AS DATE) < DATE '2024-01-01'", true));
+    }
+
+    @Test
+    void parse_yearAndConvert_rangesOnBareColumn() {
+        assertEquals("SELECT * FROM t WHERE ts >= DATE '2024-01-01' AND ts < DATE '2025-01-01' AND x = 1",
+                SqlParserLogic.parse("SELECT * FROM t WHERE {fn YEAR(ts)} = 2024 AND x = 1", true));
+        assertEquals("SELECT * FROM t WHERE a = 1 OR t.ts >= DATE '2024-01-01'",
+                SqlParserLogic.parse("SELECT * FROM t WHERE a = 1 OR EXTRACT(YEAR FROM t.ts) > 2023", true));
+        assertEquals("SELECT * FROM t WHERE ts < DATE '2024-03-02' "
+                        + "OR NOT (o.ts >= DATE '2024-12-31' AND o.ts < DATE '2025-01-01')",
+                SqlParserLogic.parse("SELECT * FROM t WHERE DATE '2024-03-01' >= date(ts) "
+                        + "OR NOT {fn CONVERT(o.ts, SQL_DATE)} = {d '2024-12-31'}", true));
+        assertEquals("SELECT * FROM t JOIN u ON u.id = t.id AND u.ts >= DATE '2024-01-01' AND u.ts < DATE '2024-02-01' "
+                        + "WHERE t.id IN (SELECT id FROM v WHERE v.d < DATE '2021-01-01')",
+                SqlParserLogic.parse("SELECT * FROM t JOIN u ON u.id = t.id "
+                        + "AND CAST(u.ts AS DATE) BETWEEN DATE '2024-01-01' AND DATE '2024-01-31' "
+                        + "WHERE t.id IN (SELECT id FROM v WHERE year(v.d) <= 2020)", true));
+    }
+
+    @Test
+    void parse_notEquivalentAsRange_unchanged() {
+        for (String predicate : new String[]{
+                "CAST(ts AS DATE) <> DATE '2024-01-01'",
+                "CAST(ts AS DATE) NOT BETWEEN DATE '2024-01-01' AND DATE '2024-01-31'",
+                "TRY_CAST(ts AS DATE) = DATE '2024-01-01'",
+                "CAST(a + 1 AS DATE) = DATE '2024-01-01'",
+                "CAST(ts AS DATE) = ?",
+                "CAST(ts AS DATE) = TIMESTAMP '2024-01-01 00:00:00'",
+                "CAST(ts AS DATE) = DATE '2024-02-30'",
+                "CAST(ts AS VARCHAR) = '2024'",
+                "year(ts) = 2024.5",
+                "year(ts) = '2024'",
+                "year(ts) = 9999"}) {
+            String sql = "SELECT * FROM t WHERE " + predicate;
+            assertEquals(sql, SqlParserLogic.parse(sql, true), sql);
+        }
+    }
+
+    @Test
+    void parse_sargableDatesOff_varcharAndTimestampWithTimeZoneUnchanged() {
+        // On a varchar column the range would not type-check (varchar >= date); on a timestamp with time zone
+        // column it would compare in the session zone instead of each value's own zone.
+        for (String predicate : new String[]{
+                "CAST(name AS DATE) = DATE '2024-01-01'",
+                "CAST(created_at AS DATE) = DATE '2024-01-01'",
+                "year(created_at) = 2024"}) {
+            String sql = "SELECT * FROM t WHERE " + predicate;
+            assertEquals(sql, SqlParserLogic.parse(sql), sql);
+            assertEquals(sql, SqlParserLogic.parse(sql, false), sql);
+        }
+        assertEquals("SELECT * FROM t WHERE d = DATE '2024-01-01' AND CAST(ts AS DATE) = DATE '2024-01-01'",
+                SqlParserLogic.parse("SELECT * FROM t WHERE d = {d '2024-01-01'} AND CAST(ts AS DATE) = {d '2024-01-01'}"));
+    }
+
+    // --- Max rows ---
+
+    @Test
+    void limitRows_noLimit_addsLimit() {
+        assertEquals("SELECT * FROM t LIMIT 200", SqlParserLogic.limitRows("SELECT * FROM t", 200));
+    }
+
+    @Test
+    void limitRows_largerLimit_tightened() {
+        assertEquals("SELECT * FROM t ORDER BY a LIMIT 200", SqlParserLogic.limitRows("SELECT * FROM t ORDER BY a LIMIT 5000", 200));
+        assertEquals("SELECT * FROM t LIMIT 200", SqlParserLogic.limitRows("SELECT * FROM t LIMIT ALL", 200));
+        assertEquals("SELECT * FROM t OFFSET 5 ROWS FETCH FIRST 200 ROWS ONLY",
+                SqlParserLogic.limitRows("SELECT * FROM t OFFSET 5 ROWS FETCH FIRST 1000 ROWS ONLY", 200));
+    }
+
+    @Test
+    void limitRows_limitNull_tightened() {
+        assertEquals("SELECT * FROM t LIMIT 200", SqlParserLogic.limitRows("SELECT * FROM t LIMIT NULL", 200));
+    }
+
+    @Test
+    void limitRows_sameSqlOtherMaxRows_eachLimitApplied() {
+        String sql = "SELECT * FROM t ORDER BY a LIMIT 5000";
+        assertEquals("SELECT * FROM t ORDER BY a LIMIT 200", SqlParserLogic.limitRows(sql, 200));
+        assertEquals("SELECT * FROM t ORDER BY a LIMIT 300", SqlParserLogic.limitRows(sql, 300));
+        assertEquals("SELECT * FROM t ORDER BY a LIMIT 200", SqlParserLogic.limitRows(sql, 200));
+        assertSame(sql, SqlParserLogic.limitRows(sql, 9000));
+        String copy = new String(sql);
+        assertSame(copy, SqlParserLogic.limitRows(copy, 9000));
+    }
+
+    @Test
+    void limitRows_smallerLimit_unchanged() {
+        String sql = "SELECT * FROM t LIMIT 10";
+        assertSame(sql, SqlParserLogic.limitRows(sql, 200));
+    }
+
+    @Test
+    void limitRows_offsetWithoutLimit_addsFetchFirst() {
+        assertEquals("SELECT * FROM t ORDER BY a OFFSET 5 FETCH FIRST 200 ROWS ONLY",
+                SqlParserLogic.limitRows("SELECT * FROM t ORDER BY a OFFSET 5", 200));
+    }
+
+    @Test
+    void limitRows_notPlainSelect_unchanged() {
+        for (String sql : new String[]{
+                "SELECT a FROM t UNION ALL SELECT a FROM u",
+                "INSERT INTO t SELECT * FROM u",
+                "SHOW TABLES",
+                "SELECT * FROM t LIMIT ?"}) {
+            assertSame(sql, SqlParserLogic.limitRows(sql, 200), sql);
+        }
+        assertEquals("SELECT * FROM t", SqlParserLogic.limitRows("SELECT * FROM t", 0));
+    }
+
+    // --- Approximate Queries ---
+
+    @Test
+    void approximate_countDistinct_approxDistinct() {
+        SqlParserLogic.Approximation approximation = SqlParserLogic.approximate(
+                "SELECT region, COUNT(DISTINCT user_id) AS users FROM events GROUP BY region", 0, 0);
+        assertEquals("SELECT region, approx_distinct(user_id) AS users FROM events GROUP BY region",
+                approximation.getSql());
+        assertEquals(1, approximation.getRewrites().size());
+        assertTrue(approximation.getRewrites().get(0).contains("COUNT(DISTINCT user_id)"),
+                approximation.getRewrites().toString());
+        assertEquals("SELECT approx_distinct(a, 0.01) FROM t",
+                SqlParserLogic.approximate("SELECT count(DISTINCT a) FROM t", 0.01, 0).getSql());
+    }
+
+    @Test
+    void approximate_percentiles_approxPercentile() {
+        assertEquals("SELECT approx_percentile(latency, 0.5) FROM t",
+                SqlParserLogic.approximate("SELECT median(latency) FROM t", 0, 0).getSql());
+        assertEquals("SELECT approx_percentile(latency, 0.95) FROM t",
+                SqlParserLogic.approximate("SELECT percentile(latency, 0.95) FROM t", 0, 0).getSql());
+        String withinGroup = SqlParserLogic.approximate(
+                "SELECT percentile_cont(0.9) WITHIN GROUP (ORDER BY latency DESC) AS p FROM t", 0, 0).getSql();
+        assertEquals("SELECT approx_percentile(latency, 0.1) AS p FROM t", withinGroup.replaceAll("\\s+", " "));
+    }
+
+    @Test
+    void approximate_nothingToApproximate_unchanged() {
+        for (String sql : new String[]{
+                "SELECT count(*), count(DISTINCT a, b) FROM t",
+                "SELECT count(DISTINCT a) OVER (PARTITION BY b) FROM t",
+                "INSERT INTO t SELECT count(DISTINCT a) FROM u",
+                "SELECT FROM WHERE ((("}) {
+            SqlParserLogic.Approximation approximation = SqlParserLogic.approximate(sql, 0, 0);
+            assertSame(sql, approximation.getSql(), sql);
+            assertTrue(approximation.getRewrites().isEmpty(), sql);
+        }
+    }
+
+    @Test
+    void approximate_sampleRatio_samplesAndScalesAdditiveAggregates() {
+        SqlParserLogic.Approximation approximation = SqlParserLogic.approximate(
+                "SELECT region, count(*) AS n, sum(amount) / count(*), avg(amount) FROM sales GROUP BY region "
+                        + "HAVING count(*) > 100 ORDER BY sum(amount) DESC", 0, 10);
+        assertEquals("SELECT region, (count(*) * 10) AS n, (sum(amount) * 10) / (count(*) * 10), avg(amount) "
+                + "FROM sales TABLESAMPLE BERNOULLI (10) GROUP BY region HAVING (count(*) * 10) > 100 "
+                + "ORDER BY (sum(amount) * 10) DESC", approximation.getSql());
+        assertEquals(1, approximation.getRewrites().size());
+    }
+
+    @Test
+    void approximate_sampleRatio_notSampleable_onlyFunctionsRewritten() {
+        assertEquals("SELECT approx_distinct(a), count(*) FROM t",
+                SqlParserLogic.approximate("SELECT count(DISTINCT a), count(*) FROM t", 0, 10).getSql());
+        for (String sql : new String[]{
+                "SELECT max(a), count(*) FROM t",
+                "SELECT count(*) FROM t JOIN u ON t.id = u.id",
+                "SELECT a FROM t",
+                "SELECT count(*) FROM t WHERE a IN (SELECT a FROM u)",
+                "SELECT CASE WHEN count(*) > 1 THEN 1 END FROM t"}) {
+            assertSame(sql, SqlParserLogic.approximate(sql, 0, 10).getSql(), sql);
+        }
+    }
 }
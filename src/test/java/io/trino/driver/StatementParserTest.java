@@ -0,0 +1,86 @@
+package io.trino.driver;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementParserTest {
+
+    private static final List<String> STATEMENTS = List.of(
+            "SELECT id, name FROM users WHERE id = ? AND name LIKE ?",
+            "SELECT a.x, count(*) FROM a JOIN b ON a.id = b.id GROUP BY a.x HAVING count(*) > 1 ORDER BY 2 DESC",
+            "WITH t AS (SELECT * FROM s) SELECT * FROM t UNION ALL SELECT * FROM u",
+            "SELECT CASE WHEN x > 0 THEN 'p' WHEN x < 0 THEN 'n' ELSE 'z' END FROM t",
+            "INSERT INTO t (a, b) VALUES (1, 'x'), (2, 'y')",
+            "UPDATE t SET a = a + 1 WHERE b IN (SELECT b FROM u)",
+            "SELECT * FROM t WHERE ((((a = 1) OR (b = 2)) AND (c = 3)))");
+
+    @Test
+    void parse_sameResultAsJSqlParser() throws Exception {
+        for (String sql : STATEMENTS) {
+            assertEquals(CCJSqlParserUtil.parse(sql).toString(), StatementParser.parse(sql).toString(), sql);
+        }
+    }
+
+    @Test
+    void parse_nullOrEmpty_returnsNull() throws Exception {
+        assertNull(StatementParser.parse(null));
+        assertNull(StatementParser.parse(""));
+    }
+
+    @Test
+    void parse_afterFailure_parserReusable() throws Exception {
+        assertThrows(JSQLParserException.class, () -> StatementParser.parse("SELECT FROM WHERE ((("));
+        assertThrows(JSQLParserException.class, () -> StatementParser.parse("SELECT 'unterminated"));
+        for (String sql : STATEMENTS) {
+            assertEquals(CCJSqlParserUtil.parse(sql).toString(), StatementParser.parse(sql).toString(), sql);
+        }
+    }
+
+    @Test
+    void parse_createsNoThreads() throws Exception {
+        StatementParser.parse(STATEMENTS.get(0)); // watchdog started
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long before = threads.getTotalStartedThreadCount();
+        for (int i = 0; i < 500; i++) {
+            StatementParser.parse(STATEMENTS.get(i % STATEMENTS.size()));
+        }
+        // CCJSqlParserUtil.parse starts one thread per statement; allow for unrelated background threads
+        long started = threads.getTotalStartedThreadCount() - before;
+        assertTrue(started < 50, "threads started: " + started);
+    }
+
+    @Test
+    void parse_concurrentThreads_independentParsers() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(pool.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        String sql = STATEMENTS.get(i % STATEMENTS.size());
+                        if (!CCJSqlParserUtil.parse(sql).toString().equals(StatementParser.parse(sql).toString())) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
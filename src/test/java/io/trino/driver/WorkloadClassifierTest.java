@@ -0,0 +1,173 @@
+package io.trino.driver;
+
+import io.trino.jdbc.TrinoConnection;
+import io.trino.jdbc.TrinoDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkloadClassifierTest {
+
+    private MockTrinoCoordinator coordinator;
+    private final MyTrinoDriver driver = new MyTrinoDriver();
+
+    @BeforeEach
+    void start() throws Exception {
+        WorkloadClassifier.reset();
+        coordinator = new MockTrinoCoordinator();
+    }
+
+    @AfterEach
+    void stop() {
+        coordinator.close();
+    }
+
+    @Test
+    void classify_shapeRules_firstMatchingRuleWins() {
+        WorkloadClassifier classifier = WorkloadClassifier.parse(
+                "lookup@interactive: query=1, joins=0, aggregate=false, limit<=100;"
+                        + "report: aggregate=1, tables<=2; etl@batch: query=0; adhoc");
+
+        WorkloadClassifier.Workload lookup = classifier.classify("SELECT * FROM orders WHERE id = 42 LIMIT 10");
+        assertEquals("lookup", lookup.getName());
+        assertEquals(AdmissionController.Priority.INTERACTIVE, lookup.priority(AdmissionController.Priority.BATCH));
+        assertEquals(Set.of("bi", "lookup"), lookup.tags(Set.of("bi")));
+
+        assertEquals("report", classifier.classify(
+                "SELECT region, count(*) FROM orders o JOIN customers c ON o.cid = c.id GROUP BY region").getName());
+        WorkloadClassifier.Workload etl = classifier.classify("INSERT INTO t SELECT * FROM u");
+        assertEquals("etl", etl.getName());
+        assertEquals(AdmissionController.Priority.BATCH, etl.priority(AdmissionController.Priority.INTERACTIVE));
+        WorkloadClassifier.Workload adhoc = classifier.classify("SELECT * FROM a JOIN b ON a.id = b.id");
+        assertEquals("adhoc", adhoc.getName());
+        assertEquals(AdmissionController.Priority.INTERACTIVE, adhoc.priority(AdmissionController.Priority.INTERACTIVE));
+    }
+
+    @Test
+    void classify_latencyRule_usesPastExecutionsOfFingerprint() throws Exception {
+        WorkloadClassifier classifier = WorkloadClassifier.parse("fast:latencyMillis<1000;slow");
+        WorkloadClassifier.Workload first = classifier.classify("SELECT * FROM t WHERE id = 1 AND name = 'a'");
+        assertEquals("slow", first.getName()); // no history yet
+        first.start();
+        first.finished();
+
+        assertEquals("fast", classifier.classify("SELECT * FROM t WHERE id = 2 AND name = 'b'").getName());
+        assertEquals("slow", classifier.classify("SELECT * FROM t WHERE id > 2").getName());
+        assertTrue(WorkloadClassifier.getLatencyMillis("SELECT * FROM t WHERE id = ? AND name = ?") < 1000);
+
+        WorkloadClassifier.Workload failed = classifier.classify("SELECT * FROM t WHERE id > 3");
+        failed.start();
+        failed.discard();
+        failed.finished();
+        assertTrue(Double.isNaN(WorkloadClassifier.getLatencyMillis("SELECT * FROM t WHERE id > ?")));
+    }
+
+    @Test
+    void classify_sameQueryWithOtherLimit_usesItsOwnLimit() {
+        WorkloadClassifier classifier = WorkloadClassifier.parse("lookup: limit<=100; scan");
+        assertEquals("lookup", classifier.classify("SELECT * FROM t WHERE id > 5 LIMIT 10").getName());
+        assertEquals("scan", classifier.classify("SELECT * FROM t WHERE id > 5 LIMIT 100000").getName());
+        assertEquals("scan", classifier.classify("SELECT * FROM t WHERE id > 7 FETCH FIRST 500 ROWS ONLY").getName());
+        assertEquals("lookup", classifier.classify("SELECT * FROM t WHERE id > 7 FETCH FIRST 50 ROWS ONLY").getName());
+        assertEquals("lookup", classifier.classify("SELECT * FROM t WHERE id > 6 LIMIT 10").getName());
+        assertEquals("SELECT * FROM t WHERE id > ? LIMIT 10",
+                WorkloadClassifier.fingerprint("SELECT * FROM t WHERE id > 6 LIMIT 10"));
+    }
+
+    @Test
+    void classify_moreFingerprintsThanMax_leastRecentlyUsedEvicted() {
+        WorkloadClassifier classifier = WorkloadClassifier.parse("any");
+        executed(classifier, "SELECT c FROM evicted");
+        executed(classifier, "SELECT c FROM kept");
+        for (int i = 0; i < WorkloadClassifier.MAX_PROFILES; i++) {
+            classifier.classify("SELECT c FROM t" + i);
+            if (i % 1000 == 0) {
+                classifier.classify("SELECT c FROM kept");
+            }
+        }
+        assertTrue(WorkloadClassifier.getProfileCount() <= WorkloadClassifier.MAX_PROFILES,
+                "profiles: " + WorkloadClassifier.getProfileCount());
+        assertFalse(Double.isNaN(WorkloadClassifier.getLatencyMillis("SELECT c FROM kept")));
+        assertTrue(Double.isNaN(WorkloadClassifier.getLatencyMillis("SELECT c FROM evicted")));
+    }
+
+    /**
+     * Workload classes set these client info properties through trino-jdbc's {@code ClientInfoProperty} keys of
+     * {@code TrinoConnection.clientInfo} (see {@link QueryHintsTest}). Re-check them when upgrading trino-jdbc.
+     */
+    @Test
+    void clientInfoProperty_namesUsedByClasses_matchPinnedTrinoJdbcVersion() throws Exception {
+        assertEquals(478, new TrinoDriver().getMajorVersion(), "trino-jdbc version changed");
+        Class<?> type = Class.forName("io.trino.jdbc.ClientInfoProperty");
+        Method propertyName = type.getDeclaredMethod("getPropertyName");
+        propertyName.setAccessible(true);
+        Set<Object> names = new HashSet<>();
+        for (Object constant : type.getEnumConstants()) {
+            names.add(propertyName.invoke(constant));
+        }
+        assertTrue(names.containsAll(Set.of("ClientTags", "ApplicationName")), names.toString());
+    }
+
+    @Test
+    void parse_invalidRules_skipped() {
+        assertNull(WorkloadClassifier.parse(""));
+        assertNull(WorkloadClassifier.parse("x@urgent; y: speed<1; z: joins<many"));
+        WorkloadClassifier classifier = WorkloadClassifier.parse("x@urgent;ok");
+        assertEquals("ok", classifier.classify("SELECT 1").getName());
+    }
+
+    @Test
+    void executeQuery_classified_sendsClassTagSourceAndPriority() throws SQLException {
+        Properties props = props();
+        props.setProperty("clientTags", "bi");
+        props.setProperty(DriverConfig.PROP_WORKLOAD_RULES, "lookup@interactive:limit<=100;scan");
+        try (Connection conn = driver.connect(coordinator.jdbcUrl(), props);
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT id, name FROM t LIMIT 5")) {
+                assertTrue(rs.next());
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+                assertTrue(rs.next());
+            }
+            TrinoConnection trino = conn.unwrap(TrinoConnection.class);
+            assertEquals("bi", trino.getClientInfo("ClientTags"));
+            assertNull(trino.getClientInfo("ApplicationName"));
+            assertFalse(QueryHints.sessionMap(conn).containsKey("query_priority"));
+        }
+        assertEquals(Set.of("bi", "lookup"), Set.copyOf(List.of(header(0, "X-trino-client-tags").split(","))));
+        assertEquals("trino-jdbc/lookup", header(0, "X-trino-source"));
+        assertTrue(header(0, "X-trino-session").contains("query_priority=2"), header(0, "X-trino-session"));
+        assertEquals(Set.of("bi", "scan"), Set.copyOf(List.of(header(1, "X-trino-client-tags").split(","))));
+        assertFalse(header(1, "X-trino-session").contains("query_priority"), header(1, "X-trino-session"));
+    }
+
+    private String header(int statement, String name) {
+        List<String> values = coordinator.getStatementHeaders().get(statement).get(name);
+        return values == null ? "" : String.join(",", values);
+    }
+
+    /** Classifies {@code sql} and records one execution of it. */
+    private static void executed(WorkloadClassifier classifier, String sql) {
+        WorkloadClassifier.Workload workload = classifier.classify(sql);
+        workload.start();
+        workload.finished();
+    }
+
+    private static Properties props() {
+        Properties props = new Properties();
+        props.setProperty("user", "test");
+        return props;
+    }
+}